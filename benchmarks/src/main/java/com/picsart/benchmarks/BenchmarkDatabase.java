@@ -0,0 +1,148 @@
+package com.picsart.benchmarks;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A Postgres instance holding a scaled copy of the bookstore database.
+ * <p>
+ * An embedded Postgres binary is started unless {@code bench.db.url} names a locally installed server
+ * ({@code bench.db.user} / {@code bench.db.password} default to postgres). The bookstore tables of that
+ * database are dropped and recreated, so never point it at real data. The schema comes
+ * from {@code databases/BookstoreDB.sql}; generated rows are then added up to the requested counts.
+ */
+final class BenchmarkDatabase implements AutoCloseable {
+
+    private static final String SCHEMA = "BookstoreDB.sql";
+
+    /**
+     * Number of distinct genres and authors in the generated books.
+     */
+    static final int GENRES = 50;
+    static final int AUTHORS = 500;
+
+    /**
+     * Stock of every book, large enough that sale benchmarks never run out.
+     */
+    private static final int STOCK = 100_000_000;
+
+    private final EmbeddedPostgres embedded;
+    private final String url;
+    private final String user;
+    private final String password;
+
+    private BenchmarkDatabase(EmbeddedPostgres embedded, String url, String user, String password) {
+        this.embedded = embedded;
+        this.url = url;
+        this.user = user;
+        this.password = password;
+    }
+
+    /**
+     * Starts the database and loads it with the given number of rows.
+     *
+     * @param books     Rows in Books.
+     * @param customers Rows in Customers.
+     * @param sales     Rows in Sales.
+     * @return The running database.
+     * @throws IOException  If the embedded server cannot be started or the schema cannot be read.
+     * @throws SQLException If seeding fails.
+     */
+    static BenchmarkDatabase start(int books, int customers, int sales) throws IOException, SQLException {
+        String externalUrl = System.getProperty("bench.db.url");
+        BenchmarkDatabase database;
+        if (externalUrl != null) {
+            database = new BenchmarkDatabase(null, externalUrl,
+                    System.getProperty("bench.db.user", "postgres"),
+                    System.getProperty("bench.db.password", "postgres"));
+        } else {
+            EmbeddedPostgres embedded = EmbeddedPostgres.builder().start();
+            database = new BenchmarkDatabase(embedded, embedded.getJdbcUrl("postgres", "postgres"), "postgres", "postgres");
+        }
+        try {
+            database.seed(books, customers, sales);
+        } catch (IOException | SQLException | RuntimeException e) {
+            database.close();
+            throw e;
+        }
+        return database;
+    }
+
+    String url() {
+        return url;
+    }
+
+    String user() {
+        return user;
+    }
+
+    String password() {
+        return password;
+    }
+
+    private void seed(int books, int customers, int sales) throws IOException, SQLException {
+        try (Connection connection = DriverManager.getConnection(url, user, password);
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS SchemaVersion, StockLedgerCheckpoint, SalesDailyBookRollup, "
+                    + "SalesDailyGenreRollup, SalesRollupCheckpoint, SaleJournalCheckpoint, Sales, Customers, Books CASCADE");
+            statement.execute(schema());
+
+            try (PreparedStatement preparedStatement = connection.prepareStatement(
+                    "INSERT INTO Books(Title, Author, Genre, Price, QuantityInStock) " +
+                            "SELECT 'Book' || g, 'Author' || (g % ?), 'Genre' || (g % ?), 5 + (g % 100), ? " +
+                            "FROM generate_series((SELECT count(*) FROM Books) + 1, ?) g")) {
+                preparedStatement.setInt(1, AUTHORS);
+                preparedStatement.setInt(2, GENRES);
+                preparedStatement.setInt(3, STOCK);
+                preparedStatement.setInt(4, books);
+                preparedStatement.executeUpdate();
+            }
+            try (PreparedStatement preparedStatement = connection.prepareStatement(
+                    "UPDATE Books SET QuantityInStock = ?")) {
+                preparedStatement.setInt(1, STOCK);
+                preparedStatement.executeUpdate();
+            }
+            try (PreparedStatement preparedStatement = connection.prepareStatement(
+                    "INSERT INTO Customers(Name, Email, Phone) " +
+                            "SELECT 'Customers' || g, 'bench' || g || '@example.com', '+37494000000' " +
+                            "FROM generate_series((SELECT count(*) FROM Customers) + 1, ?) g")) {
+                preparedStatement.setInt(1, customers);
+                preparedStatement.executeUpdate();
+            }
+            try (PreparedStatement preparedStatement = connection.prepareStatement(
+                    "INSERT INTO Sales(BookID, CustomerID, DateOfSale, QuantitySold, TotalPrice) " +
+                            "SELECT b.BookID, 1 + (g % ?), DATE '2020-01-01' + (g % 1500), 1 + (g % 3), b.Price * (1 + (g % 3)) " +
+                            "FROM generate_series(1, ?) g JOIN Books b ON b.BookID = 1 + (g % ?)")) {
+                preparedStatement.setInt(1, customers);
+                preparedStatement.setInt(2, sales);
+                preparedStatement.setInt(3, books);
+                preparedStatement.executeUpdate();
+            }
+            statement.execute("ANALYZE");
+        }
+    }
+
+    private static String schema() throws IOException {
+        try (InputStream in = BenchmarkDatabase.class.getClassLoader().getResourceAsStream(SCHEMA)) {
+            if (in == null) {
+                throw new IOException(SCHEMA + " is not on the classpath");
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (embedded != null) {
+            embedded.close();
+        }
+    }
+}
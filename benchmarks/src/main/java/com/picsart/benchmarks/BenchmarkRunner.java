@@ -0,0 +1,87 @@
+package com.picsart.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs every benchmark and writes all results into one JSON file.
+ * <p>
+ * The sale benchmarks, direct and group-committed, are run once per thread count, the others
+ * single-threaded; the validation benchmark also records allocations. Usage:
+ * <pre>
+ * java -jar benchmarks.jar [-threads 1,2,4,8] [-out results.json] [-p books=100000] ...
+ * </pre>
+ * The JSON is JMH's standard format, so two files can be compared with any JMH result viewer.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        List<Integer> threads = defaultThreads();
+        Path out = Path.of("bench-results.json");
+        Map<String, String> params = new LinkedHashMap<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-threads" -> {
+                    threads = new ArrayList<>();
+                    for (String count : args[++i].split(",")) {
+                        threads.add(Integer.parseInt(count.trim()));
+                    }
+                }
+                case "-out" -> out = Path.of(args[++i]);
+                case "-p" -> {
+                    String[] param = args[++i].split("=", 2);
+                    params.put(param[0], param[1]);
+                }
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        List<RunResult> results = new ArrayList<>();
+        for (int count : threads) {
+            results.addAll(new Runner(options(SalesBenchmark.class, params).threads(count).build()).run());
+            results.addAll(new Runner(options(SaleQueueBenchmark.class, params).threads(count).build()).run());
+        }
+        results.addAll(new Runner(options(BooksBenchmark.class, params).build()).run());
+        results.addAll(new Runner(options(ReportsBenchmark.class, params).build()).run());
+        results.addAll(new Runner(options(ReportOutputBenchmark.class, params).build()).run());
+        results.addAll(new Runner(options(ValidationBenchmark.class, params).addProfiler(GCProfiler.class).build()).run());
+
+        try (PrintStream stream = new PrintStream(Files.newOutputStream(out))) {
+            ResultFormatFactory.getInstance(ResultFormatType.JSON, stream).writeOut(results);
+        }
+        System.out.println(results.size() + " results written to " + out);
+    }
+
+    private static ChainedOptionsBuilder options(Class<?> benchmark, Map<String, String> params) {
+        ChainedOptionsBuilder builder = new OptionsBuilder().include(benchmark.getName());
+        params.forEach(builder::param);
+        return builder;
+    }
+
+    /**
+     * Powers of two up to the number of processors.
+     */
+    private static List<Integer> defaultThreads() {
+        List<Integer> threads = new ArrayList<>();
+        for (int count = 1; count <= Runtime.getRuntime().availableProcessors(); count *= 2) {
+            threads.add(count);
+        }
+        return threads;
+    }
+}
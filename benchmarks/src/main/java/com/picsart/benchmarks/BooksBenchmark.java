@@ -0,0 +1,60 @@
+package com.picsart.benchmarks;
+
+import com.picsart.Book;
+import com.picsart.BookCatalog;
+import com.picsart.BooksManagement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of {@link BooksManagement#listBooksByGenreOrAuthor}, once answered by the {@link BookCatalog}
+ * cache and once with the cache emptied before every call so that each search hits the database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class BooksBenchmark {
+
+    @Param({"genre", "author"})
+    public String searchBy;
+
+    private int values;
+
+    @Setup
+    public void setUp() {
+        values = searchBy.equals("genre") ? BenchmarkDatabase.GENRES : BenchmarkDatabase.AUTHORS;
+    }
+
+    @Benchmark
+    public List<Book> cached(BookstoreState state) throws SQLException {
+        return BooksManagement.listBooksByGenreOrAuthor(searchBy, nextValue());
+    }
+
+    @Benchmark
+    public List<Book> uncached(BookstoreState state) throws SQLException {
+        BookCatalog.clear();
+        return BooksManagement.listBooksByGenreOrAuthor(searchBy, nextValue());
+    }
+
+    private String nextValue() {
+        int value = ThreadLocalRandom.current().nextInt(values);
+        return (searchBy.equals("genre") ? "Genre" : "Author") + value;
+    }
+}
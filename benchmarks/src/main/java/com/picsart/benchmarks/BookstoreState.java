@@ -0,0 +1,58 @@
+package com.picsart.benchmarks;
+
+import com.picsart.Configuration;
+import com.picsart.DatabaseConnection;
+import com.picsart.PoolConfig;
+import com.picsart.SchemaMigrations;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * A seeded database and the application's connection pool pointed at it, shared by all threads of a trial.
+ * <p>
+ * The schema migrations are applied after seeding, so the benchmarks see the production indexes.
+ * The table sizes are JMH parameters, e.g. {@code -p books=100000 -p sales=1000000}. The pool is sized to
+ * at least the number of benchmark threads so that multi-threaded runs measure the database rather than
+ * waiting for connections.
+ */
+@State(Scope.Benchmark)
+public class BookstoreState {
+
+    @Param("10000")
+    public int books;
+
+    @Param("1000")
+    public int customers;
+
+    @Param("100000")
+    public int sales;
+
+    private BenchmarkDatabase database;
+
+    @Setup(Level.Trial)
+    public void start(BenchmarkParams params) throws IOException, SQLException {
+        database = BenchmarkDatabase.start(books, customers, sales);
+        System.setProperty("db.url", database.url());
+        System.setProperty("db.user", database.user());
+        System.setProperty("db.password", database.password());
+        Configuration configuration = Configuration.load();
+        int maxSize = Math.max(configuration.getInt("db.pool.maxSize", 10), params.getThreads());
+        System.setProperty("db.pool.maxSize", Integer.toString(maxSize));
+        DatabaseConnection.initialize(PoolConfig.from(configuration));
+        SchemaMigrations.migrate();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        DatabaseConnection.shutdown();
+        database.close();
+    }
+}
@@ -0,0 +1,47 @@
+package com.picsart.benchmarks;
+
+import com.picsart.Configuration;
+import com.picsart.DatabaseConnection;
+import com.picsart.PoolConfig;
+import com.picsart.QueryPlanCheck;
+import com.picsart.SchemaMigrations;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Seeds a database at benchmark scale, applies the migrations and runs {@link QueryPlanCheck}. Exits
+ * with status 1 if a hot query falls back to a sequential scan. Usage:
+ * <pre>
+ * java -cp benchmarks.jar com.picsart.benchmarks.QueryPlanSuite [books customers sales]
+ * </pre>
+ */
+public class QueryPlanSuite {
+
+    public static void main(String[] args) throws IOException, SQLException {
+        int books = args.length == 3 ? Integer.parseInt(args[0]) : 100_000;
+        int customers = args.length == 3 ? Integer.parseInt(args[1]) : 10_000;
+        int sales = args.length == 3 ? Integer.parseInt(args[2]) : 1_000_000;
+
+        boolean passed;
+        try (BenchmarkDatabase database = BenchmarkDatabase.start(books, customers, sales)) {
+            System.setProperty("db.url", database.url());
+            System.setProperty("db.user", database.user());
+            System.setProperty("db.password", database.password());
+            DatabaseConnection.initialize(PoolConfig.from(Configuration.load()));
+            try {
+                SchemaMigrations.migrate();
+                try (Connection connection = DatabaseConnection.connection();
+                     Statement statement = connection.createStatement()) {
+                    statement.execute("ANALYZE");
+                }
+                passed = QueryPlanCheck.run(System.out);
+            } finally {
+                DatabaseConnection.shutdown();
+            }
+        }
+        System.exit(passed ? 0 : 1);
+    }
+}
@@ -0,0 +1,124 @@
+package com.picsart.benchmarks;
+
+import com.picsart.ReportFormat;
+import com.picsart.SaleRow;
+import com.picsart.SaleRowSink;
+import com.picsart.SalesReportQuery;
+import com.picsart.SalesReports;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of writing the book sales report to a file.
+ * <p>
+ * {@code printPerRow} is the former console output: one concatenated string per row through an
+ * autoflushing {@link PrintStream}. {@code reportWriter} formats the same in-memory rows through a reused
+ * builder into a buffered file channel, and {@code asyncReportWriter} does so on a background thread.
+ * The {@code export*} benchmarks run the whole report from the seeded database, with and without the
+ * background writer, to show how much of the formatting and writing hides behind the fetch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ReportOutputBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Output {
+
+        @Param({"CSV", "JSON_LINES", "FIXED_WIDTH"})
+        public ReportFormat format;
+
+        @Param("100000")
+        public int rows;
+
+        List<SaleRow> saleRows;
+        Path file;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            saleRows = new ArrayList<>(rows);
+            LocalDate start = LocalDate.of(2020, 1, 1);
+            for (int i = 1; i <= rows; i++) {
+                saleRows.add(new SaleRow(i, "Book" + (i % 10_000), "Customers" + (i % 1_000), start.plusDays(i % 1_500)));
+            }
+            file = Files.createTempFile("report", ".out");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Benchmark
+    public long printPerRow(Output output) throws IOException {
+        try (PrintStream out = new PrintStream(new FileOutputStream(output.file.toFile()), true, StandardCharsets.UTF_8)) {
+            for (SaleRow row : output.saleRows) {
+                out.println("Sale ID: " + row.saleId() +
+                        ", Book Title: " + row.bookTitle() +
+                        ", Customer Name: " + row.customerName() +
+                        ", Sale Date: " + row.saleDate());
+            }
+        }
+        return Files.size(output.file);
+    }
+
+    @Benchmark
+    public long reportWriter(Output output) throws IOException {
+        try (SaleRowSink sink = SaleRowSink.file(output.file, output.format)) {
+            for (SaleRow row : output.saleRows) {
+                sink.accept(row);
+            }
+        }
+        return Files.size(output.file);
+    }
+
+    @Benchmark
+    public long asyncReportWriter(Output output) throws IOException {
+        try (SaleRowSink sink = SaleRowSink.async(SaleRowSink.file(output.file, output.format))) {
+            for (SaleRow row : output.saleRows) {
+                sink.accept(row);
+            }
+        }
+        return Files.size(output.file);
+    }
+
+    @Benchmark
+    public long exportFromDatabase(BookstoreState state, Output output) throws SQLException, IOException {
+        try (SaleRowSink sink = SaleRowSink.file(output.file, output.format)) {
+            return SalesReports.streamBookSalesReport(SalesReportQuery.all(), sink);
+        }
+    }
+
+    @Benchmark
+    public long exportFromDatabaseAsync(BookstoreState state, Output output) throws SQLException, IOException {
+        try (SaleRowSink sink = SaleRowSink.async(SaleRowSink.file(output.file, output.format))) {
+            return SalesReports.streamBookSalesReport(SalesReportQuery.all(), sink);
+        }
+    }
+}
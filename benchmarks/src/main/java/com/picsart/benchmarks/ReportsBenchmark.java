@@ -0,0 +1,47 @@
+package com.picsart.benchmarks;
+
+import com.picsart.Repositories;
+import com.picsart.SalesReports;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of both {@link SalesReports} methods over the seeded Sales table.
+ * <p>
+ * {@code revenueByGenre} measures what callers see, which is served from the in-memory totals once they
+ * are loaded; {@code revenueByGenreQuery} measures the aggregate query those totals are loaded and
+ * reconciled from.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ReportsBenchmark {
+
+    @Benchmark
+    public long bookSalesReport(BookstoreState state, Blackhole blackhole) throws SQLException, IOException {
+        return SalesReports.generateBookSalesReport(blackhole::consume);
+    }
+
+    @Benchmark
+    public Map<String, Double> revenueByGenre(BookstoreState state) throws SQLException {
+        return SalesReports.generateRevenueReportByGenre();
+    }
+
+    @Benchmark
+    public Map<String, Long> revenueByGenreQuery(BookstoreState state) throws SQLException {
+        return Repositories.sales().revenueCentsByGenre();
+    }
+}
@@ -0,0 +1,76 @@
+package com.picsart.benchmarks;
+
+import com.picsart.Configuration;
+import com.picsart.SaleQueue;
+import com.picsart.SaleResult;
+import com.picsart.SalesProcessing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency of {@link SalesProcessing#processNewSale} through the {@link SaleQueue} at
+ * several batch sizes. Compare with {@link SalesBenchmark} at the same thread count; a batch size of 1
+ * is one commit per sale with the queue's hand-off on top.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SaleQueueBenchmark {
+
+    private static final Date TODAY = Date.valueOf(LocalDate.now());
+
+    /**
+     * The running queue, started after the database of {@link BookstoreState}.
+     */
+    @State(Scope.Benchmark)
+    public static class QueueState {
+
+        @Param({"1", "8", "32"})
+        public int maxBatch;
+
+        @Param("2")
+        public long maxDelayMillis;
+
+        @Setup(Level.Trial)
+        public void start(BookstoreState bookstore) {
+            System.setProperty("sales.groupCommit.maxBatch", Integer.toString(maxBatch));
+            System.setProperty("sales.groupCommit.maxDelayMillis", Long.toString(maxDelayMillis));
+            SaleQueue.start(Configuration.load());
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            SaleQueue.stop();
+        }
+    }
+
+    @Benchmark
+    public SaleResult processNewSale(BookstoreState state, QueueState queue) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int customerId = 1 + random.nextInt(state.customers);
+        int bookId = 1 + random.nextInt(state.books);
+        SaleResult result = SalesProcessing.processNewSale(customerId, bookId, TODAY, 1);
+        if (!result.isCompleted()) {
+            throw new IllegalStateException("Sale failed: " + result.status() + " " + result.message());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,42 @@
+package com.picsart.benchmarks;
+
+import com.picsart.SaleResult;
+import com.picsart.SalesProcessing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link SalesProcessing#processNewSale}. Run it at several thread counts with
+ * {@code -t} or through {@link BenchmarkRunner} to see how the sale path scales.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SalesBenchmark {
+
+    private static final Date TODAY = Date.valueOf(LocalDate.now());
+
+    @Benchmark
+    public SaleResult processNewSale(BookstoreState state) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int customerId = 1 + random.nextInt(state.customers);
+        int bookId = 1 + random.nextInt(state.books);
+        SaleResult result = SalesProcessing.processNewSale(customerId, bookId, TODAY, 1);
+        if (!result.isCompleted()) {
+            throw new IllegalStateException("Sale failed: " + result.status() + " " + result.message());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,64 @@
+package com.picsart.benchmarks;
+
+import com.picsart.PhoneNumberValidation;
+import com.picsart.ValidationDate;
+import com.picsart.ValidationResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the phone number and date validators per value and per batch. Run with {@code -prof gc}
+ * (as {@link BenchmarkRunner} does) to see the allocation rate, which should be zero for single values
+ * and for batches validated into a reused array.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ValidationBenchmark {
+
+    private final PhoneNumberValidation phoneValidation = new PhoneNumberValidation();
+    private final ValidationDate dateValidation = new ValidationDate();
+
+    private final String[] phones = {
+            "+37494111111", "+37499123456", "+37412345678", "+3749411111", "37494111111x", "+37404111111"
+    };
+    private final String[] dates = {
+            "2000-02-29", "2023-02-29", "2024-12-31", "2021-04-31", "1999-13-01", "2021/01/01"
+    };
+    private final ValidationResult[] results = new ValidationResult[phones.length];
+    private int next;
+
+    @Benchmark
+    public ValidationResult phone() {
+        next = next + 1 == phones.length ? 0 : next + 1;
+        return phoneValidation.validate(phones[next]);
+    }
+
+    @Benchmark
+    public ValidationResult date() {
+        next = next + 1 == dates.length ? 0 : next + 1;
+        return dateValidation.validate(dates[next]);
+    }
+
+    @Benchmark
+    public int phoneBatch() {
+        return phoneValidation.validate(phones, results);
+    }
+
+    @Benchmark
+    public int dateBatch() {
+        return dateValidation.validate(dates, results);
+    }
+}
@@ -0,0 +1,147 @@
+package com.picsart;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Hands report rows to another sink on a background thread, so fetching rows from the database
+ * overlaps with formatting and writing them.
+ * <p>
+ * Rows are passed in batches of {@link #BATCH_SIZE} through a bounded queue; when the writer falls
+ * behind, {@link #accept} blocks instead of buffering the whole report. A failure of the delegate is
+ * reported by the next {@code accept} or by {@code close}, which also waits for every row to be written
+ * and then closes the delegate. If {@code close} is interrupted, the writer is interrupted and waited
+ * for before the delegate is closed.
+ */
+public class AsyncSaleRowSink implements SaleRowSink {
+
+    static final int BATCH_SIZE = 512;
+    private static final int QUEUED_BATCHES = 8;
+    private static final SaleRow[] END = new SaleRow[0];
+
+    private final SaleRowSink delegate;
+    private final BlockingQueue<SaleRow[]> batches = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+    private final Thread writer;
+    private volatile Exception failure;
+    private SaleRow[] batch = new SaleRow[BATCH_SIZE];
+    private int size;
+    private boolean closed;
+
+    /**
+     * Starts the writer thread.
+     *
+     * @param delegate The sink that formats and writes the rows; it is closed by {@link #close}.
+     */
+    public AsyncSaleRowSink(SaleRowSink delegate) {
+        this.delegate = delegate;
+        this.writer = new Thread(this::write, "report-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void accept(SaleRow row) throws IOException {
+        throwFailure();
+        batch[size++] = row;
+        if (size == BATCH_SIZE) {
+            handOff(batch);
+            batch = new SaleRow[BATCH_SIZE];
+            size = 0;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        boolean finished = false;
+        try {
+            if (size > 0) {
+                SaleRow[] last = new SaleRow[size];
+                System.arraycopy(batch, 0, last, 0, size);
+                handOff(last);
+            }
+            handOff(END);
+            writer.join();
+            finished = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing the report");
+        } finally {
+            if (!finished) {
+                stopWriter();
+            }
+            delegate.close();
+        }
+        throwFailure();
+    }
+
+    /**
+     * Interrupts the writer and waits for it to exit, so the delegate is not closed while it is still
+     * being written to. An interrupt of the calling thread is kept for after the wait.
+     */
+    private void stopWriter() {
+        writer.interrupt();
+        boolean interrupted = Thread.interrupted();
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handOff(SaleRow[] rows) throws IOException {
+        try {
+            batches.put(rows);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing the report");
+        }
+    }
+
+    /**
+     * Writes batches until the end marker. After a failure the remaining batches are only taken, so
+     * the producer never blocks on a full queue.
+     */
+    private void write() {
+        try {
+            while (true) {
+                SaleRow[] rows = batches.take();
+                if (rows == END) {
+                    return;
+                }
+                if (failure != null) {
+                    continue;
+                }
+                try {
+                    for (SaleRow row : rows) {
+                        delegate.accept(row);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    failure = e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void throwFailure() throws IOException {
+        Exception e = failure;
+        if (e instanceof IOException ioException) {
+            throw ioException;
+        }
+        if (e != null) {
+            throw (RuntimeException) e;
+        }
+    }
+}
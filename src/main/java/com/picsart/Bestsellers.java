@@ -0,0 +1,439 @@
+package com.picsart;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Best-selling and trending titles over sliding windows, maintained in memory from {@link SaleEvents}.
+ * <p>
+ * Copies sold are counted per book in ring buffers of time buckets: 60 one-minute buckets for the last
+ * hour and 168 one-hour buckets for the last day and week. Each window keeps a running total per book,
+ * to which a sale is added and from which a bucket is subtracted when it slides out. A refresher thread
+ * ranks the windows every {@code bestsellers.refreshSeconds} and publishes the top titles, so a query
+ * only reads the published lists and never touches the database.
+ * <p>
+ * A title is trending when its recent sales, decayed with a half-life of
+ * {@code bestsellers.trendingHalfLifeHours}, outpace its average rate over the week.
+ * <p>
+ * At start the windows are seeded from the last week of {@code Sales}. Sales carry only a date, so
+ * seeded sales count from the start of their day and do not appear in the hour window. Sales written by
+ * other instances are not seen until the next start. Events arriving while the seed runs are held back;
+ * the seed reads the highest sale ID in the same snapshot, and events of sales up to that ID are dropped
+ * as already counted.
+ */
+public class Bestsellers {
+
+    /**
+     * Sliding windows of the rankings.
+     */
+    public enum Window {
+        HOUR,
+        DAY,
+        WEEK
+    }
+
+    /**
+     * A ranked title.
+     *
+     * @param bookId The ID of the book.
+     * @param title  The title, or null if the book no longer exists.
+     * @param author The author, or null if the book no longer exists.
+     * @param copies Copies sold in the window; for trending titles, in the last day.
+     * @param score  The ranking score: the copies sold, or for trending titles how many times faster
+     *               than its weekly average the title is selling.
+     */
+    public record Bestseller(int bookId, String title, String author, long copies, double score) {
+    }
+
+    private static final long MINUTE_MILLIS = 60_000;
+    private static final long HOUR_MILLIS = 3_600_000;
+    private static final int MINUTES = 60;
+    private static final int HOURS = 168;
+    private static final int DAY_HOURS = 24;
+
+    private static final String HIGHEST_SALE_QUERY = "SELECT COALESCE(MAX(SaleID), 0) FROM Sales";
+    private static final String SEED_QUERY =
+            "SELECT DateOfSale, BookID, SUM(QuantitySold) FROM Sales " +
+                    "WHERE DateOfSale >= ? AND DateOfSale <= ? AND BookID IS NOT NULL " +
+                    "GROUP BY DateOfSale, BookID";
+
+    private static final ReentrantLock LOCK = new ReentrantLock();
+    private static final IntLongMap[] MINUTE_BUCKETS = new IntLongMap[MINUTES];
+    private static final IntLongMap[] HOUR_BUCKETS = new IntLongMap[HOURS];
+    private static final Map<Window, IntLongMap> TOTALS = new EnumMap<>(Window.class);
+    private static final Consumer<SaleResult> SUBSCRIBER = Bestsellers::record;
+
+    static {
+        for (int i = 0; i < MINUTES; i++) {
+            MINUTE_BUCKETS[i] = new IntLongMap();
+        }
+        for (int i = 0; i < HOURS; i++) {
+            HOUR_BUCKETS[i] = new IntLongMap();
+        }
+        for (Window window : Window.values()) {
+            TOTALS.put(window, new IntLongMap(1024));
+        }
+    }
+
+    /**
+     * Events received while seeding, or null once the seed is counted.
+     */
+    private static List<SaleResult> heldBack;
+    private static long seededThrough;
+    private static long currentMinute;
+    private static long currentHour;
+    private static int topSize;
+    private static double halfLifeHours;
+    private static volatile Map<Window, List<Bestseller>> top = Map.of();
+    private static volatile List<Bestseller> trending = List.of();
+    private static ScheduledExecutorService refresher;
+
+    /**
+     * Starts counting sales, seeds the windows from {@code Sales} and schedules the ranking, if
+     * {@code bestsellers.enabled} is set.
+     *
+     * @param configuration The application configuration.
+     * @throws SQLException If the windows cannot be seeded.
+     */
+    public static synchronized void start(Configuration configuration) throws SQLException {
+        if (refresher != null || !configuration.getBoolean("bestsellers.enabled", true)) {
+            return;
+        }
+        topSize = Math.max(1, configuration.getInt("bestsellers.topSize", 20));
+        halfLifeHours = Math.max(0.1, configuration.getLong("bestsellers.trendingHalfLifeHours", 6));
+        long refreshSeconds = Math.max(1, configuration.getLong("bestsellers.refreshSeconds", 5));
+
+        LOCK.lock();
+        try {
+            long now = System.currentTimeMillis();
+            currentMinute = now / MINUTE_MILLIS;
+            currentHour = now / HOUR_MILLIS;
+            heldBack = new ArrayList<>();
+            seededThrough = Long.MAX_VALUE;
+        } finally {
+            LOCK.unlock();
+        }
+        SaleEvents.subscribe(SUBSCRIBER);
+        long highestSeeded;
+        try {
+            highestSeeded = seed();
+        } catch (SQLException e) {
+            SaleEvents.unsubscribe(SUBSCRIBER);
+            clear();
+            throw e;
+        }
+        LOCK.lock();
+        try {
+            seededThrough = highestSeeded;
+            List<SaleResult> held = heldBack;
+            heldBack = null;
+            for (SaleResult sale : held) {
+                count(sale);
+            }
+        } finally {
+            LOCK.unlock();
+        }
+        refresh();
+
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bestsellers-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(Bestsellers::refresh, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops counting and drops the rankings.
+     */
+    public static synchronized void stop() {
+        if (refresher == null) {
+            return;
+        }
+        refresher.shutdownNow();
+        refresher = null;
+        SaleEvents.unsubscribe(SUBSCRIBER);
+        clear();
+        top = Map.of();
+        trending = List.of();
+    }
+
+    public static boolean isRunning() {
+        return refresher != null;
+    }
+
+    /**
+     * Returns the best-selling titles of a window as of the last refresh.
+     *
+     * @param window The window.
+     * @param limit  Maximum number of titles; at most {@code bestsellers.topSize} are kept.
+     * @return The titles, most copies first; empty if the tracker is not running.
+     */
+    public static List<Bestseller> top(Window window, int limit) {
+        List<Bestseller> ranking = top.getOrDefault(window, List.of());
+        return ranking.subList(0, Math.min(limit, ranking.size()));
+    }
+
+    /**
+     * Returns the titles selling fastest relative to their weekly average, as of the last refresh.
+     *
+     * @param limit Maximum number of titles; at most {@code bestsellers.topSize} are kept.
+     * @return The titles, fastest rise first; empty if the tracker is not running.
+     */
+    public static List<Bestseller> trending(int limit) {
+        List<Bestseller> ranking = trending;
+        return ranking.subList(0, Math.min(limit, ranking.size()));
+    }
+
+    private static void record(SaleResult sale) {
+        LOCK.lock();
+        try {
+            if (heldBack != null) {
+                heldBack.add(sale);
+            } else {
+                count(sale);
+            }
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    /**
+     * Adds a sale unless the seed counted it. Must be called under {@link #LOCK}.
+     */
+    private static void count(SaleResult sale) {
+        if (sale.saleId() <= seededThrough) {
+            return;
+        }
+        advance(System.currentTimeMillis());
+        int bookId = sale.bookId();
+        int quantity = sale.quantity();
+        MINUTE_BUCKETS[(int) (currentMinute % MINUTES)].add(bookId, quantity);
+        HOUR_BUCKETS[(int) (currentHour % HOURS)].add(bookId, quantity);
+        for (IntLongMap totals : TOTALS.values()) {
+            totals.add(bookId, quantity);
+        }
+    }
+
+    /**
+     * Adds the copies sold per book and day in the last week, each at the start of its day.
+     *
+     * @return The highest sale ID in the snapshot the seed was read from.
+     */
+    private static long seed() throws SQLException {
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate today = LocalDate.now(zone);
+        try (Connection connection = DatabaseConnection.connection()) {
+            connection.setAutoCommit(false);
+            connection.setReadOnly(true);
+            try (PreparedStatement preparedStatement =
+                         connection.prepareStatement("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ")) {
+                preparedStatement.execute();
+            }
+            long highestSaleId;
+            try (PreparedStatement preparedStatement = connection.prepareStatement(HIGHEST_SALE_QUERY);
+                 ResultSet resultSet = preparedStatement.executeQuery()) {
+                resultSet.next();
+                highestSaleId = resultSet.getLong(1);
+            }
+            try (PreparedStatement preparedStatement = connection.prepareStatement(SEED_QUERY)) {
+                preparedStatement.setDate(1, Date.valueOf(today.minusDays(7)));
+                preparedStatement.setDate(2, Date.valueOf(today));
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        long hour = resultSet.getDate(1).toLocalDate().atStartOfDay(zone).toInstant().toEpochMilli()
+                                / HOUR_MILLIS;
+                        seed(hour, resultSet.getInt(2), resultSet.getLong(3));
+                    }
+                }
+            }
+            connection.commit();
+            return highestSaleId;
+        }
+    }
+
+    private static void seed(long hour, int bookId, long copies) {
+        LOCK.lock();
+        try {
+            long age = currentHour - hour;
+            if (age < 0 || age >= HOURS) {
+                return;
+            }
+            HOUR_BUCKETS[(int) (hour % HOURS)].add(bookId, copies);
+            TOTALS.get(Window.WEEK).add(bookId, copies);
+            if (age < DAY_HOURS) {
+                TOTALS.get(Window.DAY).add(bookId, copies);
+            }
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    /**
+     * Slides the windows to the given time. Must be called under {@link #LOCK}.
+     */
+    private static void advance(long nowMillis) {
+        long minute = nowMillis / MINUTE_MILLIS;
+        if (minute - currentMinute >= MINUTES) {
+            for (IntLongMap bucket : MINUTE_BUCKETS) {
+                bucket.clear();
+            }
+            TOTALS.get(Window.HOUR).clear();
+            currentMinute = minute;
+        }
+        while (currentMinute < minute) {
+            IntLongMap leaving = MINUTE_BUCKETS[(int) (++currentMinute % MINUTES)];
+            TOTALS.get(Window.HOUR).subtractAll(leaving);
+            leaving.clear();
+        }
+
+        long hour = nowMillis / HOUR_MILLIS;
+        if (hour - currentHour >= HOURS) {
+            for (IntLongMap bucket : HOUR_BUCKETS) {
+                bucket.clear();
+            }
+            TOTALS.get(Window.DAY).clear();
+            TOTALS.get(Window.WEEK).clear();
+            currentHour = hour;
+        }
+        while (currentHour < hour) {
+            currentHour++;
+            TOTALS.get(Window.DAY).subtractAll(HOUR_BUCKETS[(int) ((currentHour - DAY_HOURS) % HOURS)]);
+            IntLongMap leaving = HOUR_BUCKETS[(int) (currentHour % HOURS)];
+            TOTALS.get(Window.WEEK).subtractAll(leaving);
+            leaving.clear();
+        }
+    }
+
+    /**
+     * Ranks the windows and publishes the results.
+     */
+    private static void refresh() {
+        Map<Window, int[]> rankedBooks = new EnumMap<>(Window.class);
+        Map<Window, long[]> rankedCopies = new EnumMap<>(Window.class);
+        List<double[]> rising;
+        LOCK.lock();
+        try {
+            advance(System.currentTimeMillis());
+            for (Window window : Window.values()) {
+                PriorityQueue<long[]> heap = new PriorityQueue<>(Comparator.comparingLong((long[] entry) -> entry[1]));
+                TOTALS.get(window).forEach((bookId, copies) -> offer(heap, new long[]{bookId, copies}));
+                int[] books = new int[heap.size()];
+                long[] copies = new long[heap.size()];
+                for (int i = books.length - 1; i >= 0; i--) {
+                    long[] entry = heap.poll();
+                    books[i] = (int) entry[0];
+                    copies[i] = entry[1];
+                }
+                rankedBooks.put(window, books);
+                rankedCopies.put(window, copies);
+            }
+            rising = rankTrending();
+        } finally {
+            LOCK.unlock();
+        }
+
+        Map<Window, List<Bestseller>> ranked = new EnumMap<>(Window.class);
+        for (Window window : Window.values()) {
+            int[] books = rankedBooks.get(window);
+            long[] copies = rankedCopies.get(window);
+            List<Bestseller> ranking = new ArrayList<>(books.length);
+            for (int i = 0; i < books.length; i++) {
+                ranking.add(bestseller(books[i], copies[i], copies[i]));
+            }
+            ranked.put(window, List.copyOf(ranking));
+        }
+        List<Bestseller> trend = new ArrayList<>(rising.size());
+        for (double[] entry : rising) {
+            trend.add(bestseller((int) entry[0], (long) entry[1], entry[2]));
+        }
+        top = ranked;
+        trending = List.copyOf(trend);
+    }
+
+    /**
+     * Scores every book sold in the last week by its decayed recent sales over the decayed sales a
+     * steady weekly average would give, plus one copy of smoothing each. Must be called under {@link #LOCK}.
+     *
+     * @return {bookId, copies in the last day, score}, highest score first.
+     */
+    private static List<double[]> rankTrending() {
+        IntLongMap decayedMillis = new IntLongMap(TOTALS.get(Window.WEEK).size());
+        for (int age = 0; age < HOURS; age++) {
+            double weight = Math.pow(0.5, age / halfLifeHours);
+            IntLongMap bucket = HOUR_BUCKETS[(int) ((currentHour - age) % HOURS)];
+            bucket.forEach((bookId, copies) -> decayedMillis.add(bookId, Math.round(copies * weight * 1000)));
+        }
+        double decayedHours = halfLifeHours / Math.log(2) * (1 - Math.pow(0.5, HOURS / halfLifeHours));
+
+        PriorityQueue<double[]> heap = new PriorityQueue<>(Comparator.comparingDouble((double[] entry) -> entry[2]));
+        IntLongMap day = TOTALS.get(Window.DAY);
+        TOTALS.get(Window.WEEK).forEach((bookId, weekCopies) -> {
+            double recent = decayedMillis.get(bookId) / 1000.0;
+            double expected = weekCopies / (double) HOURS * decayedHours;
+            double score = (recent + 1) / (expected + 1);
+            if (score > 1) {
+                heap.offer(new double[]{bookId, day.get(bookId), score});
+                if (heap.size() > topSize) {
+                    heap.poll();
+                }
+            }
+        });
+        List<double[]> ranked = new ArrayList<>(heap);
+        ranked.sort(Comparator.comparingDouble((double[] entry) -> entry[2]).reversed());
+        return ranked;
+    }
+
+    private static void offer(PriorityQueue<long[]> heap, long[] entry) {
+        heap.offer(entry);
+        if (heap.size() > topSize) {
+            heap.poll();
+        }
+    }
+
+    private static Bestseller bestseller(int bookId, long copies, double score) {
+        try {
+            Book book = BookCatalog.get(bookId);
+            if (book != null) {
+                return new Bestseller(bookId, book.title(), book.author(), copies, score);
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return new Bestseller(bookId, null, null, copies, score);
+    }
+
+    private static void clear() {
+        LOCK.lock();
+        try {
+            heldBack = null;
+            for (IntLongMap bucket : MINUTE_BUCKETS) {
+                bucket.clear();
+            }
+            for (IntLongMap bucket : HOUR_BUCKETS) {
+                bucket.clear();
+            }
+            for (IntLongMap totals : TOTALS.values()) {
+                totals.clear();
+            }
+        } finally {
+            LOCK.unlock();
+        }
+    }
+}
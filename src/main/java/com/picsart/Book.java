@@ -0,0 +1,19 @@
+package com.picsart;
+
+/**
+ * Immutable snapshot of a row of the {@code Books} table.
+ *
+ * @param bookId          The ID of the book.
+ * @param title           The title.
+ * @param author          The author.
+ * @param genre           The genre.
+ * @param price           The unit price.
+ * @param quantityInStock The stock when the snapshot was taken; informational only, sales always
+ *                        check stock in the database.
+ */
+public record Book(int bookId, String title, String author, String genre, double price, int quantityInStock) {
+
+    public Book withQuantityInStock(int quantityInStock) {
+        return new Book(bookId, title, author, genre, price, quantityInStock);
+    }
+}
@@ -0,0 +1,248 @@
+package com.picsart;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Read-through cache of {@link Book} records.
+ * <p>
+ * Books are cached by ID in a size-bounded LRU map. Genre and author searches are cached as lists of
+ * book IDs in two secondary LRU indexes; a search is answered from memory only while every book it
+ * lists is still cached. {@link BooksManagement#updateBookDetails} invalidates the changed book and the
+ * search indexes, and with {@code catalog.notify.enabled} the invalidation is broadcast to other
+ * application instances through Postgres {@code NOTIFY} (see {@link CatalogInvalidationListener}).
+ * <p>
+ * Every invalidation bumps a generation counter. A load captures it before reading the database and
+ * caches its result only if no invalidation happened meanwhile, so a book read just before it changed
+ * is not cached again after the invalidation.
+ * <p>
+ * Stock in cached books is adjusted by this instance's sales but is informational only: the sale path
+ * always checks stock in the database.
+ */
+public class BookCatalog {
+
+    /**
+     * Channel used to broadcast invalidations between application instances.
+     */
+    public static final String NOTIFY_CHANNEL = "book_catalog";
+
+    private static final ReentrantLock LOCK = new ReentrantLock();
+    private static final Map<Integer, Book> BOOKS;
+    private static final Map<String, int[]> BY_GENRE;
+    private static final Map<String, int[]> BY_AUTHOR;
+    private static final Consumer<SaleResult> SALE_SUBSCRIBER = BookCatalog::onSale;
+
+    /**
+     * Number of invalidations so far; only changed under {@link #LOCK}.
+     */
+    private static volatile long generation;
+
+    static {
+        Configuration configuration = Configuration.load();
+        BOOKS = lru(configuration.getInt("catalog.maxBooks", 10_000));
+        int maxSearches = configuration.getInt("catalog.maxSearches", 1_000);
+        BY_GENRE = lru(maxSearches);
+        BY_AUTHOR = lru(maxSearches);
+        SaleEvents.subscribe(SALE_SUBSCRIBER);
+    }
+
+    /**
+     * Returns a book, loading it on a cache miss.
+     *
+     * @param bookId The ID of the book.
+     * @return The book, or null if it does not exist.
+     * @throws SQLException If the book has to be loaded and the query fails.
+     */
+    public static Book get(int bookId) throws SQLException {
+        Book book = cached(bookId);
+        if (book != null) {
+            return book;
+        }
+        long loadedGeneration = generation;
+        book = Repositories.books().findById(bookId).orElse(null);
+        if (book != null) {
+            put(book, loadedGeneration);
+        }
+        return book;
+    }
+
+    /**
+     * Returns the books of a genre, ordered by ID.
+     *
+     * @param genre The exact genre.
+     * @return The matching books.
+     * @throws SQLException If the search has to be run and the query fails.
+     */
+    public static List<Book> findByGenre(String genre) throws SQLException {
+        List<Book> books = fromIndex(BY_GENRE, genre);
+        if (books != null) {
+            return books;
+        }
+        long loadedGeneration = generation;
+        return index(BY_GENRE, genre, Repositories.books().findByGenre(genre), loadedGeneration);
+    }
+
+    /**
+     * Returns the books of an author, ordered by ID.
+     *
+     * @param author The exact author.
+     * @return The matching books.
+     * @throws SQLException If the search has to be run and the query fails.
+     */
+    public static List<Book> findByAuthor(String author) throws SQLException {
+        List<Book> books = fromIndex(BY_AUTHOR, author);
+        if (books != null) {
+            return books;
+        }
+        long loadedGeneration = generation;
+        return index(BY_AUTHOR, author, Repositories.books().findByAuthor(author), loadedGeneration);
+    }
+
+    /**
+     * Drops a book and all cached searches, since the book may have changed genre or author, and
+     * schedules a rebuild of the {@link BookTypeahead} index.
+     *
+     * @param bookId The ID of the changed book.
+     */
+    public static void invalidate(int bookId) {
+        LOCK.lock();
+        try {
+            generation++;
+            BOOKS.remove(bookId);
+            BY_GENRE.clear();
+            BY_AUTHOR.clear();
+        } finally {
+            LOCK.unlock();
+        }
+        BookTypeahead.invalidate();
+    }
+
+    /**
+     * Empties the cache.
+     */
+    public static void clear() {
+        LOCK.lock();
+        try {
+            generation++;
+            BOOKS.clear();
+            BY_GENRE.clear();
+            BY_AUTHOR.clear();
+        } finally {
+            LOCK.unlock();
+        }
+        BookTypeahead.invalidate();
+    }
+
+    /**
+     * Drops a book locally and tells other instances to do the same.
+     *
+     * @param bookId The ID of the changed book.
+     * @throws SQLException If the notification cannot be sent.
+     */
+    static void invalidateEverywhere(int bookId) throws SQLException {
+        invalidate(bookId);
+        if (CatalogInvalidationListener.isEnabled()) {
+            try (Connection connection = DatabaseConnection.connection();
+                 PreparedStatement preparedStatement = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+                preparedStatement.setString(1, NOTIFY_CHANNEL);
+                preparedStatement.setString(2, Integer.toString(bookId));
+                preparedStatement.execute();
+            }
+        }
+    }
+
+    /**
+     * Caches the books of a search and the search itself, unless the cache was invalidated since the
+     * search was loaded.
+     */
+    private static List<Book> index(Map<String, int[]> index, String value, List<Book> books, long loadedGeneration) {
+        int[] ids = new int[books.size()];
+        LOCK.lock();
+        try {
+            if (generation != loadedGeneration) {
+                return books;
+            }
+            for (int i = 0; i < ids.length; i++) {
+                Book book = books.get(i);
+                ids[i] = book.bookId();
+                BOOKS.put(book.bookId(), book);
+            }
+            index.put(value, ids);
+        } finally {
+            LOCK.unlock();
+        }
+        return books;
+    }
+
+    /**
+     * Resolves a cached search, or returns null if it is not cached or one of its books was evicted.
+     */
+    private static List<Book> fromIndex(Map<String, int[]> index, String value) {
+        LOCK.lock();
+        try {
+            int[] ids = index.get(value);
+            if (ids == null) {
+                return null;
+            }
+            List<Book> books = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                Book book = BOOKS.get(id);
+                if (book == null) {
+                    index.remove(value);
+                    return null;
+                }
+                books.add(book);
+            }
+            return books;
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    private static Book cached(int bookId) {
+        LOCK.lock();
+        try {
+            return BOOKS.get(bookId);
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    private static void put(Book book, long loadedGeneration) {
+        LOCK.lock();
+        try {
+            if (generation != loadedGeneration) {
+                return;
+            }
+            BOOKS.put(book.bookId(), book);
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    private static void onSale(SaleResult sale) {
+        LOCK.lock();
+        try {
+            BOOKS.computeIfPresent(sale.bookId(),
+                    (id, book) -> book.withQuantityInStock(book.quantityInStock() - sale.quantity()));
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    private static <K, V> Map<K, V> lru(int maxSize) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+}
@@ -0,0 +1,56 @@
+package com.picsart;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Data access for the {@code Books} table.
+ */
+public interface BookRepository {
+
+    /**
+     * Finds a book by ID.
+     *
+     * @param bookId The ID of the book.
+     * @return The book, if it exists.
+     * @throws SQLException If a database access error occurs.
+     */
+    Optional<Book> findById(int bookId) throws SQLException;
+
+    /**
+     * Finds the books of a genre, ordered by ID.
+     *
+     * @param genre The exact genre.
+     * @return The matching books.
+     * @throws SQLException If a database access error occurs.
+     */
+    List<Book> findByGenre(String genre) throws SQLException;
+
+    /**
+     * Finds the books of an author, ordered by ID.
+     *
+     * @param author The exact author.
+     * @return The matching books.
+     * @throws SQLException If a database access error occurs.
+     */
+    List<Book> findByAuthor(String author) throws SQLException;
+
+    /**
+     * Searches titles and authors, best match first and then by ID.
+     *
+     * @param query The search.
+     * @return One page of matching books.
+     * @throws SQLException If a database access error occurs.
+     */
+    List<BookSearchHit> search(BookSearchQuery query) throws SQLException;
+
+    /**
+     * Overwrites title, author, genre, price and stock of a book.
+     *
+     * @param book The new book details; the ID selects the row.
+     * @return True if the book exists and was updated.
+     * @throws SQLException If a database access error occurs.
+     */
+    boolean update(Book book) throws SQLException;
+}
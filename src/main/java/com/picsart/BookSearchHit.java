@@ -0,0 +1,10 @@
+package com.picsart;
+
+/**
+ * A book found by a {@link BookSearchQuery}.
+ *
+ * @param book The book.
+ * @param rank Relevance of the match; higher is better, comparable only within one search.
+ */
+public record BookSearchHit(Book book, double rank) {
+}
@@ -0,0 +1,94 @@
+package com.picsart;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * A ranked search over book titles and authors.
+ *
+ * @param text   What the user typed.
+ * @param fields The columns to search; only the columns of {@link Field} can be searched.
+ * @param mode   How the text is matched.
+ * @param limit  Maximum number of results.
+ * @param offset Number of results to skip.
+ */
+public record BookSearchQuery(String text, Set<Field> fields, Mode mode, int limit, int offset) {
+
+    /**
+     * Searchable columns.
+     */
+    public enum Field {
+        TITLE("Title", 'A'),
+        AUTHOR("Author", 'B');
+
+        private final String column;
+        private final char weight;
+
+        Field(String column, char weight) {
+            this.column = column;
+            this.weight = weight;
+        }
+
+        /**
+         * The column name, safe to put into SQL.
+         */
+        String column() {
+            return column;
+        }
+
+        /**
+         * The weight label of the column's words in {@code Books.SearchVector}.
+         */
+        char weight() {
+            return weight;
+        }
+    }
+
+    /**
+     * Ways of matching the text.
+     */
+    public enum Mode {
+        /**
+         * Every word of the text must start a word of a searched column, in any order, e.g.
+         * {@code harr pot} finds "Harry Potter". Ranked by full-text relevance.
+         */
+        WORDS,
+        /**
+         * The text must occur anywhere in a searched column, e.g. {@code otter} finds "Harry Potter".
+         * Ranked by trigram similarity; needs at least three characters to use the index.
+         */
+        CONTAINS
+    }
+
+    public BookSearchQuery {
+        if (text == null || fields == null || fields.isEmpty() || mode == null) {
+            throw new IllegalArgumentException("Search text, fields and mode are required");
+        }
+        if (limit < 1 || offset < 0) {
+            throw new IllegalArgumentException("Invalid search page");
+        }
+        fields = Collections.unmodifiableSet(EnumSet.copyOf(fields));
+    }
+
+    /**
+     * Searches titles and authors by words.
+     */
+    public static BookSearchQuery words(String text, int limit) {
+        return new BookSearchQuery(text, EnumSet.allOf(Field.class), Mode.WORDS, limit, 0);
+    }
+
+    /**
+     * The same search, the given page.
+     */
+    public BookSearchQuery page(int limit, int offset) {
+        return new BookSearchQuery(text, fields, mode, limit, offset);
+    }
+
+    /**
+     * The same search in another mode, from the first result.
+     */
+    public BookSearchQuery withMode(Mode mode) {
+        return new BookSearchQuery(text, fields, mode, limit, 0);
+    }
+}
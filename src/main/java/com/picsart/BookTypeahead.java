@@ -0,0 +1,214 @@
+package com.picsart;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional in-memory prefix index of book titles and authors for typeahead suggestions.
+ * <p>
+ * The index holds every book's ID, title and author, sorted by title, and a sorted array of the distinct
+ * lower-case words of titles and authors, each with the set of books using it. Looking up a prefix is a
+ * binary search for the first matching word followed by a scan of the matching words; a query of
+ * several words intersects their book sets, so {@code harr pot} suggests "Harry Potter". Suggestions
+ * come in title order. Nothing touches the database on a keystroke.
+ * <p>
+ * The index is rebuilt from {@code Books} every {@code search.typeahead.refreshSeconds} and soon after
+ * {@link BookCatalog} is invalidated, so edits show up after a short delay. It is enabled with
+ * {@code search.typeahead.enabled}; without it suggestions come from the database.
+ */
+public class BookTypeahead {
+
+    private static final String SELECT_BOOKS_QUERY = "SELECT BookID, Title, Author FROM Books ORDER BY Title, BookID";
+
+    private static volatile Index index;
+    private static ScheduledExecutorService refresher;
+
+    /**
+     * A suggested book.
+     *
+     * @param bookId The ID of the book.
+     * @param title  The title.
+     * @param author The author.
+     */
+    public record Suggestion(int bookId, String title, String author) {
+    }
+
+    /**
+     * An immutable snapshot of the catalog's words.
+     *
+     * @param books    Every book, in title order; positions in this array are the members of the book sets.
+     * @param words    The distinct words, sorted.
+     * @param postings The books of each word, as positions in {@code books}.
+     */
+    private record Index(Suggestion[] books, String[] words, BitSet[] postings) {
+    }
+
+    /**
+     * Builds the index and schedules its refresh, if {@code search.typeahead.enabled} is set.
+     *
+     * @param configuration The application settings.
+     * @throws SQLException If the index cannot be built.
+     */
+    public static synchronized void start(Configuration configuration) throws SQLException {
+        if (refresher != null || !configuration.getBoolean("search.typeahead.enabled", false)) {
+            return;
+        }
+        long refreshSeconds = Math.max(1, configuration.getLong("search.typeahead.refreshSeconds", 300));
+        index = build();
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "book-typeahead-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(BookTypeahead::refresh, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops refreshing and drops the index.
+     */
+    public static synchronized void stop() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+        index = null;
+    }
+
+    /**
+     * Returns whether suggestions are served from memory.
+     */
+    public static boolean isRunning() {
+        return index != null;
+    }
+
+    /**
+     * Schedules a rebuild, e.g. after a book changed.
+     */
+    static synchronized void invalidate() {
+        if (refresher != null) {
+            refresher.execute(BookTypeahead::refresh);
+        }
+    }
+
+    /**
+     * Suggests books whose title or author has a word starting with each word of the prefix.
+     *
+     * @param prefix What the user typed so far.
+     * @param limit  Maximum number of suggestions.
+     * @return Suggestions in title order; empty if the index is not running or the prefix has no words.
+     */
+    public static List<Suggestion> suggest(String prefix, int limit) {
+        Index current = index;
+        List<Suggestion> suggestions = new ArrayList<>();
+        if (current == null) {
+            return suggestions;
+        }
+        BitSet matches = null;
+        for (String word : words(prefix)) {
+            BitSet books = booksWithPrefix(current, word);
+            if (matches == null) {
+                matches = books;
+            } else {
+                matches.and(books);
+            }
+            if (matches.isEmpty()) {
+                return suggestions;
+            }
+        }
+        if (matches == null) {
+            return suggestions;
+        }
+        for (int i = matches.nextSetBit(0); i >= 0 && suggestions.size() < limit; i = matches.nextSetBit(i + 1)) {
+            suggestions.add(current.books()[i]);
+        }
+        return suggestions;
+    }
+
+    private static void refresh() {
+        try {
+            Index rebuilt = build();
+            synchronized (BookTypeahead.class) {
+                if (refresher != null) {
+                    index = rebuilt;
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getSQLState());
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private static Index build() throws SQLException {
+        List<Suggestion> books = new ArrayList<>();
+        try (Connection connection = DatabaseConnection.connection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SELECT_BOOKS_QUERY);
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            while (resultSet.next()) {
+                books.add(new Suggestion(resultSet.getInt(1), resultSet.getString(2), resultSet.getString(3)));
+            }
+        }
+
+        Map<String, BitSet> postings = new HashMap<>();
+        for (int i = 0; i < books.size(); i++) {
+            Suggestion book = books.get(i);
+            for (String word : words(book.title())) {
+                postings.computeIfAbsent(word, w -> new BitSet()).set(i);
+            }
+            for (String word : words(book.author())) {
+                postings.computeIfAbsent(word, w -> new BitSet()).set(i);
+            }
+        }
+        TreeMap<String, BitSet> sorted = new TreeMap<>(postings);
+        return new Index(books.toArray(new Suggestion[0]),
+                sorted.keySet().toArray(new String[0]),
+                sorted.values().toArray(new BitSet[0]));
+    }
+
+    /**
+     * Returns the union of the book sets of every word starting with the prefix.
+     */
+    private static BitSet booksWithPrefix(Index index, String prefix) {
+        BitSet books = new BitSet(index.books().length);
+        int i = Arrays.binarySearch(index.words(), prefix);
+        for (i = i >= 0 ? i : -i - 1; i < index.words().length && index.words()[i].startsWith(prefix); i++) {
+            books.or(index.postings()[i]);
+        }
+        return books;
+    }
+
+    /**
+     * Splits text into lower-case words of letters and digits.
+     */
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        int i = 0;
+        while (i < text.length()) {
+            if (!Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < text.length() && Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+        }
+        return words;
+    }
+}
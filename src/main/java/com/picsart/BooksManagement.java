@@ -1,6 +1,8 @@
 package com.picsart;
 
-import java.sql.*;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Class for managing book-related operations in the Bookstore Management System.
@@ -10,82 +12,90 @@ public class BooksManagement {
     /**
      * Updates the details of a book in the database.
      *
-     * @param connection         The database connection.
      * @param bookId             The ID of the book to update.
      * @param newTitle           The new title for the book.
      * @param newAuthor          The new author for the book.
      * @param newGenre           The new genre for the book.
      * @param newPrice           The new price for the book.
      * @param newQuantityInStock The new quantity in stock for the book.
+     * @return True if the book was found and updated.
+     * @throws SQLException If a database access error occurs.
      */
-    public static void updateBookDetails(
-            Connection connection,
+    public static boolean updateBookDetails(
             int bookId,
             String newTitle,
             String newAuthor,
             String newGenre,
             double newPrice,
             int newQuantityInStock
-           ) {
+           ) throws SQLException {
 
+        Book book = new Book(bookId, newTitle, newAuthor, newGenre, newPrice, newQuantityInStock);
 
-        String updateQuery = "UPDATE Books SET Title = ?, Author = ?, Genre = ?, Price = ?, QuantityInStock = ? WHERE BookID = ?";
-
-        try (PreparedStatement preparedStatement = connection.prepareStatement(updateQuery)) {
-            preparedStatement.setString(1, newTitle);
-            preparedStatement.setString(2, newAuthor);
-            preparedStatement.setString(3, newGenre);
-            preparedStatement.setDouble(4, newPrice);
-            preparedStatement.setInt(5, newQuantityInStock);
-            preparedStatement.setInt(6, bookId);
-
-
-            int rowsAffected = preparedStatement.executeUpdate();
-
-            if (rowsAffected > 0) {
-                System.out.println("Book details updated successfully.");
-            } else {
-                System.out.println("No book found with the given ID.");
+        try (Metrics.Scope ignored = Metrics.begin("BooksManagement.updateBookDetails")) {
+            try (StockLedger.DirectUpdate ignoredUpdate = StockLedger.directUpdate(bookId)) {
+                if (!Repositories.books().update(book)) {
+                    return false;
+                }
             }
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            BookCatalog.invalidateEverywhere(bookId);
+            return true;
         }
     }
 
     /**
-     * Lists books based on a given genre or author from the database.
+     * Lists books based on a given genre or author, served from the {@link BookCatalog} cache.
      *
-     * @param connection The database connection.
      * @param searchBy   The field to search by (genre or author).
      * @param searchValue The value to search for in the specified field.
+     * @return The matching books, ordered by ID.
+     * @throws SQLException If a database access error occurs.
+     * @throws IllegalArgumentException If {@code searchBy} is neither genre nor author.
      */
-    public static void listBooksByGenreOrAuthor(Connection connection, String searchBy, String searchValue) {
-
-        String selectQuery = "SELECT * FROM Books WHERE " + searchBy + " = ?";
-
-        try (PreparedStatement preparedStatement = connection.prepareStatement(selectQuery)) {
-            preparedStatement.setString(1, searchValue);
-            try (ResultSet resultSet = preparedStatement.executeQuery()) {
-                if (resultSet.next()) {
-                    System.out.println("Books found:");
-                    do {
-                        System.out.println("ID: " + resultSet.getInt("BookID") +
-                                ", Title: " + resultSet.getString("Title") +
-                                ", Author: " + resultSet.getString("Author") +
-                                ", Genre: " + resultSet.getString("Genre") +
-                                ", Price: " + resultSet.getDouble("Price") +
-                                ", QuantityInStock: " + resultSet.getInt("QuantityInStock"));
-                    } while (resultSet.next());
-                } else {
-                    System.out.println("No books found with the given " + searchBy + ".");
-                }
+    public static List<Book> listBooksByGenreOrAuthor(String searchBy, String searchValue) throws SQLException {
+        if (searchBy.equalsIgnoreCase("genre")) {
+            try (Metrics.Scope ignored = Metrics.begin("BooksManagement.listBooksByGenre")) {
+                return BookCatalog.findByGenre(searchValue);
             }
         }
-        catch (SQLException e) {
-            System.out.println(e.getErrorCode());
-            System.out.println(e.getSQLState());
-            System.out.println(e.getMessage());
+        if (searchBy.equalsIgnoreCase("author")) {
+            try (Metrics.Scope ignored = Metrics.begin("BooksManagement.listBooksByAuthor")) {
+                return BookCatalog.findByAuthor(searchValue);
+            }
         }
+        throw new IllegalArgumentException("Books can only be searched by genre or author.");
+    }
 
+    /**
+     * Searches book titles and authors by words or by partial text, best match first.
+     *
+     * @param query The search and the page to return.
+     * @return The matching books with their rank.
+     * @throws SQLException If a database access error occurs.
+     */
+    public static List<BookSearchHit> searchBooks(BookSearchQuery query) throws SQLException {
+        try (Metrics.Scope ignored = Metrics.begin("BooksManagement.searchBooks")) {
+            return Repositories.books().search(query);
+        }
+    }
+
+    /**
+     * Suggests books for what a clerk has typed so far, from the in-memory {@link BookTypeahead} index
+     * when it is running and from a word-prefix search otherwise.
+     *
+     * @param prefix The typed text.
+     * @param limit  Maximum number of suggestions.
+     * @return The suggested books.
+     * @throws SQLException If the database has to be searched and the query fails.
+     */
+    public static List<BookTypeahead.Suggestion> suggestBooks(String prefix, int limit) throws SQLException {
+        if (BookTypeahead.isRunning()) {
+            return BookTypeahead.suggest(prefix, limit);
+        }
+        List<BookTypeahead.Suggestion> suggestions = new ArrayList<>();
+        for (BookSearchHit hit : searchBooks(BookSearchQuery.words(prefix, limit))) {
+            suggestions.add(new BookTypeahead.Suggestion(hit.book().bookId(), hit.book().title(), hit.book().author()));
+        }
+        return suggestions;
     }
-}
\ No newline at end of file
+}
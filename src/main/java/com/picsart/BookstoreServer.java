@@ -0,0 +1,125 @@
+package com.picsart;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * TCP server that lets many terminals use the Bookstore Management System at once.
+ * <p>
+ * Every accepted connection is served by a {@link ServerSession} on its own virtual thread, so an idle
+ * session costs a parked virtual thread and a socket, and the JDBC code stays blocking. Database work
+ * of all sessions is capped by a fair semaphore sized to the connection pool, so a burst of commands
+ * queues in the server instead of timing out in {@link ConnectionPool#borrow()}.
+ * <p>
+ * Settings: {@code server.port}, {@code server.bindAddress}, {@code server.idleTimeoutMillis}
+ * (0 keeps idle sessions open) and {@code server.databasePermits} (defaults to the pool size).
+ */
+public class BookstoreServer implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final Semaphore databasePermits;
+    private final int idleTimeoutMillis;
+    private final Set<Socket> sessions = ConcurrentHashMap.newKeySet();
+    private final ThreadFactory sessionThreads = Thread.ofVirtual().name("bookstore-session-", 1).factory();
+    private final Thread acceptor;
+
+    /**
+     * Binds the server socket and starts accepting sessions.
+     *
+     * @param bindAddress       The address to listen on.
+     * @param port              The TCP port; 0 picks a free one.
+     * @param databasePermits   Maximum number of commands running database work at the same time.
+     * @param idleTimeoutMillis Sessions silent for this long are closed; 0 disables the timeout.
+     * @throws IOException If the socket cannot be bound.
+     */
+    public BookstoreServer(String bindAddress, int port, int databasePermits, int idleTimeoutMillis) throws IOException {
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(new InetSocketAddress(InetAddress.getByName(bindAddress), port), 1024);
+        this.databasePermits = new Semaphore(databasePermits, true);
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.acceptor = Thread.ofPlatform().name("bookstore-acceptor").start(this::acceptLoop);
+    }
+
+    /**
+     * Starts a server with the settings of the application configuration.
+     *
+     * @param configuration The application configuration.
+     * @return The running server.
+     * @throws IOException If the socket cannot be bound.
+     */
+    public static BookstoreServer start(Configuration configuration) throws IOException {
+        int poolSize = DatabaseConnection.pool().config().maxSize();
+        return new BookstoreServer(
+                configuration.get("server.bindAddress", "0.0.0.0"),
+                configuration.getInt("server.port", 7070),
+                configuration.getInt("server.databasePermits", poolSize),
+                configuration.getInt("server.idleTimeoutMillis", 0));
+    }
+
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int sessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Blocks until the server is closed.
+     *
+     * @throws InterruptedException If the waiting thread is interrupted.
+     */
+    public void awaitTermination() throws InterruptedException {
+        acceptor.join();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (serverSocket.isClosed()) {
+                    break;
+                }
+                System.out.println(e.getMessage());
+                continue;
+            }
+            sessions.add(socket);
+            ServerSession session = new ServerSession(socket, databasePermits, idleTimeoutMillis);
+            sessionThreads.newThread(() -> {
+                try {
+                    session.run();
+                } finally {
+                    sessions.remove(socket);
+                }
+            }).start();
+        }
+    }
+
+    /**
+     * Stops accepting connections and closes all open sessions.
+     */
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+        for (Socket socket : sessions) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+    }
+}
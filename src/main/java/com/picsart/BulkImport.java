@@ -0,0 +1,327 @@
+package com.picsart;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Streaming CSV import of books and customers through Postgres {@code COPY}.
+ * <p>
+ * The input is read one record at a time. Valid rows are collected into chunks of at most
+ * {@code chunkSize} rows, copied into a session-local staging table and merged into the target table,
+ * one transaction per chunk, so memory use does not depend on the file size. Invalid rows are written
+ * to {@code <input>.rejected.csv} together with their line number and the reason.
+ */
+public class BulkImport {
+
+    /**
+     * Default number of rows per COPY chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 10_000;
+
+    private static final PhoneNumberValidation PHONE_VALIDATION = new PhoneNumberValidation();
+
+    /**
+     * Summary of an import run.
+     *
+     * @param read       Number of data records read.
+     * @param loaded     Number of records copied into the database.
+     * @param rejected   Number of records written to the reject file.
+     * @param rejectFile The reject file; it only exists if records were rejected.
+     */
+    public record ImportResult(long read, long loaded, long rejected, Path rejectFile) {
+    }
+
+    /**
+     * What an import loads and how.
+     */
+    public enum Target {
+
+        /**
+         * Books CSV with columns Title, Author, Genre, Price, QuantityInStock. Rows are matched on
+         * title and author: existing books are updated, new ones inserted.
+         */
+        BOOKS("Title", 5,
+                "CREATE TEMP TABLE IF NOT EXISTS books_import (" +
+                        "Line BIGINT, Title TEXT, Author VARCHAR(40), Genre VARCHAR(30), " +
+                        "Price REAL, QuantityInStock INTEGER) ON COMMIT DELETE ROWS",
+                "COPY books_import (Line, Title, Author, Genre, Price, QuantityInStock) FROM STDIN WITH (FORMAT csv)",
+                "UPDATE Books SET Genre = s.Genre, Price = s.Price, QuantityInStock = s.QuantityInStock " +
+                        "FROM (SELECT DISTINCT ON (Title, Author) * FROM books_import " +
+                        "ORDER BY Title, Author, Line DESC) s " +
+                        "WHERE Books.Title = s.Title AND Books.Author = s.Author",
+                "INSERT INTO Books (Title, Author, Genre, Price, QuantityInStock) " +
+                        "SELECT s.Title, s.Author, s.Genre, s.Price, s.QuantityInStock " +
+                        "FROM (SELECT DISTINCT ON (Title, Author) * FROM books_import " +
+                        "ORDER BY Title, Author, Line DESC) s " +
+                        "WHERE NOT EXISTS (SELECT 1 FROM Books b WHERE b.Title = s.Title AND b.Author = s.Author)"),
+
+        /**
+         * Customers CSV with columns Name, Email, Phone. Rows are matched on the unique email.
+         */
+        CUSTOMERS("Name", 3,
+                "CREATE TEMP TABLE IF NOT EXISTS customers_import (" +
+                        "Line BIGINT, Name VARCHAR(20), Email VARCHAR(60), Phone VARCHAR(20)) ON COMMIT DELETE ROWS",
+                "COPY customers_import (Line, Name, Email, Phone) FROM STDIN WITH (FORMAT csv)",
+                "INSERT INTO Customers (Name, Email, Phone) " +
+                        "SELECT Name, Email, Phone FROM (SELECT DISTINCT ON (Email) * FROM customers_import " +
+                        "ORDER BY Email, Line DESC) s " +
+                        "ON CONFLICT (Email) DO UPDATE SET Name = EXCLUDED.Name, Phone = EXCLUDED.Phone");
+
+        private final String headerColumn;
+        private final int columns;
+        private final String stagingTable;
+        private final String copyCommand;
+        private final String[] mergeStatements;
+
+        Target(String headerColumn, int columns, String stagingTable, String copyCommand, String... mergeStatements) {
+            this.headerColumn = headerColumn;
+            this.columns = columns;
+            this.stagingTable = stagingTable;
+            this.copyCommand = copyCommand;
+            this.mergeStatements = mergeStatements;
+        }
+
+        /**
+         * Checks a record.
+         *
+         * @param record The CSV fields.
+         * @return The reason the record is rejected, or null if it is valid.
+         */
+        String validate(String[] record) {
+            if (record.length != columns) {
+                return "expected " + columns + " columns but found " + record.length;
+            }
+            return switch (this) {
+                case BOOKS -> validateBook(record);
+                case CUSTOMERS -> validateCustomer(record);
+            };
+        }
+    }
+
+    /**
+     * Imports books from a CSV file.
+     *
+     * @param csvFile   The CSV file, optionally starting with a header row.
+     * @param chunkSize Maximum number of rows per COPY chunk and transaction.
+     * @return The import summary.
+     * @throws IOException  If the file cannot be read or the reject file written.
+     * @throws SQLException If a database access error occurs; chunks committed so far stay loaded.
+     */
+    public static ImportResult importBooks(Path csvFile, int chunkSize) throws IOException, SQLException {
+        return importCsv(Target.BOOKS, csvFile, chunkSize);
+    }
+
+    /**
+     * Imports customers from a CSV file.
+     *
+     * @param csvFile   The CSV file, optionally starting with a header row.
+     * @param chunkSize Maximum number of rows per COPY chunk and transaction.
+     * @return The import summary.
+     * @throws IOException  If the file cannot be read or the reject file written.
+     * @throws SQLException If a database access error occurs; chunks committed so far stay loaded.
+     */
+    public static ImportResult importCustomers(Path csvFile, int chunkSize) throws IOException, SQLException {
+        return importCsv(Target.CUSTOMERS, csvFile, chunkSize);
+    }
+
+    /**
+     * Streams a CSV file into the given target.
+     *
+     * @param target    What to import.
+     * @param csvFile   The CSV file, optionally starting with a header row.
+     * @param chunkSize Maximum number of rows per COPY chunk and transaction.
+     * @return The import summary.
+     * @throws IOException              If the file cannot be read or the reject file written.
+     * @throws SQLException             If a database access error occurs; chunks committed so far stay loaded.
+     * @throws IllegalArgumentException If {@code chunkSize} is less than 1.
+     */
+    public static ImportResult importCsv(Target target, Path csvFile, int chunkSize) throws IOException, SQLException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1");
+        }
+        if (target == Target.BOOKS) {
+            // the import may set stock of existing books, which the stock ledger must not overwrite
+            try (StockLedger.DirectUpdate ignored = StockLedger.directUpdate(StockLedger.ALL_BOOKS)) {
+                return load(target, csvFile, chunkSize);
+            }
+        }
+        return load(target, csvFile, chunkSize);
+    }
+
+    private static ImportResult load(Target target, Path csvFile, int chunkSize) throws IOException, SQLException {
+        Path rejectFile = csvFile.resolveSibling(csvFile.getFileName() + ".rejected.csv");
+        Files.deleteIfExists(rejectFile);
+
+        long read = 0;
+        long loaded = 0;
+        long rejected = 0;
+        BufferedWriter rejects = null;
+
+        try (CsvReader csv = new CsvReader(Files.newBufferedReader(csvFile, StandardCharsets.UTF_8));
+             Connection connection = DatabaseConnection.connection()) {
+
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(target.stagingTable);
+            }
+            connection.setAutoCommit(false);
+            CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+
+            StringBuilder chunk = new StringBuilder();
+            int chunkRows = 0;
+            String[] record;
+            boolean first = true;
+
+            while ((record = csv.next()) != null) {
+                if (first) {
+                    first = false;
+                    if (record[0].trim().equalsIgnoreCase(target.headerColumn)) {
+                        continue;
+                    }
+                }
+                if (record.length == 1 && record[0].isBlank()) {
+                    continue;
+                }
+                read++;
+
+                String reason = target.validate(record);
+                if (reason != null) {
+                    if (rejects == null) {
+                        rejects = Files.newBufferedWriter(rejectFile, StandardCharsets.UTF_8);
+                        rejects.write("Line,Reason,Record");
+                        rejects.newLine();
+                    }
+                    StringBuilder line = new StringBuilder();
+                    line.append(csv.lineNumber()).append(',');
+                    appendCsvField(line, reason);
+                    for (String field : record) {
+                        line.append(',');
+                        appendCsvField(line, field);
+                    }
+                    rejects.write(line.toString());
+                    rejects.newLine();
+                    rejected++;
+                    continue;
+                }
+
+                chunk.append(csv.lineNumber());
+                for (String field : record) {
+                    chunk.append(',');
+                    appendCsvField(chunk, field.trim());
+                }
+                chunk.append('\n');
+
+                if (++chunkRows == chunkSize) {
+                    loaded += flush(connection, copyManager, target, chunk);
+                    chunkRows = 0;
+                }
+            }
+            if (chunkRows > 0) {
+                loaded += flush(connection, copyManager, target, chunk);
+            }
+        } finally {
+            if (rejects != null) {
+                rejects.close();
+            }
+        }
+
+        if (target == Target.BOOKS && loaded > 0) {
+            BookCatalog.clear();
+        }
+        return new ImportResult(read, loaded, rejected, rejectFile);
+    }
+
+    /**
+     * Copies one chunk into the staging table, merges it into the target and commits.
+     */
+    private static long flush(Connection connection, CopyManager copyManager, Target target, StringBuilder chunk)
+            throws SQLException, IOException {
+        try {
+            long copied = copyManager.copyIn(target.copyCommand, new BufferedReader(new StringReader(chunk.toString())));
+            try (Statement statement = connection.createStatement()) {
+                for (String merge : target.mergeStatements) {
+                    statement.executeUpdate(merge);
+                }
+            }
+            connection.commit();
+            DatabaseConnection.recordWrite();
+            chunk.setLength(0);
+            return copied;
+        } catch (SQLException | IOException e) {
+            connection.rollback();
+            throw e;
+        }
+    }
+
+    private static String validateBook(String[] record) {
+        String title = record[0].trim();
+        String author = record[1].trim();
+        String genre = record[2].trim();
+        if (title.isEmpty() || author.isEmpty() || genre.isEmpty()) {
+            return "title, author and genre are required";
+        }
+        if (author.length() > 40) {
+            return "author longer than 40 characters";
+        }
+        if (genre.length() > 30) {
+            return "genre longer than 30 characters";
+        }
+        try {
+            double price = Double.parseDouble(record[3].trim());
+            if (!(price > 0) || Double.isInfinite(price)) {
+                return "price must be greater than 0";
+            }
+            if (price > Float.MAX_VALUE || (float) price == 0f) {
+                return "price out of range for the Price column";
+            }
+        } catch (NumberFormatException e) {
+            return "price is not a number";
+        }
+        try {
+            if (Integer.parseInt(record[4].trim()) < 0) {
+                return "quantity in stock must not be negative";
+            }
+        } catch (NumberFormatException e) {
+            return "quantity in stock is not a whole number";
+        }
+        return null;
+    }
+
+    private static String validateCustomer(String[] record) {
+        String name = record[0].trim();
+        String email = record[1].trim();
+        if (name.isEmpty() || name.length() > 20) {
+            return "name must be 1 to 20 characters";
+        }
+        if (email.isEmpty() || email.length() > 60 || email.indexOf('@') < 1) {
+            return "email is missing or invalid";
+        }
+        ValidationResult phone = PHONE_VALIDATION.validate(record[2].trim());
+        if (!phone.isValid()) {
+            return "invalid phone number: " + phone.message();
+        }
+        return null;
+    }
+
+    private static void appendCsvField(StringBuilder out, String field) {
+        out.append('"');
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+}
@@ -1,8 +1,15 @@
 package com.picsart;
 
-import java.sql.Connection;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.sql.SQLException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.Scanner;
 
 /**
@@ -10,17 +17,45 @@ import java.util.Scanner;
  */
 public class CLI {
 
+    /**
+     * Titles listed per bestseller ranking.
+     */
+    private static final int BESTSELLERS_SHOWN = 10;
+    private static final int ANALYSIS_GROUPS_SHOWN = 50;
+
+    /**
+     * Where menus and results are printed.
+     */
+    private final PrintStream out;
+
+    /**
+     * Creates a CLI printing to the console.
+     */
+    public CLI() {
+        this(System.out);
+    }
+
+    /**
+     * Creates a CLI printing to the given stream, e.g. a network session.
+     *
+     * @param out The output stream.
+     */
+    public CLI(PrintStream out) {
+        this.out = out;
+    }
+
     /**
      * Displays the main menu of the Bookstore Management System.
      */
     public void displayMenu() {
-        System.out.println("Bookstore Management System Menu:");
-        System.out.println("1. Book Management");
-        System.out.println("2. Customer Management");
-        System.out.println("3. Sales Processing");
-        System.out.println("4. Sales Reports");
-        System.out.println("5. Exit");
-        System.out.print("Enter your choice (1-5): ");
+        out.println("Bookstore Management System Menu:");
+        out.println("1. Book Management");
+        out.println("2. Customer Management");
+        out.println("3. Sales Processing");
+        out.println("4. Sales Reports");
+        out.println("5. Metrics");
+        out.println("6. Exit");
+        out.print("Enter your choice (1-6): ");
     }
 
     /**
@@ -36,75 +71,171 @@ public class CLI {
     /**
      * Handles user input for book management.
      *
-     * @param scanner    The Scanner object for user input.
-     * @param connection The database connection.
+     * @param scanner The Scanner object for user input.
      */
-    public void inputForBooksManagement(Scanner scanner, Connection connection) {
-        displayForBooksManagement(scanner, connection);
+    public void inputForBooksManagement(Scanner scanner) {
+        displayForBooksManagement(scanner);
     }
 
-    private void updateBooks(Scanner scanner, Connection connection) {
-        System.out.println("Please enter the ID of the book to update");
+    private void updateBooks(Scanner scanner) {
+        out.println("Please enter the ID of the book to update");
         int bookID = generateValidNumber(scanner);
         scanner.nextLine();
-        System.out.println("Please enter the new title");
+        out.println("Please enter the new title");
         String title = scanner.nextLine();
-        System.out.println("Please enter the new author");
+        out.println("Please enter the new author");
         String author = scanner.nextLine();
-        System.out.println("Please enter the new genre");
+        out.println("Please enter the new genre");
         String genre = scanner.nextLine();
-        System.out.println("Please enter the new price");
+        out.println("Please enter the new price");
         while (!scanner.hasNextDouble()) {
-            System.out.println("Invalid statement, please enter a number");
+            out.println("Invalid statement, please enter a number");
             scanner.next();
         }
         double newPrice = scanner.nextDouble();
-        System.out.println("Please enter the new new quantity in stock");
+        out.println("Please enter the new new quantity in stock");
         int newQuantityInStock = generateValidNumber(scanner);
         scanner.nextLine();
 
 
-        BooksManagement.updateBookDetails(
-                connection,
-                bookID,
-                title,
-                author,
-                genre,
-                newPrice,
-                newQuantityInStock);
+        try {
+            boolean updated = BooksManagement.updateBookDetails(
+                    bookID,
+                    title,
+                    author,
+                    genre,
+                    newPrice,
+                    newQuantityInStock);
+            if (updated) {
+                out.println("Book details updated successfully.");
+            } else {
+                out.println("No book found with the given ID.");
+            }
+        } catch (SQLException e) {
+            printError(e);
+        }
     }
 
-    private void searchBooks(Scanner scanner, Connection connection) {
+    private void searchBooks(Scanner scanner) {
         String searchBy;
         do {
-            System.out.println("Enter 'genre' or 'author' to search books:");
+            out.println("Enter 'genre' or 'author' to search books:");
             searchBy = scanner.nextLine();
         } while (!(searchBy.equalsIgnoreCase("genre") || searchBy.equalsIgnoreCase("author")));
-        System.out.println("Enter the value to search for:");
+        out.println("Enter the value to search for:");
         String searchValue = scanner.nextLine();
 
-        BooksManagement.listBooksByGenreOrAuthor(connection, searchBy, searchValue);
+        try {
+            printBooks(searchBy, BooksManagement.listBooksByGenreOrAuthor(searchBy, searchValue));
+        } catch (SQLException e) {
+            printError(e);
+        }
+    }
+
+    void printBooks(String searchBy, List<Book> books) {
+        if (books.isEmpty()) {
+            out.println("No books found with the given " + searchBy + ".");
+            return;
+        }
+        out.println("Books found:");
+        for (Book book : books) {
+            out.println("ID: " + book.bookId() +
+                    ", Title: " + book.title() +
+                    ", Author: " + book.author() +
+                    ", Genre: " + book.genre() +
+                    ", Price: " + book.price() +
+                    ", QuantityInStock: " + book.quantityInStock());
+        }
+    }
+
+    private void searchBooksByText(Scanner scanner) {
+        out.println("Enter words of the title or author, or any part of them:");
+        String text = scanner.nextLine().trim();
+        if (text.isEmpty()) {
+            return;
+        }
+
+        int pageSize = Math.max(1, Configuration.load().getInt("search.pageSize", 20));
+        BookSearchQuery query = BookSearchQuery.words(text, pageSize);
+        try {
+            List<BookSearchHit> hits = BooksManagement.searchBooks(query);
+            if (hits.isEmpty()) {
+                query = query.withMode(BookSearchQuery.Mode.CONTAINS);
+                hits = BooksManagement.searchBooks(query);
+            }
+            while (true) {
+                printSearchHits(text, hits, query.offset() == 0);
+                if (hits.size() < pageSize) {
+                    break;
+                }
+                out.println("Enter N for the next page, anything else to return");
+                if (!scanner.nextLine().trim().equalsIgnoreCase("N")) {
+                    break;
+                }
+                query = query.page(pageSize, query.offset() + pageSize);
+                hits = BooksManagement.searchBooks(query);
+            }
+        } catch (SQLException e) {
+            printError(e);
+        }
+    }
+
+    void printSearchHits(String text, List<BookSearchHit> hits, boolean firstPage) {
+        if (hits.isEmpty()) {
+            if (firstPage) {
+                out.println("No books found matching " + text + ".");
+            }
+            return;
+        }
+        if (firstPage) {
+            out.println("Books found, best match first:");
+        }
+        for (BookSearchHit hit : hits) {
+            Book book = hit.book();
+            out.println("ID: " + book.bookId() +
+                    ", Title: " + book.title() +
+                    ", Author: " + book.author() +
+                    ", Genre: " + book.genre() +
+                    ", Price: " + book.price() +
+                    ", QuantityInStock: " + book.quantityInStock());
+        }
+    }
+
+    void printSuggestions(List<BookTypeahead.Suggestion> suggestions) {
+        if (suggestions.isEmpty()) {
+            out.println("No suggestions.");
+            return;
+        }
+        for (BookTypeahead.Suggestion suggestion : suggestions) {
+            out.println("ID: " + suggestion.bookId() +
+                    ", Title: " + suggestion.title() +
+                    ", Author: " + suggestion.author());
+        }
     }
 
-    private void displayForBooksManagement(Scanner scanner, Connection connection) {
+    private void displayForBooksManagement(Scanner scanner) {
 
         while (true) {
-            System.out.println("Books Management System Menu.");
-            System.out.println("1. Update book details.");
-            System.out.println("2. Search books by genre or author.");
-            System.out.println("3. Exit");
-            System.out.println("Enter your choice 1, 2 or 3");
+            out.println("Books Management System Menu.");
+            out.println("1. Update book details.");
+            out.println("2. Search books by genre or author.");
+            out.println("3. Search books by title or author.");
+            out.println("4. Import books from a CSV file.");
+            out.println("5. Exit");
+            out.println("Enter your choice 1, 2, 3, 4 or 5");
 
             String choice = scanner.nextLine();
 
             switch (choice) {
-                case "1" -> updateBooks(scanner, connection);
-                case "2" -> searchBooks(scanner, connection);
-                case "3" -> System.out.println("Existing books management system");
-                default -> System.out.println("Invalid choice. Please enter a valid option.");
+                case "1" -> updateBooks(scanner);
+                case "2" -> searchBooks(scanner);
+                case "3" -> searchBooksByText(scanner);
+                case "4" -> importCsv(scanner, BulkImport.Target.BOOKS);
+                case "5" -> out.println("Existing books management system");
+                default -> out.println("Invalid choice. Please enter a valid option.");
             }
 
-            if (choice.equals("3")) {
+            if (choice.equals("5")) {
                 break;
             }
         }
@@ -113,113 +244,237 @@ public class CLI {
     /**
      * Handles user input for customers management.
      *
-     * @param scanner    The Scanner object for user input.
-     * @param connection The database connection.
+     * @param scanner The Scanner object for user input.
      */
-    public void inputForCustomersManagement(Scanner scanner, Connection connection) {
-        displayForCustomersManagement(scanner, connection);
+    public void inputForCustomersManagement(Scanner scanner) {
+        displayForCustomersManagement(scanner);
     }
 
-    private void displayForCustomersManagement(Scanner scanner, Connection connection) {
+    private void displayForCustomersManagement(Scanner scanner) {
         while (true) {
-            System.out.println("Customers Management System Menu.");
-            System.out.println("1. Update customers information.");
-            System.out.println("2. View a customer’s purchase history.");
-            System.out.println("3. Exit");
-            System.out.println("Enter your choice 1, 2 or 3");
+            out.println("Customers Management System Menu.");
+            out.println("1. Update customers information.");
+            out.println("2. View a customer’s purchase history.");
+            out.println("3. Import customers from a CSV file.");
+            out.println("4. Exit");
+            out.println("Enter your choice 1, 2, 3 or 4");
 
             String choice = scanner.nextLine();
 
             switch (choice) {
-                case "1" -> updateCustomersInformation(scanner, connection);
-                case "2" -> customersPurchaseHistory(scanner, connection);
-                case "3" -> System.out.println("Existing books management system");
-                default -> System.out.println("Invalid choice. Please enter a valid option.");
+                case "1" -> updateCustomersInformation(scanner);
+                case "2" -> customersPurchaseHistory(scanner);
+                case "3" -> importCsv(scanner, BulkImport.Target.CUSTOMERS);
+                case "4" -> out.println("Existing books management system");
+                default -> out.println("Invalid choice. Please enter a valid option.");
             }
 
-            if (choice.equals("3")) {
+            if (choice.equals("4")) {
                 break;
             }
         }
     }
 
-    private void updateCustomersInformation(Scanner scanner, Connection connection) {
-        System.out.println("Enter the ID of the customer to update:");
+    private void updateCustomersInformation(Scanner scanner) {
+        out.println("Enter the ID of the customer to update:");
         int customerIdToUpdate = generateValidNumber(scanner);
         scanner.nextLine();
 
-        System.out.println("Enter the new  name:");
+        out.println("Enter the new  name:");
         String newName = scanner.nextLine();
 
-        System.out.println("Enter the new email:");
+        out.println("Enter the new email:");
         String newEmail = scanner.nextLine();
 
-        System.out.println("Enter the new phone:");
+        out.println("Enter the new phone:");
         String newPhone = scanner.nextLine();
         PhoneNumberValidation phoneNumberValidation = new PhoneNumberValidation();
-        while (!phoneNumberValidation.phoneNumberValid(newPhone)) {
+        ValidationResult phone;
+        while (!(phone = phoneNumberValidation.validate(newPhone)).isValid()) {
+            out.println("Invalid phone number (" + phone.message() + "), please the valid phone number.");
             newPhone = scanner.nextLine();
         }
 
-        CustomerManagement.updateCustomerInfo(connection, customerIdToUpdate, newName, newEmail, newPhone);
+        try {
+            if (CustomerManagement.updateCustomerInfo(customerIdToUpdate, newName, newEmail, newPhone)) {
+                out.println("Customer information updated successfully.");
+            } else {
+                out.println("No customer found with the given ID.");
+            }
+        } catch (SQLException e) {
+            printError(e);
+        }
+    }
+
+    private void importCsv(Scanner scanner, BulkImport.Target target) {
+        out.println("Enter the path of the CSV file:");
+        String path = scanner.nextLine();
+        runImport(target, Path.of(path.trim()));
+    }
+
+    /**
+     * Imports a CSV file and prints a summary.
+     *
+     * @param target  What to import.
+     * @param csvFile The CSV file.
+     */
+    public void runImport(BulkImport.Target target, Path csvFile) {
+        int chunkSize = Configuration.load().getInt("import.chunkSize", BulkImport.DEFAULT_CHUNK_SIZE);
+        try {
+            BulkImport.ImportResult result = BulkImport.importCsv(target, csvFile, chunkSize);
+            out.println("Read " + result.read() + " rows, loaded " + result.loaded()
+                    + ", rejected " + result.rejected() + ".");
+            if (result.rejected() > 0) {
+                out.println("Rejected rows were written to " + result.rejectFile());
+            }
+        } catch (SQLException e) {
+            printError(e);
+        } catch (IOException | IllegalArgumentException e) {
+            out.println(e.getMessage());
+        }
     }
 
-    private void customersPurchaseHistory(Scanner scanner, Connection connection) {
-        System.out.println("Enter customer id");
+    private void customersPurchaseHistory(Scanner scanner) {
+        out.println("Enter customer id");
         int customerIdToUpdate = generateValidNumber(scanner);
 
-        CustomerManagement.viewCustomerPurchaseHistory(connection, customerIdToUpdate);
+        scanner.nextLine();
+
+        int pageSize = Math.max(1, Configuration.load().getInt("history.pageSize", 20));
+        PurchaseHistoryPage.Cursor after = null;
+        try {
+            while (true) {
+                PurchaseHistoryPage page = CustomerManagement.purchaseHistory(customerIdToUpdate, after, pageSize);
+                printPurchaseHistory(page, after == null);
+                if (page.next() == null) {
+                    break;
+                }
+                out.println("Enter N for the next page, anything else to return");
+                if (!scanner.nextLine().trim().equalsIgnoreCase("N")) {
+                    break;
+                }
+                after = page.next();
+            }
+        } catch (SQLException e) {
+            printError(e);
+        }
+    }
+
+    void printPurchaseHistory(PurchaseHistoryPage page, boolean firstPage) {
+        if (page.purchases() == 0) {
+            out.println("No purchase history found for the customer with ID " + page.customerId() + ".");
+            return;
+        }
+        if (firstPage) {
+            out.println("Purchase history for customer with ID " + page.customerId() + ": " +
+                    page.purchases() + " purchases, " + page.itemCount() + " books, lifetime spend $" +
+                    page.lifetimeSpend());
+        }
+        for (PurchaseHistoryPage.Item item : page.items()) {
+            out.println("Sale ID: " + item.saleId() +
+                    ", Sale Date: " + item.dateOfSale() +
+                    ", Book: " + (item.title() == null ? "(deleted)" : item.title() + " (ID " + item.bookId() + ")") +
+                    ", QuantitySold: " + item.quantitySold() +
+                    ", Total Price: $" + item.totalPrice());
+        }
     }
 
     /**
      * Handles user input for sales processing.
      *
-     * @param scanner    The Scanner object for user input.
-     * @param connection The database connection.
+     * @param scanner The Scanner object for user input.
      */
-    public void inputForSalesProcessing(Scanner scanner, Connection connection) {
-        displayForSalesProcessing(scanner, connection);
+    public void inputForSalesProcessing(Scanner scanner) {
+        displayForSalesProcessing(scanner);
     }
 
-    private void displayForSalesProcessing(Scanner scanner, Connection connection) {
+    private void displayForSalesProcessing(Scanner scanner) {
         while (true) {
-            System.out.println("Sales  Management System Menu.");
-            System.out.println("1. Process for new sale.");
-            System.out.println("2. Calculate total revenue by genre.");
-            System.out.println("3. Exit");
-            System.out.println("Enter your choice 1, 2 or 3");
+            out.println("Sales  Management System Menu.");
+            out.println("1. Process for new sale.");
+            out.println("2. Process new order with several books.");
+            out.println("3. Calculate total revenue by genre.");
+            out.println("4. Exit");
+            out.println("Enter your choice 1, 2, 3 or 4");
 
             String choice = scanner.nextLine();
 
             switch (choice) {
-                case "1" -> insertSalesProcessing(scanner, connection);
-                case "2" -> SalesProcessing.calculateTotalRevenueByGenre(connection);
-                case "3" -> System.out.println("Existing books management system");
-                default -> System.out.println("Invalid choice. Please enter a valid option.");
+                case "1" -> insertSalesProcessing(scanner);
+                case "2" -> insertOrderProcessing(scanner);
+                case "3" -> printRevenueByGenre();
+                case "4" -> out.println("Existing books management system");
+                default -> out.println("Invalid choice. Please enter a valid option.");
             }
 
-            if (choice.equals("3")) {
+            if (choice.equals("4")) {
                 break;
             }
         }
     }
 
-    private void insertSalesProcessing(Scanner scanner, Connection connection) {
-        System.out.println("Enter the customer ID:");
+    private void insertSalesProcessing(Scanner scanner) {
+        out.println("Enter the customer ID:");
         int customerId = generateValidNumber(scanner);
 
-        System.out.println("Enter the book ID:");
+        out.println("Enter the book ID:");
         int bookId = generateValidNumber(scanner);
 
-        System.out.println("Enter the quantity:");
+        out.println("Enter the quantity:");
         int quantity = generateValidNumber(scanner);
 
         scanner.nextLine();
-        System.out.println("Enter the date of sale:");
+        java.sql.Date sqlDate = readDateOfSale(scanner);
+
+        printSaleResult(SalesProcessing.processNewSale(customerId, bookId, sqlDate, quantity));
+    }
+
+    void printSaleResult(SaleResult result) {
+        switch (result.status()) {
+            case COMPLETED -> out.println("Sale processed successfully. Total Price: $" + result.totalPrice());
+            case INSUFFICIENT_STOCK -> out.println("Not enough stock available for the requested quantity.");
+            case BOOK_NOT_FOUND -> out.println("No book found with the given ID.");
+            case FAILED -> out.println(result.message());
+        }
+    }
+
+    private void insertOrderProcessing(Scanner scanner) {
+        out.println("Enter the customer ID:");
+        int customerId = generateValidNumber(scanner);
+
+        List<OrderLine> lines = new ArrayList<>();
+        while (true) {
+            out.println("Enter the book ID (0 to finish the order):");
+            int bookId = generateValidNumber(scanner);
+            if (bookId == 0) {
+                break;
+            }
+            out.println("Enter the quantity:");
+            int quantity = generateValidNumber(scanner);
+            lines.add(new OrderLine(bookId, quantity));
+        }
+
+        scanner.nextLine();
+        java.sql.Date sqlDate = readDateOfSale(scanner);
+
+        printOrderResult(OrderProcessing.placeOrder(customerId, sqlDate, lines));
+    }
+
+    void printOrderResult(OrderResult result) {
+        switch (result.status()) {
+            case COMPLETED -> out.println("Order processed successfully. Total Price: $" + result.totalPrice());
+            case INSUFFICIENT_STOCK -> out.println("Not enough stock available for book " + result.rejectedBookId() + ".");
+            case BOOK_NOT_FOUND -> out.println("No book found with ID " + result.rejectedBookId() + ".");
+            case FAILED -> out.println(result.message());
+        }
+    }
+
+    private java.sql.Date readDateOfSale(Scanner scanner) {
+        out.println("Enter the date of sale:");
         String str = scanner.nextLine();
         ValidationDate validationDate = new ValidationDate();
         while (!validationDate.validDateFormat(str)) {
-            System.out.println("Invalid statement, please enter the valid date of birth");
+            out.println("Invalid statement, please enter the valid date of birth");
             str = scanner.nextLine();
         }
 
@@ -231,43 +486,250 @@ public class CLI {
             sqlDate = new java.sql.Date(utilDate.getTime());
 
         } catch (ParseException e) {
-            System.out.println(e.getMessage());
+            out.println(e.getMessage());
         }
-
-        SalesProcessing.processNewSale(connection, customerId, bookId, sqlDate, quantity);
+        return sqlDate;
     }
 
-    private void displayForReports(Scanner scanner, Connection connection) {
+    private void displayForReports(Scanner scanner) {
         while (true) {
-            System.out.println("Sales Reports System Menu.");
-            System.out.println("1. Books sales reports.");
-            System.out.println("2. Revenue report by genre.");
-            System.out.println("3. Exit");
-            System.out.println("Enter your choice 1, 2 or 3");
+            out.println("Sales Reports System Menu.");
+            out.println("1. Books sales reports.");
+            out.println("2. Revenue report by genre.");
+            out.println("3. Export books sales for a period to a file.");
+            out.println("4. Revenue report by genre for a period.");
+            out.println("5. Bestselling and trending titles.");
+            out.println("6. Sales analysis by genre, author, customer, book or month.");
+            out.println("7. Sales trend for a period.");
+            out.println("8. Exit");
+            out.println("Enter your choice 1, 2, 3, 4, 5, 6, 7 or 8");
 
             String choice = scanner.nextLine();
 
             switch (choice) {
-                case "1" -> SalesReports.generateBookSalesReport(connection);
-                case "2" -> SalesReports.generateRevenueReportByGenre(connection);
-                case "3" -> System.out.println("Existing books management system");
-                default -> System.out.println("Invalid choice. Please enter a valid option.");
+                case "1" -> printBookSalesReport(SalesReportQuery.all());
+                case "2" -> printRevenueByGenre();
+                case "3" -> exportBookSalesReport(scanner);
+                case "4" -> inputForRevenueByGenre(scanner);
+                case "5" -> printBestsellers();
+                case "6" -> inputForSalesAnalysis(scanner);
+                case "7" -> inputForSalesTrend(scanner);
+                case "8" -> out.println("Existing books management system");
+                default -> out.println("Invalid choice. Please enter a valid option.");
+            }
+
+            if (choice.equals("8")) {
+                break;
             }
+        }
+    }
+
+    void printBookSalesReport(SalesReportQuery query) {
+        try (SaleRowSink sink = SaleRowSink.printing(out)) {
+            SalesReports.streamBookSalesReport(query, sink);
+        } catch (SQLException e) {
+            printError(e);
+        } catch (IOException e) {
+            out.println(e.getMessage());
+        }
+    }
+
+    void printRevenueByGenre() {
+        try {
+            SalesReports.generateRevenueReportByGenre().forEach((genre, totalRevenue) ->
+                    out.println("Genre: " + genre + ", Total Revenue: $" + totalRevenue));
+        } catch (SQLException e) {
+            printError(e);
+        }
+    }
+
+    void printRevenueByGenre(LocalDate firstDay, LocalDate lastDay) {
+        try {
+            SalesReports.generateRevenueReportByGenre(firstDay, lastDay).forEach((genre, totalRevenue) ->
+                    out.println("Genre: " + genre + ", Total Revenue: $" + totalRevenue));
+        } catch (SQLException e) {
+            printError(e);
+        }
+    }
+
+    void printBestsellers() {
+        if (!Bestsellers.isRunning()) {
+            out.println("Bestsellers are not tracked; set bestsellers.enabled to track them.");
+            return;
+        }
+        for (Bestsellers.Window window : Bestsellers.Window.values()) {
+            out.println("Bestsellers of the last " + window.name().toLowerCase(Locale.ROOT) + ":");
+            printBestsellers(SalesReports.bestsellers(window, BESTSELLERS_SHOWN), false);
+        }
+        out.println("Trending titles:");
+        printBestsellers(SalesReports.trendingTitles(BESTSELLERS_SHOWN), true);
+    }
+
+    private void printBestsellers(List<Bestsellers.Bestseller> bestsellers, boolean trending) {
+        if (bestsellers.isEmpty()) {
+            out.println("  No sales.");
+            return;
+        }
+        int rank = 1;
+        for (Bestsellers.Bestseller bestseller : bestsellers) {
+            out.println("  " + rank++ + ". " +
+                    (bestseller.title() == null ? "(deleted)" : bestseller.title() + " by " + bestseller.author()) +
+                    " (ID " + bestseller.bookId() + "), " + bestseller.copies() +
+                    (trending
+                            ? " copies today, " + String.format(Locale.ROOT, "%.1f", bestseller.score()) + "x the weekly rate"
+                            : " copies"));
+        }
+    }
+
+    void printSalesAnalysis(SalesAnalytics.Query query) {
+        if (!SalesAnalytics.isRunning()) {
+            out.println("Sales analytics are off; set analytics.enabled to load them.");
+            return;
+        }
+        if (!SalesAnalytics.isLoaded()) {
+            out.println("Sales analytics are still loading, try again later.");
+            return;
+        }
+        List<SalesAnalytics.Group> groups = SalesReports.analyzeSales(query);
+        if (groups.isEmpty()) {
+            out.println("No sales.");
+            return;
+        }
+        for (SalesAnalytics.Group group : groups.subList(0, Math.min(ANALYSIS_GROUPS_SHOWN, groups.size()))) {
+            out.println(String.join(", ", group.key()) + ": " + group.sales() + " sales, " + group.copies() +
+                    " copies, Total Revenue: $" + group.revenue());
+        }
+        if (groups.size() > ANALYSIS_GROUPS_SHOWN) {
+            out.println("... and " + (groups.size() - ANALYSIS_GROUPS_SHOWN) + " more groups.");
+        }
+    }
+
+    private void inputForSalesAnalysis(Scanner scanner) {
+        out.println("Group by one or two of genre, author, customer, book and month, separated by a comma:");
+        SalesAnalytics.Query query;
+        while (true) {
+            try {
+                query = new SalesAnalytics.Query(
+                        SalesAnalytics.Dimension.parse(scanner.nextLine()), null, null, null, null, null);
+                break;
+            } catch (IllegalArgumentException e) {
+                out.println(e.getMessage() + ", please enter one or two of genre, author, customer, book and month");
+            }
+        }
+        out.println("Only a period? (y/n)");
+        if (scanner.nextLine().trim().equalsIgnoreCase("y")) {
+            out.println("Enter the first date of the period (yyyy-MM-dd):");
+            LocalDate from = readDate(scanner);
+            out.println("Enter the last date of the period (yyyy-MM-dd):");
+            LocalDate to = readDate(scanner);
+            query = query.between(from, to.plusDays(1));
+        }
+        printSalesAnalysis(query);
+    }
+
+    void printSalesTrend(LocalDate firstDay, LocalDate lastDay, SalesTrend.Granularity granularity,
+                         boolean byGenre) {
+        try {
+            printSalesTrend(SalesReports.salesTrend(firstDay, lastDay, granularity, byGenre));
+        } catch (SQLException e) {
+            printError(e);
+        }
+    }
+
+    void printBookSalesTrend(int bookId, LocalDate firstDay, LocalDate lastDay, SalesTrend.Granularity granularity) {
+        try {
+            printSalesTrend(SalesReports.bookSalesTrend(bookId, firstDay, lastDay, granularity));
+        } catch (SQLException e) {
+            printError(e);
+        }
+    }
 
-            if (choice.equals("3")) {
+    private void printSalesTrend(List<SalesTrend> trend) {
+        if (trend.isEmpty()) {
+            out.println("No sales.");
+            return;
+        }
+        for (SalesTrend period : trend) {
+            out.println(period.period() +
+                    (period.genre() == null ? "" : ", Genre: " + (period.genre().isEmpty() ? "(deleted books)" : period.genre())) +
+                    ": " + period.sales() + " sales, " + period.copies() + " copies, Total Revenue: $" + period.revenue());
+        }
+    }
+
+    private void inputForSalesTrend(Scanner scanner) {
+        out.println("Enter the first date of the period (yyyy-MM-dd):");
+        LocalDate from = readDate(scanner);
+        out.println("Enter the last date of the period (yyyy-MM-dd):");
+        LocalDate to = readDate(scanner);
+        out.println("Sum per day, week or month?");
+        SalesTrend.Granularity granularity;
+        while (true) {
+            try {
+                granularity = SalesTrend.Granularity.valueOf(scanner.nextLine().trim().toUpperCase(Locale.ROOT));
                 break;
+            } catch (IllegalArgumentException e) {
+                out.println("Invalid statement, please enter day, week or month");
             }
         }
+        out.println("Separately for every genre? (y/n)");
+        printSalesTrend(from, to, granularity, scanner.nextLine().trim().equalsIgnoreCase("y"));
+    }
+
+    private void inputForRevenueByGenre(Scanner scanner) {
+        out.println("Enter the first date of the period (yyyy-MM-dd):");
+        LocalDate from = readDate(scanner);
+        out.println("Enter the last date of the period (yyyy-MM-dd):");
+        LocalDate to = readDate(scanner);
+        printRevenueByGenre(from, to);
+    }
+
+    private void exportBookSalesReport(Scanner scanner) {
+        out.println("Enter the first date of the period (yyyy-MM-dd):");
+        LocalDate from = readDate(scanner);
+        out.println("Enter the last date of the period (yyyy-MM-dd):");
+        LocalDate to = readDate(scanner);
+        out.println("Enter the format (csv, jsonl or fixed):");
+        ReportFormat format = readReportFormat(scanner);
+        out.println("Enter the path of the file:");
+        Path file = Path.of(scanner.nextLine().trim());
+
+        try {
+            long rows = SalesReports.exportBookSalesReport(SalesReportQuery.between(from, to.plusDays(1)), file, format);
+            out.println(rows + " sales written to " + file);
+        } catch (SQLException e) {
+            printError(e);
+        } catch (IOException e) {
+            out.println(e.getMessage());
+        }
+    }
+
+    private ReportFormat readReportFormat(Scanner scanner) {
+        while (true) {
+            try {
+                return ReportFormat.fromName(scanner.nextLine());
+            } catch (IllegalArgumentException e) {
+                out.println(e.getMessage() + ", please enter csv, jsonl or fixed");
+            }
+        }
+    }
+
+    private LocalDate readDate(Scanner scanner) {
+        String str = scanner.nextLine();
+        ValidationDate validationDate = new ValidationDate();
+        while (!validationDate.validDateFormat(str)) {
+            out.println("Invalid statement, please enter the valid date");
+            str = scanner.nextLine();
+        }
+        return LocalDate.parse(str);
     }
 
     /**
      * Displays the sales reports menu and handles user input for generating reports.
      *
-     * @param scanner    The Scanner object for user input.
-     * @param connection The database connection.
+     * @param scanner The Scanner object for user input.
      */
-    public void generateReports(Scanner scanner, Connection connection) {
-        displayForReports(scanner, connection);
+    public void generateReports(Scanner scanner) {
+        displayForReports(scanner);
     }
 
     /**
@@ -278,9 +740,55 @@ public class CLI {
      */
     private int generateValidNumber(Scanner scanner) {
         while (!scanner.hasNextInt()) {
-            System.out.println("Invalid statement, please enter a number");
+            out.println("Invalid statement, please enter a number");
             scanner.next();
         }
         return scanner.nextInt();
     }
+
+    /**
+     * Prints the call counts, errors, rows and latency percentiles of every instrumented operation.
+     */
+    public void printMetrics() {
+        List<OperationMetrics.Snapshot> operations = Metrics.snapshot();
+        if (operations.isEmpty()) {
+            out.println("No operations recorded yet.");
+            return;
+        }
+        StringBuilder text = new StringBuilder();
+        for (OperationMetrics.Snapshot operation : operations) {
+            text.append(operation.name())
+                    .append(": calls=").append(operation.count())
+                    .append(" errors=").append(operation.errors())
+                    .append(" rows=").append(operation.rows())
+                    .append('\n');
+            appendLatency(text, "latency", operation.latency());
+            appendLatency(text, "pool wait", operation.poolWait());
+            appendLatency(text, "execute", operation.execute());
+            appendLatency(text, "fetch", operation.fetch());
+        }
+        out.print(text);
+        out.flush();
+    }
+
+    private static void appendLatency(StringBuilder text, String phase, LatencyHistogram.Snapshot latency) {
+        text.append("    ").append(phase)
+                .append(" ms: mean=").append(millis(latency.meanNanos()))
+                .append(" p50=").append(millis(latency.p50Nanos()))
+                .append(" p90=").append(millis(latency.p90Nanos()))
+                .append(" p99=").append(millis(latency.p99Nanos()))
+                .append(" p99.9=").append(millis(latency.p999Nanos()))
+                .append(" max=").append(millis(latency.maxNanos()))
+                .append('\n');
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+
+    void printError(SQLException e) {
+        out.println(e.getErrorCode());
+        out.println(e.getSQLState());
+        out.println(e.getMessage());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+package com.picsart;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Keeps the {@link BookCatalog} of several application instances coherent.
+ * <p>
+ * A daemon thread holds a dedicated connection that {@code LISTEN}s on {@link BookCatalog#NOTIFY_CHANNEL}
+ * and invalidates the book named in each notification. When the connection drops the whole catalog is
+ * cleared, since notifications may have been missed, and the thread reconnects.
+ */
+public class CatalogInvalidationListener {
+
+    private static final int POLL_TIMEOUT_MILLIS = 1_000;
+    private static final long RECONNECT_DELAY_MILLIS = 5_000;
+
+    private static volatile Thread thread;
+
+    /**
+     * Whether invalidations are broadcast, set by {@code catalog.notify.enabled}.
+     */
+    public static boolean isEnabled() {
+        return thread != null;
+    }
+
+    /**
+     * Starts listening if {@code catalog.notify.enabled} is set.
+     */
+    public static synchronized void start() {
+        if (thread != null || !Configuration.load().getBoolean("catalog.notify.enabled", false)) {
+            return;
+        }
+        thread = new Thread(CatalogInvalidationListener::listen, "catalog-invalidation-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public static synchronized void stop() {
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    private static void listen() {
+        Thread self = Thread.currentThread();
+        while (thread == self) {
+            try (Connection connection = DatabaseConnection.pool().openDedicated()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + BookCatalog.NOTIFY_CHANNEL);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (thread == self) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        try {
+                            BookCatalog.invalidate(Integer.parseInt(notification.getParameter()));
+                        } catch (NumberFormatException e) {
+                            BookCatalog.clear();
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                BookCatalog.clear();
+                System.out.println(e.getSQLState());
+                System.out.println(e.getMessage());
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.picsart;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Application settings for the Bookstore Management System.
+ * <p>
+ * Values are read from {@code bookstore.properties} on the classpath, or from the file named by the
+ * {@code bookstore.config} system property / {@code BOOKSTORE_CONFIG} environment variable.
+ * Every key can be overridden by a system property of the same name or by an environment variable
+ * derived from it, e.g. {@code db.url} becomes {@code BOOKSTORE_DB_URL}.
+ */
+public class Configuration {
+
+    /**
+     * Name of the classpath resource holding the default settings.
+     */
+    private static final String RESOURCE = "bookstore.properties";
+
+    /**
+     * Prefix of environment variables that override file settings.
+     */
+    private static final String ENV_PREFIX = "BOOKSTORE_";
+
+    private final Properties properties;
+
+    private Configuration(Properties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Loads the configuration from the external file if one is given, otherwise from the classpath.
+     *
+     * @return The loaded configuration.
+     */
+    public static Configuration load() {
+        Properties properties = new Properties();
+        String external = System.getProperty("bookstore.config", System.getenv(ENV_PREFIX + "CONFIG"));
+        try {
+            if (external != null) {
+                try (InputStream in = Files.newInputStream(Path.of(external))) {
+                    properties.load(in);
+                }
+            } else {
+                try (InputStream in = Configuration.class.getClassLoader().getResourceAsStream(RESOURCE)) {
+                    if (in != null) {
+                        properties.load(in);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read configuration", e);
+        }
+        return new Configuration(properties);
+    }
+
+    /**
+     * Creates a configuration from the given properties, still honouring overrides.
+     *
+     * @param properties The settings to use.
+     * @return The configuration.
+     */
+    public static Configuration of(Properties properties) {
+        Properties copy = new Properties();
+        copy.putAll(properties);
+        return new Configuration(copy);
+    }
+
+    /**
+     * Returns the value of a setting.
+     *
+     * @param key          The setting key.
+     * @param defaultValue The value to use when the setting is absent.
+     * @return The effective value.
+     */
+    public String get(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = System.getenv(ENV_PREFIX + key.toUpperCase(Locale.ROOT).replace('.', '_'));
+        }
+        if (value == null) {
+            value = properties.getProperty(key);
+        }
+        return value == null ? defaultValue : value.trim();
+    }
+
+    public int getInt(String key, int defaultValue) {
+        return Integer.parseInt(get(key, Integer.toString(defaultValue)));
+    }
+
+    public long getLong(String key, long defaultValue) {
+        return Long.parseLong(get(key, Long.toString(defaultValue)));
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(get(key, Boolean.toString(defaultValue)));
+    }
+
+    /**
+     * Collects every setting starting with the given prefix, with the prefix removed.
+     *
+     * @param prefix The key prefix, e.g. {@code db.driver.}.
+     * @return The matching settings.
+     */
+    public Properties withPrefix(String prefix) {
+        Properties result = new Properties();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                result.setProperty(key.substring(prefix.length()), get(key, ""));
+            }
+        }
+        return result;
+    }
+}
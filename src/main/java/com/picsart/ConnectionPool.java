@@ -0,0 +1,237 @@
+package com.picsart;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Deque;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded pool of Postgres connections.
+ * <p>
+ * At most {@link PoolConfig#maxSize()} connections are borrowed at once; further callers wait up to
+ * {@link PoolConfig#borrowTimeoutMillis()}. Idle connections are reused most-recently-used first and
+ * validated on borrow. A background thread evicts connections idle for too long, keeps
+ * {@link PoolConfig#minIdle()} connections warm and reports connections held past the leak threshold
+ * together with the stack of the code that borrowed them.
+ * <p>
+ * The pool uses no monitors, so virtual threads waiting for a connection do not pin their carrier.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private final PoolConfig config;
+    private final Properties connectProperties;
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    /**
+     * Creates the pool and starts its housekeeping thread.
+     *
+     * @param config The pool settings.
+     */
+    public ConnectionPool(PoolConfig config) {
+        this.config = config;
+        this.permits = new Semaphore(config.maxSize(), true);
+        this.connectProperties = new Properties();
+        connectProperties.putAll(config.driverProperties());
+        connectProperties.setProperty("user", config.user());
+        connectProperties.setProperty("password", config.password());
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep,
+                config.evictionIntervalMillis(), config.evictionIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public PoolConfig config() {
+        return config;
+    }
+
+    /**
+     * Borrows a connection. Closing the returned connection gives it back to the pool. The time spent
+     * here is charged to the thread's {@link Metrics} scope as pool wait.
+     *
+     * @return A validated connection in auto-commit mode.
+     * @throws SQLException If no connection becomes free in time or a new one cannot be opened.
+     */
+    public Connection borrow() throws SQLException {
+        return borrow(config.borrowTimeoutMillis());
+    }
+
+    /**
+     * Borrows a connection, waiting at most the given time for one to become free instead of
+     * {@link PoolConfig#borrowTimeoutMillis()}.
+     *
+     * @param timeoutMillis The longest wait for a free connection; 0 fails at once if none is free.
+     * @return A validated connection in auto-commit mode.
+     * @throws SQLException If no connection becomes free in time or a new one cannot be opened.
+     */
+    public Connection borrow(long timeoutMillis) throws SQLException {
+        long start = System.nanoTime();
+        boolean acquired = false;
+        try {
+            Connection connection = acquire(timeoutMillis);
+            acquired = true;
+            return connection;
+        } finally {
+            JdbcMetrics.poolWait(System.nanoTime() - start, !acquired);
+        }
+    }
+
+    private Connection acquire(long timeoutMillis) throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed", "08003");
+        }
+        try {
+            if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException(
+                        "Timed out after " + timeoutMillis + " ms waiting for a connection", "08001");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection", "08001", e);
+        }
+
+        try {
+            PooledConnection pooled = takeIdle();
+            if (pooled == null) {
+                pooled = open();
+            }
+            borrowed.add(pooled);
+            Throwable site = config.leakThresholdMillis() > 0 ? new Throwable("Connection borrowed here") : null;
+            return pooled.lease(site);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a connection outside the pool, for long-lived uses such as {@code LISTEN} that would
+     * otherwise hold a pooled connection forever. The caller closes it.
+     *
+     * @return A new physical connection.
+     * @throws SQLException If the connection cannot be opened.
+     */
+    public Connection openDedicated() throws SQLException {
+        return DriverManager.getConnection(config.url(), connectProperties);
+    }
+
+    /**
+     * Number of connections currently borrowed.
+     */
+    public int activeCount() {
+        return borrowed.size();
+    }
+
+    /**
+     * Number of connections currently idle in the pool.
+     */
+    public int idleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Closes every idle connection and stops housekeeping. Borrowed connections are closed when returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            pooled.closePhysical();
+        }
+    }
+
+    /**
+     * Takes a connection back from a borrower.
+     *
+     * @param pooled The returned connection.
+     */
+    void release(PooledConnection pooled) {
+        borrowed.remove(pooled);
+        try {
+            pooled.reset();
+            if (closed || idle.size() >= config.maxSize()) {
+                pooled.closePhysical();
+            } else {
+                idle.offerFirst(pooled);
+            }
+        } catch (SQLException e) {
+            pooled.closePhysical();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private PooledConnection takeIdle() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (pooled.validate(config.validationTimeoutSeconds(), config.validationIntervalMillis())) {
+                return pooled;
+            }
+            pooled.closePhysical();
+        }
+        return null;
+    }
+
+    private PooledConnection open() throws SQLException {
+        return new PooledConnection(this, DriverManager.getConnection(config.url(), connectProperties),
+                config.statementCacheSize());
+    }
+
+    /**
+     * Evicts stale idle connections, refills the pool to its minimum and reports leaks.
+     */
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+
+        int removable = idle.size() - config.minIdle();
+        for (PooledConnection pooled : idle) {
+            if (removable <= 0) {
+                break;
+            }
+            if (now - pooled.lastUsedMillis() > config.idleTimeoutMillis() && idle.remove(pooled)) {
+                pooled.closePhysical();
+                removable--;
+            }
+        }
+
+        while (!closed && idle.size() + borrowed.size() < config.minIdle()) {
+            try {
+                idle.offerLast(open());
+            } catch (SQLException e) {
+                System.out.println(e.getSQLState());
+                System.out.println(e.getMessage());
+                break;
+            }
+        }
+
+        if (config.leakThresholdMillis() > 0) {
+            for (PooledConnection pooled : borrowed) {
+                Throwable site = pooled.borrowSite();
+                if (site != null && !pooled.leakReported()
+                        && now - pooled.borrowedAtMillis() > config.leakThresholdMillis()) {
+                    pooled.markLeakReported();
+                    System.out.println("Possible connection leak: connection held for "
+                            + (now - pooled.borrowedAtMillis()) + " ms");
+                    site.printStackTrace(System.out);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.picsart;
+
+/**
+ * A row of the {@code Customers} table.
+ *
+ * @param customerId The ID of the customer.
+ * @param name       The name.
+ * @param email      The email address.
+ * @param phone      The phone number.
+ */
+public record Customer(int customerId, String name, String email, String phone) {
+}
@@ -1,9 +1,7 @@
 package com.picsart;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
 
 /**
  * Class for managing customer-related operations in the Bookstore Management System.
@@ -13,68 +11,50 @@ public class CustomerManagement {
     /**
      * Updates the information of a customer in the database.
      *
-     * @param connection  The database connection.
      * @param customerID  The ID of the customer to update.
      * @param name        The new name for the customer.
      * @param email       The new email for the customer.
      * @param phone       The new phone number for the customer.
+     * @return True if the customer was found and updated.
+     * @throws SQLException If a database access error occurs.
      */
-    public static void updateCustomerInfo(Connection connection, int customerID, String name, String email, String phone) {
-        String updateQuery = "UPDATE Customers SET Name = ?, Email = ?, Phone = ? WHERE CustomerID = ?";
-
-        try (PreparedStatement preparedStatement = connection.prepareStatement(updateQuery)) {
-
-            preparedStatement.setString(1, name);
-            preparedStatement.setString(2, email);
-            preparedStatement.setString(3, phone);
-            preparedStatement.setInt(4, customerID);
-
-            int rowsAffected = preparedStatement.executeUpdate();
-
-            if (rowsAffected > 0) {
-                System.out.println("Customer information updated successfully.");
-            } else {
-                System.out.println("No customer found with the given ID.");
-            }
-
-        } catch (SQLException e) {
-            System.out.println(e.getErrorCode());
-            System.out.println(e.getSQLState());
-            System.out.println(e.getMessage());
+    public static boolean updateCustomerInfo(int customerID, String name, String email, String phone) throws SQLException {
+        try (Metrics.Scope ignored = Metrics.begin("CustomerManagement.updateCustomerInfo")) {
+            return Repositories.customers().update(new Customer(customerID, name, email, phone));
         }
     }
 
     /**
-     * Views the purchase history of a customer from the database.
+     * Returns every sale of a customer from the database. Prefer {@link #purchaseHistory}, which pages
+     * the history and includes book titles and totals.
      *
-     * @param connection The database connection.
      * @param customerID The ID of the customer to view purchase history for.
+     * @return The customer's sales, ordered by sale ID.
+     * @throws SQLException If a database access error occurs.
      */
-    public static void viewCustomerPurchaseHistory(Connection connection, int customerID) {
-        String selectQuery = "SELECT * FROM Sales WHERE CustomerID = ?";
-
-        try (PreparedStatement preparedStatement = connection.prepareStatement(selectQuery)) {
-            preparedStatement.setInt(1, customerID);
-
-            try (ResultSet resultSet = preparedStatement.executeQuery()) {
-
-                if (resultSet.next()) {
-                    System.out.println("Purchase history for customer with ID " + customerID + ":");
-                    do {
-                        System.out.println("Sale ID: " + resultSet.getInt("SaleID") +
-                                ", Book ID: " + resultSet.getInt("BookID") +
-                                ", Sale Date: " + resultSet.getDate("DateOfSale") +
-                                ", QuantitySold: " + resultSet.getInt("QuantitySold"));
-                    } while (resultSet.next());
-                } else {
-                    System.out.println("No purchase history found for the customer with ID " + customerID + ".");
-                }
-            }
+    public static List<Sale> viewCustomerPurchaseHistory(int customerID) throws SQLException {
+        try (Metrics.Scope ignored = Metrics.begin("CustomerManagement.viewCustomerPurchaseHistory")) {
+            return Repositories.sales().findByCustomer(customerID);
+        }
+    }
 
-        } catch (SQLException e) {
-            System.out.println(e.getErrorCode());
-            System.out.println(e.getSQLState());
-            System.out.println(e.getMessage());
+    /**
+     * Returns a page of a customer's purchase history, newest sale first, with book titles, lifetime
+     * spend and the number of books bought.
+     *
+     * @param customerID The ID of the customer.
+     * @param after      The {@link PurchaseHistoryPage#next()} of the previous page, or null for the first page.
+     * @param pageSize   Maximum number of sales on the page.
+     * @return The page.
+     * @throws SQLException If a database access error occurs.
+     */
+    public static PurchaseHistoryPage purchaseHistory(int customerID, PurchaseHistoryPage.Cursor after, int pageSize)
+            throws SQLException {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        try (Metrics.Scope ignored = Metrics.begin("CustomerManagement.purchaseHistory")) {
+            return Repositories.sales().purchaseHistory(customerID, after, pageSize);
         }
     }
 }
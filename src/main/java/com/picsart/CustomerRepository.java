@@ -0,0 +1,28 @@
+package com.picsart;
+
+import java.sql.SQLException;
+import java.util.Optional;
+
+/**
+ * Data access for the {@code Customers} table.
+ */
+public interface CustomerRepository {
+
+    /**
+     * Finds a customer by ID.
+     *
+     * @param customerId The ID of the customer.
+     * @return The customer, if it exists.
+     * @throws SQLException If a database access error occurs.
+     */
+    Optional<Customer> findById(int customerId) throws SQLException;
+
+    /**
+     * Overwrites name, email and phone of a customer.
+     *
+     * @param customer The new customer details; the ID selects the row.
+     * @return True if the customer exists and was updated.
+     * @throws SQLException If a database access error occurs.
+     */
+    boolean update(Customer customer) throws SQLException;
+}
@@ -1,48 +1,148 @@
 package com.picsart;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Utility class for managing database connections in the Bookstore Management System.
+ * <p>
+ * Connections are borrowed from a shared {@link ConnectionPool}; closing a borrowed connection
+ * returns it to the pool. The pool is configured from {@link Configuration} on first use unless
+ * {@link #initialize(PoolConfig)} was called before.
+ * <p>
+ * If {@code db.replica.url} is set, read-only queries that tolerate slightly stale data, such as reports,
+ * searches and purchase histories, borrow from {@link #readConnection()}, which uses a second pool on a
+ * streaming replica configured under {@code db.replica.}. Everything else, and every read of a thread
+ * that wrote less than {@code db.replica.stickyMillis} ago, uses the primary, so a clerk sees their own
+ * sale in the history and reports right away. If the replica cannot be reached, reads go to the primary
+ * and the replica is tried again after {@code db.replica.retryMillis}.
  */
 public class DatabaseConnection {
 
     /**
-     * Database connection URL.
+     * The shared connection pool.
      */
-    private static final String ADDRESS = "jdbc:postgresql://localhost:32769/bookstore_db";
+    private static volatile ConnectionPool pool;
+
+    private static final String REPLICA_PREFIX = "db.replica.";
+    private static final ThreadLocal<Long> LAST_WRITE = new ThreadLocal<>();
+
+    private static volatile boolean replicaLoaded;
+    private static volatile ConnectionPool replicaPool;
+    private static volatile long stickyNanos;
+    private static volatile long retryNanos;
+    private static volatile boolean replicaDown;
+    private static volatile long replicaRetryAt;
 
     /**
-     * Database username.
+     * Creates the shared pool with the given settings, replacing any existing pool.
+     *
+     * @param config The pool settings.
      */
-    private static final String USER_NAME = "postgres";
+    public static synchronized void initialize(PoolConfig config) {
+        if (pool != null) {
+            pool.close();
+        }
+        pool = new ConnectionPool(config);
+    }
 
     /**
-     * Database password.
+     * Returns the shared pool, creating it from the application configuration if needed.
+     *
+     * @return The connection pool.
      */
-    public static final String PASSWORD = "postgres";
+    public static ConnectionPool pool() {
+        ConnectionPool current = pool;
+        if (current == null) {
+            synchronized (DatabaseConnection.class) {
+                if (pool == null) {
+                    pool = new ConnectionPool(PoolConfig.from(Configuration.load()));
+                }
+                current = pool;
+            }
+        }
+        return current;
+    }
 
     /**
-     * Establishes a connection to the database.
+     * Borrows a connection from the pool.
      *
-     * @return The established database connection.
+     * @return The borrowed database connection; close it to give it back.
+     * @throws SQLException If no connection is available.
      */
-    public static Connection connection() {
+    public static Connection connection() throws SQLException {
+        return pool().borrow();
+    }
 
+    /**
+     * Borrows a connection for a read-only query that may lag slightly behind the primary: from the
+     * replica pool if one is configured and reachable, has a free connection and the thread has not
+     * written recently, from the primary pool otherwise. A busy replica pool is not waited for.
+     *
+     * @return The borrowed database connection; close it to give it back.
+     * @throws SQLException If no connection is available.
+     */
+    public static Connection readConnection() throws SQLException {
+        ConnectionPool replica = replica();
+        if (replica == null || wroteRecently() || (replicaDown && System.nanoTime() - replicaRetryAt < 0)) {
+            return connection();
+        }
         try {
-            return DriverManager.getConnection(ADDRESS, USER_NAME, PASSWORD);
+            Connection connection = replica.borrow(0);
+            replicaDown = false;
+            return connection;
+        } catch (SQLTransientConnectionException e) {
+            return connection();
         } catch (SQLException e) {
-            System.out.println(e.getErrorCode());
-            System.out.println(e.getSQLState());
-            System.out.println(e.getMessage());
-            return null;
+            if (!replicaDown) {
+                System.out.println("Replica unavailable, reading from the primary: " + e.getMessage());
+            }
+            replicaRetryAt = System.nanoTime() + retryNanos;
+            replicaDown = true;
+            return connection();
+        }
+    }
+
+    /**
+     * Records that the current thread committed a write, so its reads go to the primary for the next
+     * {@code db.replica.stickyMillis}.
+     */
+    public static void recordWrite() {
+        if (replica() != null) {
+            LAST_WRITE.set(System.nanoTime());
         }
     }
 
+    private static boolean wroteRecently() {
+        Long lastWrite = LAST_WRITE.get();
+        return lastWrite != null && System.nanoTime() - lastWrite < stickyNanos;
+    }
+
     /**
-     * Closes the given database connection.
+     * Returns the replica pool, creating it from the application configuration on first use, or null if
+     * no replica is configured.
+     */
+    private static ConnectionPool replica() {
+        if (!replicaLoaded) {
+            synchronized (DatabaseConnection.class) {
+                if (!replicaLoaded) {
+                    Configuration configuration = Configuration.load();
+                    stickyNanos = TimeUnit.MILLISECONDS.toNanos(configuration.getLong(REPLICA_PREFIX + "stickyMillis", 5000));
+                    retryNanos = TimeUnit.MILLISECONDS.toNanos(configuration.getLong(REPLICA_PREFIX + "retryMillis", 10_000));
+                    if (!configuration.get(REPLICA_PREFIX + "url", "").isBlank()) {
+                        replicaPool = new ConnectionPool(PoolConfig.from(configuration, REPLICA_PREFIX));
+                    }
+                    replicaLoaded = true;
+                }
+            }
+        }
+        return replicaPool;
+    }
+
+    /**
+     * Closes the given database connection, returning it to the pool.
      *
      * @param connection The database connection to close.
      */
@@ -57,4 +157,20 @@ public class DatabaseConnection {
             }
         }
     }
+
+    /**
+     * Closes the shared pools and all of their idle connections.
+     */
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+        if (replicaPool != null) {
+            replicaPool.close();
+            replicaPool = null;
+        }
+        replicaLoaded = false;
+        replicaDown = false;
+    }
 }
@@ -0,0 +1,130 @@
+package com.picsart;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * In-process total revenue per genre, maintained incrementally from {@link SaleEvents}.
+ * <p>
+ * Totals are loaded once from {@code Sales} and {@code Books}, then every committed sale adds its price
+ * to a per-genre {@link LongAdder} of cents, so reading the totals costs one entry per genre instead of
+ * a scan of all sales. A periodic reconciliation recomputes the totals from the base tables and corrects
+ * drift, e.g. after a book moved to another genre or sales were written by another application.
+ */
+public class GenreRevenue {
+
+    private static final Map<String, LongAdder> REVENUE_CENTS = new ConcurrentHashMap<>();
+    private static final Consumer<SaleResult> SUBSCRIBER = GenreRevenue::record;
+    private static volatile boolean loaded;
+    private static ScheduledExecutorService reconciler;
+
+    /**
+     * Loads the totals, starts tracking sales and schedules the reconciliation.
+     *
+     * @param reconcileIntervalSeconds Seconds between reconciliations; 0 disables them.
+     * @throws SQLException If the initial totals cannot be loaded.
+     */
+    public static synchronized void start(long reconcileIntervalSeconds) throws SQLException {
+        ensureLoaded();
+        if (reconciler == null && reconcileIntervalSeconds > 0) {
+            reconciler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "genre-revenue-reconciler");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reconciler.scheduleWithFixedDelay(() -> {
+                try {
+                    reconcile();
+                } catch (SQLException e) {
+                    System.out.println(e.getSQLState());
+                    System.out.println(e.getMessage());
+                }
+            }, reconcileIntervalSeconds, reconcileIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stops the reconciliation; totals keep being maintained.
+     */
+    public static synchronized void stop() {
+        if (reconciler != null) {
+            reconciler.shutdownNow();
+            reconciler = null;
+        }
+    }
+
+    /**
+     * Returns the total revenue of every genre, loading the totals on first use.
+     *
+     * @return Revenue per genre, sorted by genre.
+     * @throws SQLException If the totals have to be loaded and the query fails.
+     */
+    public static Map<String, Double> revenueByGenre() throws SQLException {
+        ensureLoaded();
+        Map<String, Double> result = new TreeMap<>();
+        REVENUE_CENTS.forEach((genre, cents) -> result.put(genre, cents.sum() / 100.0));
+        return result;
+    }
+
+    /**
+     * Recomputes the totals from the base tables and applies the difference.
+     * <p>
+     * The difference is taken against the totals read just before the query, so sales recorded while
+     * the query runs are kept. A sale committed before the query snapshot but recorded after the read
+     * is counted twice until the next reconciliation.
+     *
+     * @throws SQLException If the query fails.
+     */
+    public static void reconcile() throws SQLException {
+        Map<String, Long> before = new HashMap<>();
+        REVENUE_CENTS.forEach((genre, cents) -> before.put(genre, cents.sum()));
+
+        Map<String, Long> actual = Repositories.sales().revenueCentsByGenre();
+
+        for (Map.Entry<String, Long> entry : actual.entrySet()) {
+            long delta = entry.getValue() - before.getOrDefault(entry.getKey(), 0L);
+            if (delta != 0) {
+                REVENUE_CENTS.computeIfAbsent(entry.getKey(), genre -> new LongAdder()).add(delta);
+            }
+        }
+        for (Map.Entry<String, Long> entry : before.entrySet()) {
+            if (!actual.containsKey(entry.getKey())) {
+                REVENUE_CENTS.get(entry.getKey()).add(-entry.getValue());
+            }
+        }
+    }
+
+    private static void ensureLoaded() throws SQLException {
+        if (loaded) {
+            return;
+        }
+        synchronized (GenreRevenue.class) {
+            if (!loaded) {
+                SaleEvents.subscribe(SUBSCRIBER);
+                try {
+                    reconcile();
+                } catch (SQLException e) {
+                    SaleEvents.unsubscribe(SUBSCRIBER);
+                    REVENUE_CENTS.clear();
+                    throw e;
+                }
+                loaded = true;
+            }
+        }
+    }
+
+    private static void record(SaleResult sale) {
+        if (sale.genre() != null) {
+            REVENUE_CENTS.computeIfAbsent(sale.genre(), genre -> new LongAdder())
+                    .add(Math.round(sale.totalPrice() * 100));
+        }
+    }
+}
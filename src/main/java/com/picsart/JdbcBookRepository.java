@@ -0,0 +1,184 @@
+package com.picsart;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * {@link BookRepository} on pooled JDBC connections.
+ */
+public class JdbcBookRepository implements BookRepository {
+
+    private static final String SELECT_BY_ID_QUERY =
+            "SELECT BookID, Title, Author, Genre, Price, QuantityInStock FROM Books WHERE BookID = ?";
+
+    static final String SELECT_BY_GENRE_QUERY =
+            "SELECT BookID, Title, Author, Genre, Price, QuantityInStock FROM Books WHERE Genre = ? ORDER BY BookID";
+
+    static final String SELECT_BY_AUTHOR_QUERY =
+            "SELECT BookID, Title, Author, Genre, Price, QuantityInStock FROM Books WHERE Author = ? ORDER BY BookID";
+
+    private static final String SEARCH_COLUMNS = "SELECT BookID, Title, Author, Genre, Price, QuantityInStock, ";
+
+    private static final String UPDATE_QUERY =
+            "UPDATE Books SET Title = ?, Author = ?, Genre = ?, Price = ?, QuantityInStock = ? WHERE BookID = ?";
+
+    @Override
+    public Optional<Book> findById(int bookId) throws SQLException {
+        try (Connection connection = DatabaseConnection.connection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SELECT_BY_ID_QUERY)) {
+            preparedStatement.setInt(1, bookId);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next() ? Optional.of(map(resultSet)) : Optional.empty();
+            }
+        }
+    }
+
+    @Override
+    public List<Book> findByGenre(String genre) throws SQLException {
+        return findBy(SELECT_BY_GENRE_QUERY, genre);
+    }
+
+    @Override
+    public List<Book> findByAuthor(String author) throws SQLException {
+        return findBy(SELECT_BY_AUTHOR_QUERY, author);
+    }
+
+    @Override
+    public boolean update(Book book) throws SQLException {
+        try (Connection connection = DatabaseConnection.connection();
+             PreparedStatement preparedStatement = connection.prepareStatement(UPDATE_QUERY)) {
+            preparedStatement.setString(1, book.title());
+            preparedStatement.setString(2, book.author());
+            preparedStatement.setString(3, book.genre());
+            preparedStatement.setDouble(4, book.price());
+            preparedStatement.setInt(5, book.quantityInStock());
+            preparedStatement.setInt(6, book.bookId());
+            boolean updated = preparedStatement.executeUpdate() > 0;
+            if (updated) {
+                DatabaseConnection.recordWrite();
+            }
+            return updated;
+        }
+    }
+
+    @Override
+    public List<BookSearchHit> search(BookSearchQuery query) throws SQLException {
+        List<BookSearchHit> hits = new ArrayList<>();
+        String tsQuery = query.mode() == BookSearchQuery.Mode.WORDS ? prefixTsQuery(query) : null;
+        if (query.mode() == BookSearchQuery.Mode.WORDS ? tsQuery == null : query.text().isBlank()) {
+            return hits;
+        }
+        try (Connection connection = DatabaseConnection.readConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(searchQuery(query))) {
+            int index = 1;
+            if (tsQuery != null) {
+                preparedStatement.setString(index++, tsQuery);
+            } else {
+                String text = query.text().trim();
+                for (int i = 0; i < query.fields().size(); i++) {
+                    preparedStatement.setString(index++, text);
+                }
+                String pattern = "%" + escapeLike(text) + "%";
+                for (int i = 0; i < query.fields().size(); i++) {
+                    preparedStatement.setString(index++, pattern);
+                }
+            }
+            preparedStatement.setInt(index++, query.limit());
+            preparedStatement.setInt(index, query.offset());
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    hits.add(new BookSearchHit(map(resultSet), resultSet.getDouble(7)));
+                }
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Builds the search statement. Column names come from {@link BookSearchQuery.Field} only; the text is
+     * always bound as a parameter.
+     */
+    static String searchQuery(BookSearchQuery query) {
+        StringBuilder sql = new StringBuilder(SEARCH_COLUMNS);
+        if (query.mode() == BookSearchQuery.Mode.WORDS) {
+            sql.append("ts_rank(SearchVector, q) AS rank FROM Books, to_tsquery('simple', ?) q WHERE SearchVector @@ q");
+        } else {
+            StringBuilder similarity = new StringBuilder();
+            StringBuilder condition = new StringBuilder();
+            for (BookSearchQuery.Field field : query.fields()) {
+                if (!condition.isEmpty()) {
+                    similarity.append(", ");
+                    condition.append(" OR ");
+                }
+                similarity.append("similarity(").append(field.column()).append(", ?)");
+                condition.append(field.column()).append(" ILIKE ? ESCAPE '\\'");
+            }
+            sql.append("GREATEST(").append(similarity).append(") AS rank FROM Books WHERE ").append(condition);
+        }
+        return sql.append(" ORDER BY rank DESC, BookID LIMIT ? OFFSET ?").toString();
+    }
+
+    /**
+     * Turns the words of the text into a tsquery matching word prefixes in the searched columns, e.g.
+     * {@code harr:*AB & pot:*AB}. Everything but letters and digits separates words, so the text cannot
+     * inject tsquery operators. Returns null if the text has no words.
+     */
+    static String prefixTsQuery(BookSearchQuery query) {
+        StringBuilder weights = new StringBuilder();
+        for (BookSearchQuery.Field field : query.fields()) {
+            weights.append(field.weight());
+        }
+        StringBuilder tsQuery = new StringBuilder();
+        for (String word : BookTypeahead.words(query.text())) {
+            if (!tsQuery.isEmpty()) {
+                tsQuery.append(" & ");
+            }
+            tsQuery.append(word).append(":*").append(weights);
+        }
+        return tsQuery.isEmpty() ? null : tsQuery.toString();
+    }
+
+    private static String escapeLike(String text) {
+        StringBuilder escaped = new StringBuilder(text.length() + 8);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '%' || c == '_' || c == '\\') {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    private static List<Book> findBy(String query, String value) throws SQLException {
+        List<Book> books = new ArrayList<>();
+        try (Connection connection = DatabaseConnection.connection();
+             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+            preparedStatement.setString(1, value);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    books.add(map(resultSet));
+                }
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Maps the columns BookID, Title, Author, Genre, Price, QuantityInStock in this order.
+     */
+    static Book map(ResultSet resultSet) throws SQLException {
+        return new Book(
+                resultSet.getInt(1),
+                resultSet.getString(2),
+                resultSet.getString(3),
+                resultSet.getString(4),
+                resultSet.getDouble(5),
+                resultSet.getInt(6));
+    }
+}
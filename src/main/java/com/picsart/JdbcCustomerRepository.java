@@ -0,0 +1,53 @@
+package com.picsart;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Optional;
+
+/**
+ * {@link CustomerRepository} on pooled JDBC connections.
+ */
+public class JdbcCustomerRepository implements CustomerRepository {
+
+    private static final String SELECT_BY_ID_QUERY =
+            "SELECT CustomerID, Name, Email, Phone FROM Customers WHERE CustomerID = ?";
+
+    private static final String UPDATE_QUERY =
+            "UPDATE Customers SET Name = ?, Email = ?, Phone = ? WHERE CustomerID = ?";
+
+    @Override
+    public Optional<Customer> findById(int customerId) throws SQLException {
+        try (Connection connection = DatabaseConnection.connection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SELECT_BY_ID_QUERY)) {
+            preparedStatement.setInt(1, customerId);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (!resultSet.next()) {
+                    return Optional.empty();
+                }
+                return Optional.of(new Customer(
+                        resultSet.getInt(1),
+                        resultSet.getString(2),
+                        resultSet.getString(3),
+                        resultSet.getString(4)));
+            }
+        }
+    }
+
+    @Override
+    public boolean update(Customer customer) throws SQLException {
+        try (Connection connection = DatabaseConnection.connection();
+             PreparedStatement preparedStatement = connection.prepareStatement(UPDATE_QUERY)) {
+            preparedStatement.setString(1, customer.name());
+            preparedStatement.setString(2, customer.email());
+            preparedStatement.setString(3, customer.phone());
+            preparedStatement.setInt(4, customer.customerId());
+            boolean updated = preparedStatement.executeUpdate() > 0;
+            if (updated) {
+                DatabaseConnection.recordWrite();
+            }
+            return updated;
+        }
+    }
+}
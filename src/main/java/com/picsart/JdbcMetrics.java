@@ -0,0 +1,105 @@
+package com.picsart;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Charges JDBC time to the {@link Metrics.Scope} open on the calling thread.
+ * <p>
+ * Statement calls go through {@link #invoke}, which times {@code execute*} methods and wraps returned
+ * result sets so that the time spent in {@code next()} is counted as fetching. Outside a scope calls
+ * pass straight through and nothing is wrapped.
+ */
+final class JdbcMetrics {
+
+    private JdbcMetrics() {
+    }
+
+    /**
+     * Calls a statement method, timing it if it executes SQL.
+     *
+     * @param statement The statement.
+     * @param method    The method to call.
+     * @param args      Its arguments.
+     * @return The result, with result sets wrapped while a scope is open.
+     * @throws Throwable Whatever the method throws.
+     */
+    static Object invoke(Object statement, Method method, Object[] args) throws Throwable {
+        Metrics.Scope scope = Metrics.current();
+        try {
+            if (scope == null) {
+                return method.invoke(statement, args);
+            }
+            Object result;
+            if (method.getName().startsWith("execute")) {
+                long start = System.nanoTime();
+                result = method.invoke(statement, args);
+                scope.executed(System.nanoTime() - start);
+            } else {
+                result = method.invoke(statement, args);
+            }
+            return result instanceof ResultSet resultSet ? resultSet(resultSet, scope) : result;
+        } catch (InvocationTargetException e) {
+            if (scope != null && e.getCause() instanceof SQLException) {
+                scope.failed();
+            }
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Wraps a statement created outside the statement cache, if a scope is open.
+     *
+     * @param statement The statement.
+     * @param type      The statement interface to expose, e.g. {@code PreparedStatement.class}.
+     * @return The statement or its timing proxy.
+     */
+    static Object statement(Statement statement, Class<?> type) {
+        if (Metrics.current() == null) {
+            return statement;
+        }
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> invoke(statement, method, args));
+    }
+
+    /**
+     * Records the time a borrower waited for a pooled connection.
+     *
+     * @param nanos  The wait.
+     * @param failed Whether no connection could be borrowed.
+     */
+    static void poolWait(long nanos, boolean failed) {
+        Metrics.Scope scope = Metrics.current();
+        if (scope != null) {
+            scope.poolWait(nanos);
+            if (failed) {
+                scope.failed();
+            }
+        }
+    }
+
+    private static ResultSet resultSet(ResultSet resultSet, Metrics.Scope scope) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            try {
+                if (method.getName().equals("next")) {
+                    long start = System.nanoTime();
+                    boolean row = (Boolean) method.invoke(resultSet, args);
+                    scope.fetched(System.nanoTime() - start, row);
+                    return row;
+                }
+                return method.invoke(resultSet, args);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof SQLException) {
+                    scope.failed();
+                }
+                throw e.getCause();
+            }
+        };
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class}, handler);
+    }
+}
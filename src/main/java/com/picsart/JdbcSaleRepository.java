@@ -0,0 +1,359 @@
+package com.picsart;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@link SaleRepository} on pooled JDBC connections.
+ */
+public class JdbcSaleRepository implements SaleRepository {
+
+    /**
+     * Number of rows fetched per round trip by streaming reports.
+     */
+    private static final int FETCH_SIZE = Configuration.load().getInt("report.fetchSize", 1000);
+
+    static final String SELECT_BY_CUSTOMER_QUERY =
+            "SELECT SaleID, BookID, CustomerID, DateOfSale, QuantitySold, TotalPrice " +
+                    "FROM Sales WHERE CustomerID = ? ORDER BY SaleID";
+
+    /**
+     * Dated sales of a purchase history page, read from the covering index on
+     * {@code (CustomerID, DateOfSale DESC, SaleID DESC)}; book titles are joined by primary key.
+     */
+    private static final String HISTORY_DATED_QUERY =
+            "SELECT Sales.SaleID, Sales.DateOfSale, Sales.BookID, Books.Title, Sales.QuantitySold, Sales.TotalPrice " +
+                    "FROM Sales " +
+                    "LEFT JOIN Books ON Sales.BookID = Books.BookID " +
+                    "WHERE Sales.CustomerID = ? AND Sales.DateOfSale IS NOT NULL ";
+    private static final String HISTORY_AFTER_CONDITION = "AND (Sales.DateOfSale, Sales.SaleID) < (?, ?) ";
+    private static final String HISTORY_DATED_ORDER = "ORDER BY Sales.DateOfSale DESC, Sales.SaleID DESC LIMIT ?";
+
+    /**
+     * Sales recorded without a date, listed after all dated sales.
+     */
+    private static final String HISTORY_UNDATED_QUERY =
+            "SELECT Sales.SaleID, Sales.DateOfSale, Sales.BookID, Books.Title, Sales.QuantitySold, Sales.TotalPrice " +
+                    "FROM Sales " +
+                    "LEFT JOIN Books ON Sales.BookID = Books.BookID " +
+                    "WHERE Sales.CustomerID = ? AND Sales.DateOfSale IS NULL AND Sales.SaleID < ? " +
+                    "ORDER BY Sales.SaleID DESC LIMIT ?";
+
+    static final String HISTORY_TOTALS_QUERY =
+            "SELECT COUNT(*), COALESCE(SUM(QuantitySold), 0), " +
+                    "COALESCE(SUM(ROUND(TotalPrice::numeric * 100)), 0)::bigint " +
+                    "FROM Sales WHERE CustomerID = ?";
+
+    private static final String REVENUE_BY_GENRE_QUERY =
+            "SELECT Books.Genre AS genre, SUM(ROUND(Sales.TotalPrice::numeric * 100))::bigint AS revenue_cents " +
+                    "FROM Sales " +
+                    "JOIN Books ON Sales.BookID = Books.BookID " +
+                    "GROUP BY Books.Genre";
+
+    /**
+     * Revenue by genre for a date range. The range is bound to {@code DateOfSale} directly, so Postgres
+     * prunes the {@code Sales} partitions outside it.
+     */
+    private static final String REVENUE_BY_GENRE_BETWEEN_QUERY =
+            "SELECT Books.Genre AS genre, SUM(ROUND(Sales.TotalPrice::numeric * 100))::bigint AS revenue_cents " +
+                    "FROM Sales " +
+                    "JOIN Books ON Sales.BookID = Books.BookID " +
+                    "WHERE Sales.DateOfSale >= ? AND Sales.DateOfSale < ? " +
+                    "GROUP BY Books.Genre";
+
+    @Override
+    public List<Sale> findByCustomer(int customerId) throws SQLException {
+        List<Sale> sales = new ArrayList<>();
+        try (Connection connection = DatabaseConnection.connection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SELECT_BY_CUSTOMER_QUERY)) {
+            preparedStatement.setInt(1, customerId);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    Date dateOfSale = resultSet.getDate(4);
+                    sales.add(new Sale(
+                            resultSet.getInt(1),
+                            resultSet.getInt(2),
+                            resultSet.getInt(3),
+                            dateOfSale == null ? null : dateOfSale.toLocalDate(),
+                            resultSet.getInt(5),
+                            resultSet.getDouble(6)));
+                }
+            }
+        }
+        return sales;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The page and the totals are read in one repeatable-read transaction, so they agree with each other.
+     * One row more than the limit is fetched to tell whether another page follows.
+     */
+    @Override
+    public PurchaseHistoryPage purchaseHistory(int customerId, PurchaseHistoryPage.Cursor after, int limit)
+            throws SQLException {
+        try (Connection connection = DatabaseConnection.readConnection()) {
+            connection.setAutoCommit(false);
+            connection.setReadOnly(true);
+            try (PreparedStatement preparedStatement =
+                         connection.prepareStatement("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ")) {
+                preparedStatement.execute();
+            }
+
+            List<PurchaseHistoryPage.Item> items = new ArrayList<>(limit + 1);
+            if (after == null || after.dateOfSale() != null) {
+                try (PreparedStatement preparedStatement = connection.prepareStatement(historyDatedQuery(after))) {
+                    int index = 1;
+                    preparedStatement.setInt(index++, customerId);
+                    if (after != null) {
+                        preparedStatement.setDate(index++, Date.valueOf(after.dateOfSale()));
+                        preparedStatement.setInt(index++, after.saleId());
+                    }
+                    preparedStatement.setInt(index, limit + 1);
+                    readHistoryItems(preparedStatement, items);
+                }
+            }
+            if (items.size() <= limit) {
+                try (PreparedStatement preparedStatement = connection.prepareStatement(HISTORY_UNDATED_QUERY)) {
+                    preparedStatement.setInt(1, customerId);
+                    preparedStatement.setInt(2, after == null || after.dateOfSale() != null ? Integer.MAX_VALUE : after.saleId());
+                    preparedStatement.setInt(3, limit + 1 - items.size());
+                    readHistoryItems(preparedStatement, items);
+                }
+            }
+
+            PurchaseHistoryPage.Cursor next = null;
+            if (items.size() > limit) {
+                items.remove(limit);
+                next = PurchaseHistoryPage.Cursor.after(items.get(limit - 1));
+            }
+
+            try (PreparedStatement preparedStatement = connection.prepareStatement(HISTORY_TOTALS_QUERY)) {
+                preparedStatement.setInt(1, customerId);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    resultSet.next();
+                    PurchaseHistoryPage page = new PurchaseHistoryPage(customerId, items,
+                            resultSet.getLong(1), resultSet.getLong(2), resultSet.getLong(3) / 100.0, next);
+                    connection.commit();
+                    return page;
+                }
+            }
+        }
+    }
+
+    static String historyDatedQuery(PurchaseHistoryPage.Cursor after) {
+        return HISTORY_DATED_QUERY + (after == null ? "" : HISTORY_AFTER_CONDITION) + HISTORY_DATED_ORDER;
+    }
+
+    private static void readHistoryItems(PreparedStatement preparedStatement, List<PurchaseHistoryPage.Item> items)
+            throws SQLException {
+        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+            while (resultSet.next()) {
+                Date dateOfSale = resultSet.getDate(2);
+                items.add(new PurchaseHistoryPage.Item(
+                        resultSet.getInt(1),
+                        dateOfSale == null ? null : dateOfSale.toLocalDate(),
+                        resultSet.getInt(3),
+                        resultSet.getString(4),
+                        resultSet.getInt(5),
+                        resultSet.getDouble(6)));
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The query runs in a read-only transaction with a fetch size, so the driver reads rows through a
+     * server-side cursor in batches instead of buffering the whole result in memory.
+     */
+    @Override
+    public Stream<SaleRow> bookSales(SalesReportQuery query) throws SQLException {
+        Connection connection = DatabaseConnection.readConnection();
+        try {
+            connection.setAutoCommit(false);
+            connection.setReadOnly(true);
+            PreparedStatement preparedStatement = prepareBookSales(connection, query);
+            ResultSet resultSet = preparedStatement.executeQuery();
+
+            Spliterator<SaleRow> rows = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                    Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super SaleRow> action) {
+                    try {
+                        if (!resultSet.next()) {
+                            return false;
+                        }
+                        action.accept(mapSaleRow(resultSet));
+                        return true;
+                    } catch (SQLException e) {
+                        throw new UncheckedSQLException(e);
+                    }
+                }
+            };
+            return StreamSupport.stream(rows, false).onClose(() -> {
+                try (connection; preparedStatement; resultSet) {
+                    connection.commit();
+                } catch (SQLException e) {
+                    throw new UncheckedSQLException(e);
+                }
+            });
+        } catch (SQLException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public Map<String, Long> revenueCentsByGenre() throws SQLException {
+        try (Connection connection = DatabaseConnection.connection();
+             PreparedStatement preparedStatement = connection.prepareStatement(REVENUE_BY_GENRE_QUERY)) {
+            return revenueCents(preparedStatement);
+        }
+    }
+
+    @Override
+    public Map<String, Long> revenueCentsByGenre(LocalDate from, LocalDate to) throws SQLException {
+        try (Connection connection = DatabaseConnection.readConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(REVENUE_BY_GENRE_BETWEEN_QUERY)) {
+            preparedStatement.setDate(1, Date.valueOf(from));
+            preparedStatement.setDate(2, Date.valueOf(to));
+            return revenueCents(preparedStatement);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Reads {@code SalesDailyGenreRollup}, one row per day and genre, never {@code Sales}.
+     */
+    @Override
+    public List<SalesTrend> salesTrend(LocalDate from, LocalDate to, SalesTrend.Granularity granularity,
+                                       boolean byGenre) throws SQLException {
+        String period = "date_trunc('" + granularity.name().toLowerCase(Locale.ROOT) + "', Day)::date";
+        String query = "SELECT " + period + ", " + (byGenre ? "Genre" : "NULL") +
+                ", SUM(SaleCount), SUM(Quantity), SUM(RevenueCents) " +
+                "FROM SalesDailyGenreRollup WHERE Day >= ? AND Day < ? " +
+                "GROUP BY 1, 2 ORDER BY 1, 2";
+        try (Connection connection = DatabaseConnection.readConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+            preparedStatement.setDate(1, Date.valueOf(from));
+            preparedStatement.setDate(2, Date.valueOf(to));
+            return readTrend(preparedStatement);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Reads {@code SalesDailyBookRollup} through its {@code (BookID, Day)} index.
+     */
+    @Override
+    public List<SalesTrend> bookSalesTrend(int bookId, LocalDate from, LocalDate to,
+                                           SalesTrend.Granularity granularity) throws SQLException {
+        String period = "date_trunc('" + granularity.name().toLowerCase(Locale.ROOT) + "', Day)::date";
+        String query = "SELECT " + period + ", NULL, SUM(SaleCount), SUM(Quantity), SUM(RevenueCents) " +
+                "FROM SalesDailyBookRollup WHERE BookID = ? AND Day >= ? AND Day < ? " +
+                "GROUP BY 1 ORDER BY 1";
+        try (Connection connection = DatabaseConnection.readConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+            preparedStatement.setInt(1, bookId);
+            preparedStatement.setDate(2, Date.valueOf(from));
+            preparedStatement.setDate(3, Date.valueOf(to));
+            return readTrend(preparedStatement);
+        }
+    }
+
+    private static List<SalesTrend> readTrend(PreparedStatement preparedStatement) throws SQLException {
+        List<SalesTrend> trend = new ArrayList<>();
+        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+            while (resultSet.next()) {
+                trend.add(new SalesTrend(resultSet.getDate(1).toLocalDate(), resultSet.getString(2),
+                        resultSet.getLong(3), resultSet.getLong(4), resultSet.getLong(5)));
+            }
+        }
+        return trend;
+    }
+
+    private static Map<String, Long> revenueCents(PreparedStatement preparedStatement) throws SQLException {
+        Map<String, Long> result = new HashMap<>();
+        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+            while (resultSet.next()) {
+                result.put(resultSet.getString(1), resultSet.getLong(2));
+            }
+        }
+        return result;
+    }
+
+    private static PreparedStatement prepareBookSales(Connection connection, SalesReportQuery query)
+            throws SQLException {
+        PreparedStatement preparedStatement = connection.prepareStatement(bookSalesQuery(query));
+        bindBookSales(preparedStatement, query);
+        preparedStatement.setFetchSize(FETCH_SIZE);
+        return preparedStatement;
+    }
+
+    /**
+     * Builds the report query for the filters set in the given query.
+     */
+    static String bookSalesQuery(SalesReportQuery query) {
+        StringBuilder selectQuery = new StringBuilder("SELECT Sales.SaleID AS sale_id, Books.Title AS book_title, " +
+                "Customers.Name AS customer_name, " +
+                "Sales.DateOfSale AS sale_date " +
+                "FROM Sales " +
+                "JOIN Books ON Sales.BookID = Books.BookID " +
+                "JOIN Customers ON Sales.CustomerID = Customers.CustomerID " +
+                "WHERE Sales.SaleID > ?");
+        if (query.from() != null) {
+            selectQuery.append(" AND Sales.DateOfSale >= ?");
+        }
+        if (query.to() != null) {
+            selectQuery.append(" AND Sales.DateOfSale < ?");
+        }
+        selectQuery.append(" ORDER BY Sales.SaleID");
+        if (query.limit() > 0) {
+            selectQuery.append(" LIMIT ?");
+        }
+        return selectQuery.toString();
+    }
+
+    /**
+     * Sets the parameters of a statement prepared from {@link #bookSalesQuery}.
+     */
+    static void bindBookSales(PreparedStatement preparedStatement, SalesReportQuery query) throws SQLException {
+        int index = 1;
+        preparedStatement.setInt(index++, query.afterSaleId());
+        if (query.from() != null) {
+            preparedStatement.setDate(index++, Date.valueOf(query.from()));
+        }
+        if (query.to() != null) {
+            preparedStatement.setDate(index++, Date.valueOf(query.to()));
+        }
+        if (query.limit() > 0) {
+            preparedStatement.setInt(index, query.limit());
+        }
+    }
+
+    private static SaleRow mapSaleRow(ResultSet resultSet) throws SQLException {
+        Date saleDate = resultSet.getDate(4);
+        return new SaleRow(
+                resultSet.getInt(1),
+                resultSet.getString(2),
+                resultSet.getString(3),
+                saleDate == null ? null : saleDate.toLocalDate());
+    }
+}
@@ -0,0 +1,330 @@
+package com.picsart;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sales acknowledged once they are durable in a local {@link SaleJournal} and written to the database in
+ * the background, so a checkout by a returning customer neither waits for nor fails with the database.
+ * <p>
+ * A sale takes its stock from the {@link StockLedger}, which must be running, prices itself from the
+ * {@link BookCatalog} and is appended to the journal under a client sale UUID. An applier thread writes
+ * journaled sales to {@code Sales} in batches, each in one transaction that also records the last
+ * applied sequence number in {@code SaleJournalCheckpoint}; the insert skips sale UUIDs already present,
+ * so replaying a batch is harmless. While the database is unreachable sales keep being journaled and the
+ * applier retries every {@code sale.journal.applyIntervalMillis}. On start the entries after the
+ * checkpoint are replayed.
+ * <p>
+ * A journaled sale has no sale ID when it is acknowledged and shows up in reports and purchase histories
+ * once applied. A sale is only acknowledged for a customer known to exist: customer IDs are looked up on the
+ * primary once and then cached, as customers are never deleted by the application, so a new customer
+ * cannot buy while the database is unreachable. A sale the database still rejects, because its customer or
+ * book was deleted in the meantime, is dropped with a message and its stock is given back.
+ * <p>
+ * The stock is reserved, and made durable by the {@link StockLedger}, before the sale is appended to the
+ * journal. A crash between the two loses the sale but keeps the reservation, so those copies are missing
+ * from the stock until it is corrected: the store undersells, it never oversells.
+ */
+public class JournaledSales {
+
+    private static final String SELECT_CHECKPOINT = "SELECT LastSequence FROM SaleJournalCheckpoint WHERE ID = 1";
+    private static final String UPDATE_CHECKPOINT = "UPDATE SaleJournalCheckpoint SET LastSequence = ? WHERE ID = 1";
+    private static final String CUSTOMER_EXISTS_QUERY = "SELECT 1 FROM Customers WHERE CustomerID = ?";
+
+    /**
+     * IDs of customers known to exist.
+     */
+    private static final Set<Integer> KNOWN_CUSTOMERS = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Inserts a batch, skipping sales already applied and sales of unknown customers or books, and returns
+     * one row per journaled sale: its sale ID if it was inserted now, the genre of its book and whether
+     * the database accepts it at all.
+     */
+    private static final String APPLY_QUERY =
+            "WITH batch AS (" +
+                    "SELECT * FROM unnest(?::uuid[], ?::integer[], ?::integer[], ?::date[], ?::integer[], ?::float8[]) " +
+                    "AS b(ClientSaleID, BookID, CustomerID, DateOfSale, QuantitySold, TotalPrice)), " +
+            "inserted AS (" +
+                    "INSERT INTO Sales (ClientSaleID, BookID, CustomerID, DateOfSale, QuantitySold, TotalPrice) " +
+                    "SELECT batch.* FROM batch " +
+                    "WHERE EXISTS (SELECT 1 FROM Customers WHERE CustomerID = batch.CustomerID) " +
+                    "AND EXISTS (SELECT 1 FROM Books WHERE BookID = batch.BookID) " +
+                    "ON CONFLICT (ClientSaleID, DateOfSale) DO NOTHING " +
+                    "RETURNING ClientSaleID, SaleID) " +
+            "SELECT batch.ClientSaleID, inserted.SaleID, Books.Genre, " +
+            "Books.BookID IS NOT NULL AND EXISTS (SELECT 1 FROM Customers WHERE CustomerID = batch.CustomerID) " +
+            "FROM batch LEFT JOIN inserted ON inserted.ClientSaleID = batch.ClientSaleID " +
+            "LEFT JOIN Books ON Books.BookID = batch.BookID";
+
+    private static volatile SaleJournal journal;
+    private static ScheduledExecutorService applier;
+    private static int batchSize;
+    private static volatile boolean applyFailing;
+
+    /**
+     * Opens the journal and starts the applier, which first replays what the database has not seen.
+     * Does nothing unless the {@link StockLedger} is running.
+     *
+     * @param configuration The application configuration.
+     * @throws SQLException If the checkpoint cannot be read.
+     * @throws IOException  If the journal cannot be opened.
+     */
+    public static synchronized void start(Configuration configuration) throws SQLException, IOException {
+        if (journal != null) {
+            return;
+        }
+        if (!StockLedger.isRunning()) {
+            System.out.println("The sale journal needs stock.ledger.enabled; selling directly");
+            return;
+        }
+        long lastApplied;
+        try (Connection connection = DatabaseConnection.connection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SELECT_CHECKPOINT);
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            lastApplied = resultSet.next() ? resultSet.getLong(1) : 0;
+        }
+        batchSize = Math.max(1, configuration.getInt("sale.journal.applyBatchSize", 500));
+        journal = SaleJournal.open(Path.of(configuration.get("sale.journal.dir", "sale-journal")),
+                configuration.getBoolean("sale.journal.fsync", true),
+                configuration.getInt("sale.journal.segmentBytes", 16 * 1024 * 1024),
+                lastApplied);
+
+        long applyIntervalMillis = Math.max(1, configuration.getLong("sale.journal.applyIntervalMillis", 50));
+        applier = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sale-journal-applier");
+            thread.setDaemon(true);
+            return thread;
+        });
+        applier.scheduleWithFixedDelay(JournaledSales::applyPending, 0, applyIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the applier after a last attempt to apply the journal and closes it. Entries still not applied
+     * are replayed on the next start.
+     */
+    public static synchronized void stop() {
+        SaleJournal current = journal;
+        if (current == null) {
+            return;
+        }
+        journal = null;
+        applier.shutdown();
+        try {
+            if (applier.awaitTermination(10, TimeUnit.SECONDS)) {
+                apply(current);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (SQLException e) {
+            System.out.println(e.getSQLState());
+            System.out.println(e.getMessage());
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+        applier = null;
+        try {
+            current.close();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    public static boolean isRunning() {
+        return journal != null;
+    }
+
+    /**
+     * Sells books under a new client sale UUID.
+     *
+     * @see #sell(UUID, int, int, Date, int)
+     */
+    public static SaleResult sell(int customerId, int bookId, Date dateOfSale, int quantity) {
+        return sell(UUID.randomUUID(), customerId, bookId, dateOfSale, quantity);
+    }
+
+    /**
+     * Sells books, returning once the sale is in the journal. Without a running journal the sale is made
+     * directly by the {@link SaleEngine}.
+     *
+     * @param clientSaleId The UUID identifying the sale.
+     * @param customerId   The ID of the customer making the purchase.
+     * @param bookId       The ID of the book being purchased.
+     * @param dateOfSale   The date of the sale.
+     * @param quantity     The quantity of books being purchased.
+     * @return The outcome of the sale; a completed sale has no sale ID yet.
+     */
+    public static SaleResult sell(UUID clientSaleId, int customerId, int bookId, Date dateOfSale, int quantity) {
+        SaleJournal current = journal;
+        if (current == null) {
+            return SaleEngine.sell(customerId, bookId, dateOfSale, quantity);
+        }
+        if (quantity <= 0) {
+            return SaleResult.failed(customerId, bookId, quantity, "Quantity must be positive");
+        }
+        try {
+            if (!customerExists(customerId)) {
+                return SaleResult.failed(customerId, bookId, quantity, "Customer " + customerId + " does not exist");
+            }
+            Book book = BookCatalog.get(bookId);
+            StockLedger.Outcome outcome = book == null
+                    ? StockLedger.Outcome.BOOK_NOT_FOUND
+                    : StockLedger.reserve(bookId, quantity);
+            switch (outcome) {
+                case BOOK_NOT_FOUND -> {
+                    return SaleResult.rejected(SaleResult.Status.BOOK_NOT_FOUND, customerId, bookId, quantity);
+                }
+                case INSUFFICIENT_STOCK -> {
+                    return SaleResult.rejected(SaleResult.Status.INSUFFICIENT_STOCK, customerId, bookId, quantity);
+                }
+                case RESERVED -> {
+                }
+            }
+
+            double totalPrice = book.price() * quantity;
+            try {
+                current.append(clientSaleId, customerId, bookId, dateOfSale.toLocalDate(), quantity, totalPrice);
+            } catch (IOException e) {
+                StockLedger.release(bookId, quantity);
+                throw e;
+            }
+            return SaleResult.completed(0, customerId, bookId, book.genre(), quantity, totalPrice);
+        } catch (SQLException e) {
+            return SaleResult.failed(customerId, bookId, quantity, e.getSQLState() + ": " + e.getMessage());
+        } catch (IOException e) {
+            return SaleResult.failed(customerId, bookId, quantity, "Sale journal: " + e.getMessage());
+        }
+    }
+
+    private static boolean customerExists(int customerId) throws SQLException {
+        if (KNOWN_CUSTOMERS.contains(customerId)) {
+            return true;
+        }
+        try (Connection connection = DatabaseConnection.connection();
+             PreparedStatement preparedStatement = connection.prepareStatement(CUSTOMER_EXISTS_QUERY)) {
+            preparedStatement.setInt(1, customerId);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (!resultSet.next()) {
+                    return false;
+                }
+            }
+        }
+        KNOWN_CUSTOMERS.add(customerId);
+        return true;
+    }
+
+    private static void applyPending() {
+        SaleJournal current = journal;
+        if (current == null) {
+            return;
+        }
+        try {
+            apply(current);
+            if (applyFailing) {
+                applyFailing = false;
+                System.out.println("Sale journal is being applied again");
+            }
+        } catch (SQLException e) {
+            if (!applyFailing) {
+                applyFailing = true;
+                System.out.println("Sale journal cannot be applied, retrying: " + e.getSQLState() + ": " + e.getMessage());
+            }
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Writes every durable journal entry to the database, one batch per transaction.
+     */
+    private static void apply(SaleJournal current) throws SQLException, IOException {
+        List<SaleJournal.Entry> batch;
+        while (!(batch = current.peek(batchSize)).isEmpty()) {
+            try (Connection connection = DatabaseConnection.connection()) {
+                apply(connection, batch);
+            }
+            current.advance(batch.size());
+        }
+    }
+
+    private static void apply(Connection connection, List<SaleJournal.Entry> batch) throws SQLException {
+        int size = batch.size();
+        String[] clientSaleIds = new String[size];
+        Integer[] bookIds = new Integer[size];
+        Integer[] customerIds = new Integer[size];
+        String[] dates = new String[size];
+        Integer[] quantities = new Integer[size];
+        Double[] totalPrices = new Double[size];
+        Map<UUID, SaleJournal.Entry> entries = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            SaleJournal.Entry entry = batch.get(i);
+            clientSaleIds[i] = entry.clientSaleId().toString();
+            bookIds[i] = entry.bookId();
+            customerIds[i] = entry.customerId();
+            dates[i] = entry.dateOfSale().toString();
+            quantities[i] = entry.quantity();
+            totalPrices[i] = entry.totalPrice();
+            entries.put(entry.clientSaleId(), entry);
+        }
+
+        List<SaleResult> applied = new ArrayList<>();
+        List<SaleJournal.Entry> rejected = new ArrayList<>();
+        connection.setAutoCommit(false);
+        try {
+            try (PreparedStatement preparedStatement = connection.prepareStatement(APPLY_QUERY)) {
+                preparedStatement.setArray(1, connection.createArrayOf("text", clientSaleIds));
+                preparedStatement.setArray(2, connection.createArrayOf("integer", bookIds));
+                preparedStatement.setArray(3, connection.createArrayOf("integer", customerIds));
+                preparedStatement.setArray(4, connection.createArrayOf("text", dates));
+                preparedStatement.setArray(5, connection.createArrayOf("integer", quantities));
+                preparedStatement.setArray(6, connection.createArrayOf("float8", totalPrices));
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        SaleJournal.Entry entry = entries.get(resultSet.getObject(1, UUID.class));
+                        int saleId = resultSet.getInt(2);
+                        if (!resultSet.wasNull()) {
+                            applied.add(SaleResult.completed(saleId, entry.customerId(), entry.bookId(),
+                                    resultSet.getString(3), entry.quantity(), entry.totalPrice()));
+                        } else if (!resultSet.getBoolean(4)) {
+                            rejected.add(entry);
+                        }
+                    }
+                }
+            }
+            try (PreparedStatement preparedStatement = connection.prepareStatement(UPDATE_CHECKPOINT)) {
+                preparedStatement.setLong(1, batch.get(size - 1).sequence());
+                preparedStatement.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+
+        applied.forEach(SaleEvents::publish);
+        for (SaleJournal.Entry entry : rejected) {
+            System.out.println("Dropped journaled sale " + entry.clientSaleId() + ": customer " +
+                    entry.customerId() + " or book " + entry.bookId() + " does not exist");
+            try {
+                StockLedger.release(entry.bookId(), entry.quantity());
+            } catch (SQLException | IOException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.picsart;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent histogram of latencies in nanoseconds with a bounded relative error, in the style of
+ * HdrHistogram.
+ * <p>
+ * Values are counted in log-linear buckets: each power of two is split into {@value #SUB_BUCKETS}
+ * equal buckets, so a reported percentile is at most 1/{@value #SUB_BUCKETS} above the recorded value.
+ * Values from 0 to about 36 minutes fit into a fixed array of counters; larger ones are counted in the
+ * last bucket. Recording is one atomic increment plus two uncontended adders and never allocates.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MAGNITUDE = 40;
+    private static final int BUCKETS = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Percentiles of a histogram at one point in time, in nanoseconds.
+     */
+    public record Snapshot(long count, long meanNanos, long p50Nanos, long p90Nanos, long p99Nanos,
+                           long p999Nanos, long maxNanos) {
+    }
+
+    /**
+     * Counts one value.
+     *
+     * @param nanos The latency; negative values count as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.getAndIncrement(index(value));
+        count.increment();
+        totalNanos.add(value);
+        if (value > maxNanos.get()) {
+            maxNanos.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * Returns the current percentiles. Values recorded while the snapshot is taken may be missing from
+     * some of its fields.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        long max = maxNanos.get();
+        long mean = total == 0 ? 0 : totalNanos.sum() / Math.max(1, count.sum());
+        return new Snapshot(total, mean,
+                percentile(copy, total, 0.50, max), percentile(copy, total, 0.90, max),
+                percentile(copy, total, 0.99, max), percentile(copy, total, 0.999, max), max);
+    }
+
+    /**
+     * Returns the bucket of a value: values below {@code 2 * SUB_BUCKETS} map to themselves, larger
+     * ones keep their {@code SUB_BUCKET_BITS + 1} highest bits.
+     */
+    static int index(long value) {
+        int magnitude = 63 - Long.numberOfLeadingZeros(value | (2 * SUB_BUCKETS - 1));
+        if (magnitude > MAX_MAGNITUDE) {
+            return BUCKETS - 1;
+        }
+        int shift = magnitude - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+     * Returns the highest value that maps to a bucket.
+     */
+    static long highestValue(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    private static long percentile(long[] counts, long total, double quantile, long max) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * quantile));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValue(i), max);
+            }
+        }
+        return max;
+    }
+}
@@ -1,39 +1,166 @@
 package com.picsart;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.Scanner;
 
 
 public class Main {
     public static void main(String[] args) {
+        if (args.length == 2 && (args[0].equals("import-books") || args[0].equals("import-customers"))) {
+            BulkImport.Target target = args[0].equals("import-books") ? BulkImport.Target.BOOKS : BulkImport.Target.CUSTOMERS;
+            new CLI().runImport(target, Path.of(args[1]));
+            DatabaseConnection.shutdown();
+            return;
+        }
+
+        if (args.length == 1 && args[0].equals("check-plans")) {
+            boolean passed = false;
+            try {
+                passed = QueryPlanCheck.run(System.out);
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+            DatabaseConnection.shutdown();
+            System.exit(passed ? 0 : 1);
+        }
+
+        boolean serverMode = args.length >= 1 && args[0].equals("server");
+        int port = -1;
+        if (serverMode) {
+            port = args.length == 2 ? parsePort(args[1]) : args.length == 1 ? -1 : -2;
+            if (port == -2) {
+                System.out.println("Usage: server [port], with a port from 0 to 65535");
+                return;
+            }
+        }
+
+        if (!startServices()) {
+            return;
+        }
+
+        if (serverMode) {
+            runServer(port);
+            return;
+        }
+
         Scanner scanner = new Scanner(System.in);
         CLI cli = new CLI();
-        Connection connection = DatabaseConnection.connection();
 
-        if (connection != null) {
-            System.out.println("Connected to the database!");
+        while (true) {
+            cli.displayMenu();
+            String choice = cli.getChoice(scanner);
+            switch (choice) {
+                case "1" -> cli.inputForBooksManagement(scanner);
+                case "2" -> cli.inputForCustomersManagement(scanner);
+                case "3" -> cli.inputForSalesProcessing(scanner);
+                case "4" -> cli.generateReports(scanner);
+                case "5" -> cli.printMetrics();
+                case "6" -> System.out.println("Exiting the Bookstore Management System");
+                default -> System.out.println("Invalid choice. Please enter a valid option.");
+            }
+
+            if (choice.equals("6")) {
+                break;
+            }
+        }
 
-            while (true) {
-                cli.displayMenu();
-                String choice = cli.getChoice(scanner);
-                switch (choice) {
-                    case "1" -> cli.inputForBooksManagement(scanner, connection);
-                    case "2" -> cli.inputForCustomersManagement(scanner, connection);
-                    case "3" -> cli.inputForSalesProcessing(scanner, connection);
-                    case "4" -> cli.generateReports(scanner, connection);
-                    case "5" -> System.out.println("Exiting the Bookstore Management System");
-                    default -> System.out.println("Invalid choice. Please enter a valid option.");
-                }
-
-                if (choice.equals("5")) {
-                    break;
-                }
-            }
-
-            DatabaseConnection.closeConnection(connection);
-            System.out.println("Connection closed");
-        } else {
+        stopServices();
+    }
+
+    /**
+     * Parses a TCP port, or returns -2 if the value is not one.
+     */
+    private static int parsePort(String value) {
+        try {
+            int port = Integer.parseInt(value);
+            return port >= 0 && port <= 65535 ? port : -2;
+        } catch (NumberFormatException e) {
+            return -2;
+        }
+    }
+
+    /**
+     * Serves terminals over TCP until the process is stopped.
+     *
+     * @param port The port to listen on, or -1 to use {@code server.port}.
+     */
+    private static void runServer(int port) {
+        Configuration configuration = Configuration.load();
+        if (port >= 0) {
+            System.setProperty("server.port", Integer.toString(port));
+        }
+        BookstoreServer server;
+        try {
+            server = BookstoreServer.start(configuration);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            stopServices();
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            stopServices();
+        }));
+        System.out.println("Bookstore server listening on port " + server.port());
+        try {
+            server.awaitTermination();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean startServices() {
+        try (Connection ignored = DatabaseConnection.connection()) {
+            System.out.println("Connected to the database!");
+            Configuration configuration = Configuration.load();
+            if (configuration.getBoolean("db.migrate.enabled", true)) {
+                SchemaMigrations.migrate();
+            }
+            SalesPartitions.start(configuration);
+            SalesRollups.start(configuration);
+            CatalogInvalidationListener.start();
+            GenreRevenue.start(configuration.getLong("revenue.reconcileIntervalSeconds", 300));
+            BookTypeahead.start(configuration);
+            Bestsellers.start(configuration);
+            SalesAnalytics.start(configuration);
+            if (configuration.getBoolean("stock.ledger.enabled", false)) {
+                StockLedger.start(configuration);
+            }
+            if (configuration.getBoolean("sale.journal.enabled", false)) {
+                JournaledSales.start(configuration);
+            }
+            if (configuration.getBoolean("sales.groupCommit.enabled", false)) {
+                SaleQueue.start(configuration);
+            }
+            return true;
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Failed to start the Bookstore Management System");
+            DatabaseConnection.shutdown();
+            return false;
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
             System.out.println("Failed to connect to the database");
+            DatabaseConnection.shutdown();
+            return false;
         }
     }
+
+    private static void stopServices() {
+        SaleQueue.stop();
+        JournaledSales.stop();
+        StockLedger.stop();
+        SalesPartitions.stop();
+        SalesRollups.stop();
+        BookTypeahead.stop();
+        Bestsellers.stop();
+        SalesAnalytics.stop();
+        GenreRevenue.stop();
+        CatalogInvalidationListener.stop();
+        DatabaseConnection.shutdown();
+        System.out.println("Connection closed");
+    }
 }
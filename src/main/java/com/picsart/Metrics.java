@@ -0,0 +1,126 @@
+package com.picsart;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Per-operation counts, errors, rows and latency histograms of the data-access entry points.
+ * <p>
+ * A management method opens a {@link Scope} for its operation; while it is open on the thread, the
+ * connection pool and the statement proxies charge the time spent waiting for connections, executing
+ * statements and fetching rows to it (see {@link JdbcMetrics}). Only the outermost scope of a thread
+ * is recorded, so an operation built from other instrumented operations is counted once.
+ * <p>
+ * Every operation is registered as an MBean named {@code com.picsart.bookstore:type=Operation,name=<name>}.
+ * Recording costs a few {@code System.nanoTime()} calls and atomic increments per call; it can be
+ * switched off with {@code metrics.enabled=false}.
+ */
+public class Metrics {
+
+    private static final boolean ENABLED = Configuration.load().getBoolean("metrics.enabled", true);
+    private static final String JMX_DOMAIN = "com.picsart.bookstore";
+    private static final Map<String, OperationMetrics> OPERATIONS = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+    private static final Scope NONE = new Scope(null);
+
+    /**
+     * One call of an instrumented operation. Not thread-safe: it belongs to the thread that opened it.
+     */
+    public static final class Scope implements AutoCloseable {
+
+        private final OperationMetrics operation;
+        private final long startNanos;
+        private long poolWaitNanos;
+        private long executeNanos;
+        private long fetchNanos;
+        private long rows;
+        private boolean failed;
+
+        private Scope(OperationMetrics operation) {
+            this.operation = operation;
+            this.startNanos = operation == null ? 0 : System.nanoTime();
+        }
+
+        void poolWait(long nanos) {
+            poolWaitNanos += nanos;
+        }
+
+        void executed(long nanos) {
+            executeNanos += nanos;
+        }
+
+        void fetched(long nanos, boolean row) {
+            fetchNanos += nanos;
+            if (row) {
+                rows++;
+            }
+        }
+
+        void failed() {
+            failed = true;
+        }
+
+        /**
+         * Records the call.
+         */
+        @Override
+        public void close() {
+            if (operation == null) {
+                return;
+            }
+            CURRENT.remove();
+            operation.record(System.nanoTime() - startNanos, poolWaitNanos, executeNanos, fetchNanos, rows, failed);
+        }
+    }
+
+    /**
+     * Starts recording a call of an operation on the current thread.
+     *
+     * @param operation The operation name, e.g. {@code SalesProcessing.processNewSale}.
+     * @return The scope to close when the call ends; a no-op scope inside another scope or when disabled.
+     */
+    public static Scope begin(String operation) {
+        if (!ENABLED || CURRENT.get() != null) {
+            return NONE;
+        }
+        Scope scope = new Scope(OPERATIONS.computeIfAbsent(operation, Metrics::register));
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * Returns the metrics of every operation called so far, sorted by name.
+     */
+    public static List<OperationMetrics.Snapshot> snapshot() {
+        List<OperationMetrics.Snapshot> snapshots = new ArrayList<>();
+        for (OperationMetrics operation : OPERATIONS.values()) {
+            snapshots.add(operation.snapshot());
+        }
+        snapshots.sort(Comparator.comparing(OperationMetrics.Snapshot::name));
+        return snapshots;
+    }
+
+    /**
+     * Returns the scope open on the current thread, or null.
+     */
+    static Scope current() {
+        return CURRENT.get();
+    }
+
+    private static OperationMetrics register(String name) {
+        OperationMetrics operation = new OperationMetrics(name);
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(operation,
+                    new ObjectName(JMX_DOMAIN + ":type=Operation,name=" + name));
+        } catch (JMException e) {
+            System.out.println(e.getMessage());
+        }
+        return operation;
+    }
+}
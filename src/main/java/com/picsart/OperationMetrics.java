@@ -0,0 +1,132 @@
+package com.picsart;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of one instrumented operation, e.g. {@code sales.processNewSale}.
+ * <p>
+ * Each completed call records its total latency and, separately, the time it spent waiting for pooled
+ * connections, executing statements and fetching result rows. A call that hit a database error counts
+ * as an error.
+ */
+public class OperationMetrics implements OperationMetricsMBean {
+
+    private final String name;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram poolWait = new LatencyHistogram();
+    private final LatencyHistogram execute = new LatencyHistogram();
+    private final LatencyHistogram fetch = new LatencyHistogram();
+
+    /**
+     * The metrics of an operation at one point in time.
+     *
+     * @param name     The operation.
+     * @param count    Completed calls.
+     * @param errors   Calls that hit a database error.
+     * @param rows     Result rows read.
+     * @param latency  Total latency per call.
+     * @param poolWait Time per call spent waiting for connections.
+     * @param execute  Time per call spent executing statements.
+     * @param fetch    Time per call spent fetching rows.
+     */
+    public record Snapshot(String name, long count, long errors, long rows, LatencyHistogram.Snapshot latency,
+                           LatencyHistogram.Snapshot poolWait, LatencyHistogram.Snapshot execute,
+                           LatencyHistogram.Snapshot fetch) {
+    }
+
+    OperationMetrics(String name) {
+        this.name = name;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    void record(long latencyNanos, long poolWaitNanos, long executeNanos, long fetchNanos, long rowCount,
+                boolean failed) {
+        count.increment();
+        if (failed) {
+            errors.increment();
+        }
+        if (rowCount > 0) {
+            rows.add(rowCount);
+        }
+        latency.record(latencyNanos);
+        poolWait.record(poolWaitNanos);
+        execute.record(executeNanos);
+        fetch.record(fetchNanos);
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(name, count.sum(), errors.sum(), rows.sum(), latency.snapshot(),
+                poolWait.snapshot(), execute.snapshot(), fetch.snapshot());
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getRows() {
+        return rows.sum();
+    }
+
+    @Override
+    public long getLatencyP50Micros() {
+        return micros(latency.snapshot().p50Nanos());
+    }
+
+    @Override
+    public long getLatencyP99Micros() {
+        return micros(latency.snapshot().p99Nanos());
+    }
+
+    @Override
+    public long getLatencyMaxMicros() {
+        return micros(latency.snapshot().maxNanos());
+    }
+
+    @Override
+    public long getPoolWaitP50Micros() {
+        return micros(poolWait.snapshot().p50Nanos());
+    }
+
+    @Override
+    public long getPoolWaitP99Micros() {
+        return micros(poolWait.snapshot().p99Nanos());
+    }
+
+    @Override
+    public long getExecuteP50Micros() {
+        return micros(execute.snapshot().p50Nanos());
+    }
+
+    @Override
+    public long getExecuteP99Micros() {
+        return micros(execute.snapshot().p99Nanos());
+    }
+
+    @Override
+    public long getFetchP50Micros() {
+        return micros(fetch.snapshot().p50Nanos());
+    }
+
+    @Override
+    public long getFetchP99Micros() {
+        return micros(fetch.snapshot().p99Nanos());
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
@@ -0,0 +1,31 @@
+package com.picsart;
+
+/**
+ * JMX view of one instrumented operation; latencies are in microseconds.
+ */
+public interface OperationMetricsMBean {
+
+    long getCount();
+
+    long getErrors();
+
+    long getRows();
+
+    long getLatencyP50Micros();
+
+    long getLatencyP99Micros();
+
+    long getLatencyMaxMicros();
+
+    long getPoolWaitP50Micros();
+
+    long getPoolWaitP99Micros();
+
+    long getExecuteP50Micros();
+
+    long getExecuteP99Micros();
+
+    long getFetchP50Micros();
+
+    long getFetchP99Micros();
+}
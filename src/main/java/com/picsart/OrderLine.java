@@ -0,0 +1,10 @@
+package com.picsart;
+
+/**
+ * One line of a customer order.
+ *
+ * @param bookId   The ID of the ordered book.
+ * @param quantity The ordered quantity.
+ */
+public record OrderLine(int bookId, int quantity) {
+}
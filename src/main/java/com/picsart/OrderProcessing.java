@@ -0,0 +1,244 @@
+package com.picsart;
+
+import java.io.IOException;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Checks out multi-book orders in a single transaction.
+ * <p>
+ * All affected {@code Books} rows are locked with one {@code SELECT ... FOR UPDATE} in book ID order,
+ * so two orders touching the same books always lock them in the same sequence and cannot deadlock.
+ * The stock decrements and the {@code Sales} rows are then sent as JDBC batches, which the Postgres
+ * driver rewrites into multi-row statements when {@code reWriteBatchedInserts} is enabled.
+ */
+public class OrderProcessing {
+
+    private static final String LOCK_QUERY =
+            "SELECT BookID, Price, QuantityInStock, Genre FROM Books WHERE BookID = ANY (?) ORDER BY BookID FOR UPDATE";
+
+    private static final String UPDATE_STOCK_QUERY =
+            "UPDATE Books SET QuantityInStock = QuantityInStock - ? WHERE BookID = ?";
+
+    private static final String INSERT_SALE_QUERY =
+            "INSERT INTO Sales (BookID, CustomerID, DateOfSale, QuantitySold, TotalPrice) VALUES (?, ?, ?, ?, ?)";
+
+    /**
+     * Places an order for several books with one commit.
+     *
+     * @param customerId The ID of the customer making the purchase.
+     * @param dateOfSale The date of the sale.
+     * @param lines      The ordered books; lines for the same book are merged.
+     * @return The outcome of the order.
+     */
+    public static OrderResult placeOrder(int customerId, Date dateOfSale, List<OrderLine> lines) {
+        try (Metrics.Scope ignored = Metrics.begin("OrderProcessing.placeOrder")) {
+            return place(customerId, dateOfSale, lines);
+        }
+    }
+
+    private static OrderResult place(int customerId, Date dateOfSale, List<OrderLine> lines) {
+        List<OrderLine> merged = merge(lines);
+        for (OrderLine line : merged) {
+            if (line.quantity() <= 0) {
+                return new OrderResult(SaleResult.Status.FAILED, customerId, merged, List.of(), 0, line.bookId(),
+                        "Quantity must be positive");
+            }
+        }
+        if (merged.isEmpty()) {
+            return new OrderResult(SaleResult.Status.FAILED, customerId, merged, List.of(), 0, 0, "Order has no lines");
+        }
+
+        if (StockLedger.isRunning()) {
+            return placeOrderFromLedger(customerId, dateOfSale, merged);
+        }
+
+        try (Connection connection = DatabaseConnection.connection()) {
+            connection.setAutoCommit(false);
+            try {
+                OrderResult result = placeOrder(connection, customerId, dateOfSale, merged);
+                if (result.isCompleted()) {
+                    connection.commit();
+                    DatabaseConnection.recordWrite();
+                    result.sales().forEach(SaleEvents::publish);
+                } else {
+                    connection.rollback();
+                }
+                return result;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            return new OrderResult(SaleResult.Status.FAILED, customerId, merged, List.of(), 0, 0,
+                    e.getSQLState() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Locks, checks and sells the given lines inside the caller's transaction.
+     *
+     * @param connection The database connection, with auto-commit disabled.
+     * @param customerId The ID of the customer making the purchase.
+     * @param dateOfSale The date of the sale.
+     * @param lines      The order lines, sorted by book ID without duplicates.
+     * @return The outcome; on rejection nothing has been written.
+     * @throws SQLException If a database access error occurs, or a stock ledger runs on another instance.
+     */
+    private static OrderResult placeOrder(Connection connection, int customerId, Date dateOfSale, List<OrderLine> lines)
+            throws SQLException {
+        StockLedger.lockOut(connection);
+        Integer[] bookIds = new Integer[lines.size()];
+        for (int i = 0; i < bookIds.length; i++) {
+            bookIds[i] = lines.get(i).bookId();
+        }
+
+        double[] prices = new double[lines.size()];
+        String[] genres = new String[lines.size()];
+        Array idArray = connection.createArrayOf("integer", bookIds);
+        try (PreparedStatement preparedStatement = connection.prepareStatement(LOCK_QUERY)) {
+            preparedStatement.setArray(1, idArray);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                int index = 0;
+                while (resultSet.next()) {
+                    int bookId = resultSet.getInt(1);
+                    // rows and lines are both sorted by book ID, so a gap means a missing book
+                    if (bookId != bookIds[index]) {
+                        return rejected(SaleResult.Status.BOOK_NOT_FOUND, customerId, lines, bookIds[index]);
+                    }
+                    if (resultSet.getInt(3) < lines.get(index).quantity()) {
+                        return rejected(SaleResult.Status.INSUFFICIENT_STOCK, customerId, lines, bookId);
+                    }
+                    genres[index] = resultSet.getString(4);
+                    prices[index++] = resultSet.getDouble(2);
+                }
+                if (index < bookIds.length) {
+                    return rejected(SaleResult.Status.BOOK_NOT_FOUND, customerId, lines, bookIds[index]);
+                }
+            }
+        } finally {
+            idArray.free();
+        }
+
+        double orderTotal = 0;
+        List<SaleResult> sales = new ArrayList<>(lines.size());
+        try (PreparedStatement updateStatement = connection.prepareStatement(UPDATE_STOCK_QUERY);
+             PreparedStatement insertStatement = connection.prepareStatement(INSERT_SALE_QUERY)) {
+            for (int i = 0; i < lines.size(); i++) {
+                OrderLine line = lines.get(i);
+                double totalPrice = prices[i] * line.quantity();
+                orderTotal += totalPrice;
+                sales.add(SaleResult.completed(0, customerId, line.bookId(), genres[i], line.quantity(), totalPrice));
+
+                updateStatement.setInt(1, line.quantity());
+                updateStatement.setInt(2, line.bookId());
+                updateStatement.addBatch();
+
+                insertStatement.setInt(1, line.bookId());
+                insertStatement.setInt(2, customerId);
+                insertStatement.setDate(3, dateOfSale);
+                insertStatement.setInt(4, line.quantity());
+                insertStatement.setDouble(5, totalPrice);
+                insertStatement.addBatch();
+            }
+            updateStatement.executeBatch();
+            insertStatement.executeBatch();
+        }
+
+        return new OrderResult(SaleResult.Status.COMPLETED, customerId, lines, sales, orderTotal, 0, null);
+    }
+
+    /**
+     * Reserves every line in the {@link StockLedger}, then inserts the sales in one transaction. If a
+     * line is rejected or the insert fails, the lines reserved so far are given back.
+     */
+    private static OrderResult placeOrderFromLedger(int customerId, Date dateOfSale, List<OrderLine> lines) {
+        List<SaleResult> sales = new ArrayList<>(lines.size());
+        List<OrderLine> reserved = new ArrayList<>(lines.size());
+        try {
+            double orderTotal = 0;
+            for (OrderLine line : lines) {
+                Book book = BookCatalog.get(line.bookId());
+                StockLedger.Outcome outcome = book == null
+                        ? StockLedger.Outcome.BOOK_NOT_FOUND
+                        : StockLedger.reserve(line.bookId(), line.quantity());
+                if (outcome != StockLedger.Outcome.RESERVED) {
+                    release(reserved);
+                    SaleResult.Status status = outcome == StockLedger.Outcome.BOOK_NOT_FOUND
+                            ? SaleResult.Status.BOOK_NOT_FOUND
+                            : SaleResult.Status.INSUFFICIENT_STOCK;
+                    return rejected(status, customerId, lines, line.bookId());
+                }
+                reserved.add(line);
+                double totalPrice = book.price() * line.quantity();
+                orderTotal += totalPrice;
+                sales.add(SaleResult.completed(0, customerId, line.bookId(), book.genre(), line.quantity(), totalPrice));
+            }
+
+            try (Connection connection = DatabaseConnection.connection()) {
+                connection.setAutoCommit(false);
+                try (PreparedStatement insertStatement = connection.prepareStatement(INSERT_SALE_QUERY)) {
+                    for (SaleResult sale : sales) {
+                        insertStatement.setInt(1, sale.bookId());
+                        insertStatement.setInt(2, customerId);
+                        insertStatement.setDate(3, dateOfSale);
+                        insertStatement.setInt(4, sale.quantity());
+                        insertStatement.setDouble(5, sale.totalPrice());
+                        insertStatement.addBatch();
+                    }
+                    insertStatement.executeBatch();
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                }
+            }
+            DatabaseConnection.recordWrite();
+            sales.forEach(SaleEvents::publish);
+            return new OrderResult(SaleResult.Status.COMPLETED, customerId, lines, sales, orderTotal, 0, null);
+        } catch (SQLException | IOException e) {
+            String message = e instanceof SQLException sqlException
+                    ? sqlException.getSQLState() + ": " + e.getMessage()
+                    : "Stock journal: " + e.getMessage();
+            try {
+                release(reserved);
+            } catch (SQLException | IOException releaseError) {
+                message += "; reserved stock could not be released: " + releaseError.getMessage();
+            }
+            return new OrderResult(SaleResult.Status.FAILED, customerId, lines, List.of(), 0, 0, message);
+        }
+    }
+
+    private static void release(List<OrderLine> reserved) throws SQLException, IOException {
+        while (!reserved.isEmpty()) {
+            OrderLine line = reserved.get(reserved.size() - 1);
+            StockLedger.release(line.bookId(), line.quantity());
+            reserved.remove(reserved.size() - 1);
+        }
+    }
+
+    private static OrderResult rejected(SaleResult.Status status, int customerId, List<OrderLine> lines, int bookId) {
+        return new OrderResult(status, customerId, lines, List.of(), 0, bookId, null);
+    }
+
+    /**
+     * Merges lines for the same book and sorts them by book ID, the order in which rows are locked.
+     */
+    private static List<OrderLine> merge(List<OrderLine> lines) {
+        Map<Integer, Integer> quantities = new TreeMap<>();
+        for (OrderLine line : lines) {
+            quantities.merge(line.bookId(), line.quantity(), Integer::sum);
+        }
+        List<OrderLine> merged = new ArrayList<>(quantities.size());
+        quantities.forEach((bookId, quantity) -> merged.add(new OrderLine(bookId, quantity)));
+        return merged;
+    }
+}
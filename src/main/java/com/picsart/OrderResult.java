@@ -0,0 +1,28 @@
+package com.picsart;
+
+import java.util.List;
+
+/**
+ * Outcome of an order. An order is all-or-nothing: either every line was sold or none was.
+ *
+ * @param status         What happened to the order.
+ * @param customerId     The ID of the purchasing customer.
+ * @param lines          The order lines, merged per book and sorted by book ID.
+ * @param sales          One completed sale per line if the order succeeded, otherwise empty.
+ * @param totalPrice     The charged price of the whole order, or 0 if nothing was sold.
+ * @param rejectedBookId The book that caused a rejection, or 0.
+ * @param message        Error details for {@link SaleResult.Status#FAILED}, otherwise null.
+ */
+public record OrderResult(
+        SaleResult.Status status,
+        int customerId,
+        List<OrderLine> lines,
+        List<SaleResult> sales,
+        double totalPrice,
+        int rejectedBookId,
+        String message) {
+
+    public boolean isCompleted() {
+        return status == SaleResult.Status.COMPLETED;
+    }
+}
@@ -1,88 +1,67 @@
 package com.picsart;
 
-import java.util.ArrayList;
+/**
+ * Validates Armenian mobile numbers written as {@code +374} followed by a two-digit operator code and
+ * six digits, e.g. {@code +37494111111}.
+ */
+public class PhoneNumberValidation implements Validator {
 
+    private static final int LENGTH = 12;
+    private static final String COUNTRY_CODE = "374";
 
-public class PhoneNumberValidation {
-    public boolean phoneNumberValid(String phoneNumber) {
-        ArrayList<String> phoneNumberCode = new ArrayList<>();
-        try {
-            checkPhoneNumberSize(phoneNumber);
-            plus(phoneNumber);
-            codePhoneNumber(phoneNumber);
-            checkSymbols(phoneNumber);
-            checkZero(phoneNumber);
-            addPhoneNumberCode(phoneNumberCode);
-            codePhoneNumbers(phoneNumberCode, phoneNumber);
-            return true;
-        } catch (Exception ex) {
-            System.out.println("Invalid phone number, please the valid phone number.");
-            return false;
-        }
-    }
+    /**
+     * Known operator codes, indexed by their two-digit value.
+     */
+    private static final boolean[] OPERATOR_CODES = new boolean[100];
 
-    public void plus(String phoneNumber) throws Exception{
-            if (phoneNumber.charAt(0) != '+') {
-                throw new Exception();
-            }
+    static {
+        for (int code : new int[]{91, 96, 99, 43, 77, 93, 94, 55, 95, 41, 33}) {
+            OPERATOR_CODES[code] = true;
+        }
     }
 
-
-    public void codePhoneNumber(String phoneNumber) throws Exception {
-            if (!(phoneNumber.startsWith("374", 1))) {
-                throw new Exception();
-            }
+    public boolean phoneNumberValid(String phoneNumber) {
+        if (isValid(phoneNumber)) {
+            return true;
+        }
+        System.out.println("Invalid phone number, please the valid phone number.");
+        return false;
     }
 
-    public void checkPhoneNumberSize(String phoneNumber) throws Exception {
-            if (phoneNumber.length() != 12) {
-                throw new Exception();
-            }
+    public boolean isValid(String phoneNumber) {
+        return validate(phoneNumber) == ValidationResult.VALID;
     }
 
-    public void checkSymbols(String phoneNumber) throws Exception {
-        boolean test = false;
-        for (int i = 1; i < phoneNumber.length(); i++) {
-            if (phoneNumber.charAt(i) < 47 || phoneNumber.charAt(i) > 58) {
-                test = true;
-                break;
-            }
+    @Override
+    public ValidationResult validate(String phoneNumber) {
+        if (phoneNumber == null || phoneNumber.isEmpty()) {
+            return ValidationResult.EMPTY;
         }
-            if (test) {
-                throw new Exception();
-            }
-    }
-
-    public void checkZero(String phoneNumber) throws Exception {
-            if (phoneNumber.charAt(4) == '0') {
-                throw new Exception();
+        if (phoneNumber.length() != LENGTH) {
+            return ValidationResult.PHONE_WRONG_LENGTH;
+        }
+        if (phoneNumber.charAt(0) != '+') {
+            return ValidationResult.PHONE_MISSING_PLUS;
+        }
+        for (int i = 1; i < LENGTH; i++) {
+            if (!isDigit(phoneNumber.charAt(i))) {
+                return ValidationResult.PHONE_NOT_A_DIGIT;
             }
+        }
+        if (!phoneNumber.startsWith(COUNTRY_CODE, 1)) {
+            return ValidationResult.PHONE_WRONG_COUNTRY_CODE;
+        }
+        if (phoneNumber.charAt(4) == '0') {
+            return ValidationResult.PHONE_LEADING_ZERO;
+        }
+        int operatorCode = (phoneNumber.charAt(4) - '0') * 10 + (phoneNumber.charAt(5) - '0');
+        if (!OPERATOR_CODES[operatorCode]) {
+            return ValidationResult.PHONE_UNKNOWN_OPERATOR;
+        }
+        return ValidationResult.VALID;
     }
 
-    public void addPhoneNumberCode(ArrayList<String> phoneNumberCode) {
-        phoneNumberCode.add("91");
-        phoneNumberCode.add("96");
-        phoneNumberCode.add("99");
-        phoneNumberCode.add("43");
-        phoneNumberCode.add("77");
-        phoneNumberCode.add("93");
-        phoneNumberCode.add("94");
-        phoneNumberCode.add("55");
-        phoneNumberCode.add("95");
-        phoneNumberCode.add("41");
-        phoneNumberCode.add("33");
-    }
-
-    public void codePhoneNumbers(ArrayList<String> phoneNumberCode, String phoneNumber) throws Exception {
-        boolean test = false;
-        for (String s : phoneNumberCode) {
-            if (phoneNumber.substring(4, 6).equals(s)) {
-                test = true;
-                break;
-            }
-        }
-            if (!test) {
-                throw new Exception();
-            }
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
     }
 }
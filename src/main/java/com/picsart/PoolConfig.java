@@ -0,0 +1,79 @@
+package com.picsart;
+
+import java.util.Properties;
+
+/**
+ * Settings of the {@link ConnectionPool}.
+ *
+ * @param url                      The JDBC URL of the database.
+ * @param user                     The database username.
+ * @param password                 The database password.
+ * @param minIdle                  Number of idle connections the pool keeps open.
+ * @param maxSize                  Maximum number of physical connections.
+ * @param borrowTimeoutMillis      How long a caller waits for a free connection.
+ * @param validationTimeoutSeconds Timeout of the liveness check done on borrow.
+ * @param validationIntervalMillis Connections used more recently than this are not re-validated.
+ * @param idleTimeoutMillis        Idle connections older than this are evicted.
+ * @param evictionIntervalMillis   Period of the eviction and leak detection run.
+ * @param leakThresholdMillis      Borrowed connections held longer than this are reported; 0 disables.
+ * @param statementCacheSize       Prepared statements kept open per connection; 0 disables the cache.
+ * @param driverProperties         Extra properties passed to the JDBC driver.
+ */
+public record PoolConfig(
+        String url,
+        String user,
+        String password,
+        int minIdle,
+        int maxSize,
+        long borrowTimeoutMillis,
+        int validationTimeoutSeconds,
+        long validationIntervalMillis,
+        long idleTimeoutMillis,
+        long evictionIntervalMillis,
+        long leakThresholdMillis,
+        int statementCacheSize,
+        Properties driverProperties) {
+
+    public PoolConfig {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("db.pool.maxSize must be positive");
+        }
+        if (minIdle < 0 || minIdle > maxSize) {
+            throw new IllegalArgumentException("db.pool.minIdle must be between 0 and db.pool.maxSize");
+        }
+    }
+
+    /**
+     * Reads the pool settings from the application configuration.
+     *
+     * @param configuration The application configuration.
+     * @return The pool settings.
+     */
+    public static PoolConfig from(Configuration configuration) {
+        return from(configuration, "db.");
+    }
+
+    /**
+     * Reads the pool settings stored under the given key prefix.
+     *
+     * @param configuration The application configuration.
+     * @param prefix        The key prefix, e.g. {@code db.}.
+     * @return The pool settings.
+     */
+    public static PoolConfig from(Configuration configuration, String prefix) {
+        return new PoolConfig(
+                configuration.get(prefix + "url", "jdbc:postgresql://localhost:32769/bookstore_db"),
+                configuration.get(prefix + "user", "postgres"),
+                configuration.get(prefix + "password", "postgres"),
+                configuration.getInt(prefix + "pool.minIdle", 2),
+                configuration.getInt(prefix + "pool.maxSize", 10),
+                configuration.getLong(prefix + "pool.borrowTimeoutMillis", 5000),
+                configuration.getInt(prefix + "pool.validationTimeoutSeconds", 2),
+                configuration.getLong(prefix + "pool.validationIntervalMillis", 500),
+                configuration.getLong(prefix + "pool.idleTimeoutMillis", 600_000),
+                configuration.getLong(prefix + "pool.evictionIntervalMillis", 30_000),
+                configuration.getLong(prefix + "pool.leakThresholdMillis", 60_000),
+                configuration.getInt(prefix + "pool.statementCacheSize", 64),
+                configuration.withPrefix(prefix + "driver."));
+    }
+}
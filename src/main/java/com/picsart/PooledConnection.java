@@ -0,0 +1,186 @@
+package com.picsart;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A physical connection owned by the {@link ConnectionPool}.
+ * <p>
+ * Callers never see this object directly: every borrow hands out a fresh proxy whose {@code close()}
+ * gives the connection back to the pool, so a handle closed twice cannot return it twice. Single-argument
+ * {@code prepareStatement} calls are served from the connection's {@link StatementCache}.
+ */
+class PooledConnection {
+
+    private final ConnectionPool pool;
+    private final Connection physical;
+    private final StatementCache statementCache;
+    private volatile long lastUsedMillis;
+    private volatile long borrowedAtMillis;
+    private volatile Throwable borrowSite;
+    private volatile boolean leakReported;
+
+    PooledConnection(ConnectionPool pool, Connection physical, int statementCacheSize) {
+        this.pool = pool;
+        this.physical = physical;
+        this.statementCache = statementCacheSize > 0 ? new StatementCache(physical, statementCacheSize) : null;
+        this.lastUsedMillis = System.currentTimeMillis();
+    }
+
+    Connection physical() {
+        return physical;
+    }
+
+    long lastUsedMillis() {
+        return lastUsedMillis;
+    }
+
+    long borrowedAtMillis() {
+        return borrowedAtMillis;
+    }
+
+    Throwable borrowSite() {
+        return borrowSite;
+    }
+
+    boolean leakReported() {
+        return leakReported;
+    }
+
+    void markLeakReported() {
+        leakReported = true;
+    }
+
+    /**
+     * Records a borrow and creates the handle given to the caller.
+     *
+     * @param site Stack captured at the borrow site, or null when leak detection is off.
+     * @return The connection handle.
+     */
+    Connection lease(Throwable site) {
+        borrowedAtMillis = System.currentTimeMillis();
+        borrowSite = site;
+        leakReported = false;
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new Handle());
+    }
+
+    /**
+     * Checks that the connection is still usable, skipping the round trip for recently used connections.
+     *
+     * @param timeoutSeconds           The validation timeout.
+     * @param validationIntervalMillis Connections used within this interval are trusted.
+     * @return True if the connection can be handed out.
+     */
+    boolean validate(int timeoutSeconds, long validationIntervalMillis) {
+        try {
+            if (physical.isClosed()) {
+                return false;
+            }
+            if (System.currentTimeMillis() - lastUsedMillis < validationIntervalMillis) {
+                return true;
+            }
+            return physical.isValid(timeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Restores the session defaults a borrower may have changed.
+     *
+     * @throws SQLException If the connection is unusable.
+     */
+    void reset() throws SQLException {
+        if (!physical.getAutoCommit()) {
+            physical.rollback();
+            physical.setAutoCommit(true);
+        }
+        if (physical.isReadOnly()) {
+            physical.setReadOnly(false);
+        }
+        physical.clearWarnings();
+        if (statementCache != null) {
+            statementCache.releaseAll();
+        }
+        borrowSite = null;
+        lastUsedMillis = System.currentTimeMillis();
+    }
+
+    void closePhysical() {
+        try {
+            physical.close();
+        } catch (SQLException e) {
+            System.out.println(e.getErrorCode());
+            System.out.println(e.getSQLState());
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Invocation handler of a single lease.
+     */
+    private class Handle implements InvocationHandler {
+
+        private boolean closed;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!closed) {
+                        closed = true;
+                        pool.release(PooledConnection.this);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return closed || physical.isClosed();
+                }
+                case "isWrapperFor" -> {
+                    if (((Class<?>) args[0]).isInstance(PooledConnection.this)) {
+                        return true;
+                    }
+                }
+                case "unwrap" -> {
+                    if (((Class<?>) args[0]).isInstance(PooledConnection.this)) {
+                        return PooledConnection.this;
+                    }
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled" + physical;
+                }
+                case "prepareStatement" -> {
+                    if (!closed && statementCache != null && args.length == 1) {
+                        return statementCache.prepare((String) args[0]);
+                    }
+                }
+                default -> {
+                }
+            }
+            if (closed) {
+                throw new SQLException("Connection is closed", "08003");
+            }
+            Object result;
+            try {
+                result = method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            return result instanceof Statement statement ? JdbcMetrics.statement(statement, method.getReturnType()) : result;
+        }
+    }
+}
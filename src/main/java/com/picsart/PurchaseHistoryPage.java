@@ -0,0 +1,46 @@
+package com.picsart;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * One page of a customer's purchase history, newest sale first, with the customer's lifetime totals.
+ *
+ * @param customerId    The ID of the customer.
+ * @param items         The sales of this page.
+ * @param purchases     Number of sales of the customer.
+ * @param itemCount     Number of books the customer bought.
+ * @param lifetimeSpend Total the customer spent.
+ * @param next          Where the next page starts, or null if this is the last page.
+ */
+public record PurchaseHistoryPage(int customerId, List<Item> items, long purchases, long itemCount,
+                                  double lifetimeSpend, Cursor next) {
+
+    /**
+     * A sale of the history with the title of its book.
+     *
+     * @param saleId       The ID of the sale.
+     * @param dateOfSale   The date of the sale, or null if it was recorded without one.
+     * @param bookId       The ID of the sold book, or 0 if the book was deleted.
+     * @param title        The title of the sold book, or null if the book was deleted.
+     * @param quantitySold The number of books sold.
+     * @param totalPrice   The charged price.
+     */
+    public record Item(int saleId, LocalDate dateOfSale, int bookId, String title, int quantitySold,
+                       double totalPrice) {
+    }
+
+    /**
+     * Position after the last sale of a page. Sales are ordered by date and then ID, both descending;
+     * sales without a date come after all dated ones.
+     *
+     * @param dateOfSale The date of the last sale, or null if it has none.
+     * @param saleId     The ID of the last sale.
+     */
+    public record Cursor(LocalDate dateOfSale, int saleId) {
+
+        static Cursor after(Item item) {
+            return new Cursor(item.dateOfSale(), item.saleId());
+        }
+    }
+}
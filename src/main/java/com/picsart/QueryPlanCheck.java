@@ -0,0 +1,161 @@
+package com.picsart;
+
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the hot lookup queries under {@code EXPLAIN ANALYZE} and fails if one of them reads a large
+ * table with a sequential scan, which means an index is missing or no longer usable.
+ * <p>
+ * Parameters are taken from the data itself. Checks on tables with fewer than {@link #MIN_ROWS} rows
+ * are skipped, since the planner rightly prefers a sequential scan there; run the suite against a
+ * database loaded to production size, e.g. the one the benchmarks seed. On a partitioned table the
+ * rows of all partitions count, and a sequential scan fails a check only on a partition that is itself
+ * that large.
+ */
+public class QueryPlanCheck {
+
+    /**
+     * Tables smaller than this are not checked.
+     */
+    static final long MIN_ROWS = 1_000;
+
+    private static final Pattern SEQ_SCAN = Pattern.compile("Seq Scan on (\\w+)");
+
+    /**
+     * A query whose plan must not sequentially scan {@code table}.
+     */
+    private record Check(String name, String table, String sql, Binder binder) {
+    }
+
+    @FunctionalInterface
+    private interface Binder {
+        void bind(PreparedStatement preparedStatement) throws SQLException;
+    }
+
+    /**
+     * Runs every check and prints its plan summary.
+     *
+     * @param out Where to report.
+     * @return True if no check failed.
+     * @throws SQLException If a query cannot be explained.
+     */
+    public static boolean run(PrintStream out) throws SQLException {
+        boolean passed = true;
+        try (Connection connection = DatabaseConnection.connection()) {
+            for (Check check : checks(connection)) {
+                long rows = estimatedRows(connection, check.table());
+                if (rows < MIN_ROWS) {
+                    out.println("SKIP " + check.name() + ": " + check.table() + " has only about " + rows + " rows");
+                    continue;
+                }
+                List<String> plan = explain(connection, check);
+                String scanned = sequentiallyScanned(connection, plan, check.table());
+                if (scanned == null) {
+                    out.println("PASS " + check.name());
+                } else {
+                    passed = false;
+                    out.println("FAIL " + check.name() + ": Seq Scan on " + scanned);
+                    plan.forEach(line -> out.println("    " + line));
+                }
+            }
+        }
+        return passed;
+    }
+
+    private static List<Check> checks(Connection connection) throws SQLException {
+        String genre = sample(connection, "SELECT Genre FROM Books ORDER BY BookID LIMIT 1");
+        String author = sample(connection, "SELECT Author FROM Books ORDER BY BookID LIMIT 1");
+        String customerId = sample(connection, "SELECT CustomerID FROM Sales ORDER BY SaleID LIMIT 1");
+        String saleDate = sample(connection, "SELECT DateOfSale FROM Sales ORDER BY SaleID LIMIT 1");
+        LocalDate day = saleDate == null ? LocalDate.now() : LocalDate.parse(saleDate);
+        SalesReportQuery report = SalesReportQuery.between(day, day.plusDays(1));
+        int historyCustomer = customerId == null ? 1 : Integer.parseInt(customerId);
+
+        List<Check> checks = new ArrayList<>();
+        checks.add(new Check("books by genre", "books", JdbcBookRepository.SELECT_BY_GENRE_QUERY,
+                preparedStatement -> preparedStatement.setString(1, genre)));
+        checks.add(new Check("books by author", "books", JdbcBookRepository.SELECT_BY_AUTHOR_QUERY,
+                preparedStatement -> preparedStatement.setString(1, author)));
+        checks.add(new Check("customer purchase history", "sales", JdbcSaleRepository.SELECT_BY_CUSTOMER_QUERY,
+                preparedStatement -> preparedStatement.setInt(1, historyCustomer)));
+        checks.add(new Check("customer purchase history page", "sales", JdbcSaleRepository.historyDatedQuery(null),
+                preparedStatement -> {
+                    preparedStatement.setInt(1, historyCustomer);
+                    preparedStatement.setInt(2, 21);
+                }));
+        checks.add(new Check("customer lifetime totals", "sales", JdbcSaleRepository.HISTORY_TOTALS_QUERY,
+                preparedStatement -> preparedStatement.setInt(1, historyCustomer)));
+        checks.add(new Check("sales report for one day", "sales", JdbcSaleRepository.bookSalesQuery(report),
+                preparedStatement -> JdbcSaleRepository.bindBookSales(preparedStatement, report)));
+        SalesReportQuery page = SalesReportQuery.all().page(0, 100);
+        checks.add(new Check("sales report page", "sales", JdbcSaleRepository.bookSalesQuery(page),
+                preparedStatement -> JdbcSaleRepository.bindBookSales(preparedStatement, page)));
+        return checks;
+    }
+
+    private static List<String> explain(Connection connection, Check check) throws SQLException {
+        List<String> plan = new ArrayList<>();
+        try (PreparedStatement preparedStatement = connection.prepareStatement("EXPLAIN (ANALYZE, BUFFERS) " + check.sql())) {
+            check.binder().bind(preparedStatement);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    plan.add(resultSet.getString(1));
+                }
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Returns the checked table, or the large partition of it, that the plan scans sequentially,
+     * otherwise null. Partitions are recognised by the {@code <table>_} prefix of their names.
+     */
+    private static String sequentiallyScanned(Connection connection, List<String> plan, String table)
+            throws SQLException {
+        for (String line : plan) {
+            Matcher matcher = SEQ_SCAN.matcher(line);
+            if (!matcher.find()) {
+                continue;
+            }
+            String relation = matcher.group(1).toLowerCase(Locale.ROOT);
+            if (relation.equals(table)
+                    || relation.startsWith(table + "_") && estimatedRows(connection, relation) >= MIN_ROWS) {
+                return relation;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the planner's row estimate of a table, summed over its partitions if it has any.
+     */
+    private static long estimatedRows(Connection connection, String table) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(
+                "SELECT COALESCE(SUM(GREATEST(reltuples, 0)), 0)::bigint FROM pg_class " +
+                        "WHERE oid = to_regclass(?) " +
+                        "OR oid IN (SELECT inhrelid FROM pg_inherits WHERE inhparent = to_regclass(?))")) {
+            preparedStatement.setString(1, table);
+            preparedStatement.setString(2, table);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : 0;
+            }
+        }
+    }
+
+    private static String sample(Connection connection, String query) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(query);
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            return resultSet.next() ? resultSet.getString(1) : null;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.picsart;
+
+import java.time.LocalDate;
+import java.util.Locale;
+
+/**
+ * Text layouts of the book sales report.
+ * <p>
+ * A format appends rows to a caller-supplied {@link StringBuilder}, so a writer can reuse one builder
+ * for a whole report instead of concatenating a new string per row. Every row ends with {@code '\n'}.
+ */
+public enum ReportFormat {
+
+    /**
+     * The classic console layout, {@code Sale ID: 1, Book Title: ..., Customer Name: ..., Sale Date: ...}.
+     */
+    TEXT {
+        @Override
+        public void appendRow(SaleRow row, StringBuilder out) {
+            out.append("Sale ID: ").append(row.saleId())
+                    .append(", Book Title: ").append(row.bookTitle())
+                    .append(", Customer Name: ").append(row.customerName())
+                    .append(", Sale Date: ");
+            appendDate(row.saleDate(), out);
+            out.append('\n');
+        }
+    },
+
+    /**
+     * Comma-separated values with a header line; text columns are quoted and null values are empty.
+     */
+    CSV {
+        @Override
+        public void appendHeader(StringBuilder out) {
+            out.append("SaleID,BookTitle,CustomerName,SaleDate\n");
+        }
+
+        @Override
+        public void appendRow(SaleRow row, StringBuilder out) {
+            out.append(row.saleId()).append(',');
+            appendQuoted(row.bookTitle(), out);
+            out.append(',');
+            appendQuoted(row.customerName(), out);
+            out.append(',');
+            if (row.saleDate() != null) {
+                appendDate(row.saleDate(), out);
+            }
+            out.append('\n');
+        }
+    },
+
+    /**
+     * One JSON object per line.
+     */
+    JSON_LINES {
+        @Override
+        public void appendRow(SaleRow row, StringBuilder out) {
+            out.append("{\"saleId\":").append(row.saleId()).append(",\"bookTitle\":");
+            appendJsonString(row.bookTitle(), out);
+            out.append(",\"customerName\":");
+            appendJsonString(row.customerName(), out);
+            out.append(",\"saleDate\":");
+            if (row.saleDate() == null) {
+                out.append("null");
+            } else {
+                out.append('"');
+                appendDate(row.saleDate(), out);
+                out.append('"');
+            }
+            out.append("}\n");
+        }
+    },
+
+    /**
+     * Space-padded columns with a header line; values longer than their column are cut off and line
+     * breaks in values become spaces.
+     */
+    FIXED_WIDTH {
+        private static final int SALE_ID_WIDTH = 10;
+        private static final int TITLE_WIDTH = 40;
+        private static final int CUSTOMER_WIDTH = 20;
+
+        @Override
+        public void appendHeader(StringBuilder out) {
+            appendPadded("SaleID", SALE_ID_WIDTH, out);
+            out.append(' ');
+            appendPadded("BookTitle", TITLE_WIDTH, out);
+            out.append(' ');
+            appendPadded("CustomerName", CUSTOMER_WIDTH, out);
+            out.append(" SaleDate\n");
+        }
+
+        @Override
+        public void appendRow(SaleRow row, StringBuilder out) {
+            int start = out.length();
+            out.append(row.saleId());
+            for (int i = out.length() - start; i < SALE_ID_WIDTH; i++) {
+                out.append(' ');
+            }
+            out.append(' ');
+            appendPadded(row.bookTitle(), TITLE_WIDTH, out);
+            out.append(' ');
+            appendPadded(row.customerName(), CUSTOMER_WIDTH, out);
+            out.append(' ');
+            appendDate(row.saleDate(), out);
+            out.append('\n');
+        }
+    };
+
+    /**
+     * Appends the header line, if the format has one.
+     *
+     * @param out The builder to append to.
+     */
+    public void appendHeader(StringBuilder out) {
+    }
+
+    /**
+     * Appends one row, including its line terminator.
+     *
+     * @param row The row.
+     * @param out The builder to append to.
+     */
+    public abstract void appendRow(SaleRow row, StringBuilder out);
+
+    /**
+     * Resolves a format from a user-supplied name such as {@code csv}, {@code jsonl} or {@code fixed-width}.
+     *
+     * @param name The name, case-insensitive.
+     * @return The format.
+     * @throws IllegalArgumentException If the name matches no format.
+     */
+    public static ReportFormat fromName(String name) {
+        return switch (name.trim().toLowerCase(Locale.ROOT)) {
+            case "text", "txt" -> TEXT;
+            case "csv" -> CSV;
+            case "jsonl", "json-lines", "json_lines", "ndjson" -> JSON_LINES;
+            case "fixed", "fixed-width", "fixed_width" -> FIXED_WIDTH;
+            default -> throw new IllegalArgumentException("Unknown report format " + name);
+        };
+    }
+
+    /**
+     * Appends a date as {@code yyyy-MM-dd} without formatting it to a string first, or {@code null}.
+     */
+    static void appendDate(LocalDate date, StringBuilder out) {
+        if (date == null) {
+            out.append("null");
+            return;
+        }
+        out.append(date.getYear()).append('-');
+        appendTwoDigits(date.getMonthValue(), out);
+        out.append('-');
+        appendTwoDigits(date.getDayOfMonth(), out);
+    }
+
+    private static void appendTwoDigits(int value, StringBuilder out) {
+        out.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    private static void appendQuoted(String value, StringBuilder out) {
+        if (value == null) {
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    private static void appendJsonString(String value, StringBuilder out) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append("\\u00");
+                        out.append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xf, 16));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    private static void appendPadded(String value, int width, StringBuilder out) {
+        String text = value == null ? "" : value;
+        int length = Math.min(text.length(), width);
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            out.append(c == '\n' || c == '\r' ? ' ' : c);
+        }
+        for (int i = length; i < width; i++) {
+            out.append(' ');
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.picsart;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Buffered report output in one of the {@link ReportFormat}s.
+ * <p>
+ * Rows are formatted into a single reused {@link StringBuilder}; once it holds
+ * {@code report.bufferSize} characters they are encoded to UTF-8 into a direct buffer and written to the
+ * channel in one call. Writing to a file goes straight to a {@link FileChannel}; writing to a
+ * {@link PrintStream} costs one synchronized write per buffer instead of one flushed line per row.
+ * Nothing is written before the buffer fills or the writer is closed.
+ */
+public class ReportWriter implements SaleRowSink {
+
+    /**
+     * Characters buffered before they are written.
+     */
+    static final int BUFFER_SIZE = Math.max(1024, Configuration.load().getInt("report.bufferSize", 1 << 16));
+
+    private final WritableByteChannel channel;
+    private final Flushable flushable;
+    private final boolean closeChannel;
+    private final ReportFormat format;
+    private final StringBuilder text = new StringBuilder(BUFFER_SIZE + 256);
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private boolean closed;
+
+    private ReportWriter(WritableByteChannel channel, Flushable flushable, boolean closeChannel, ReportFormat format) {
+        this.channel = channel;
+        this.flushable = flushable;
+        this.closeChannel = closeChannel;
+        this.format = format;
+        format.appendHeader(text);
+    }
+
+    /**
+     * Creates or overwrites a report file.
+     *
+     * @param file   The file.
+     * @param format The layout of the rows.
+     * @return A writer that closes the file when it is closed.
+     * @throws IOException If the file cannot be opened.
+     */
+    public static ReportWriter open(Path file, ReportFormat format) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new ReportWriter(channel, null, true, format);
+    }
+
+    /**
+     * Writes a report to a stream, e.g. the console or a server session.
+     *
+     * @param out    The stream; it is flushed but not closed when the writer is closed.
+     * @param format The layout of the rows.
+     * @return The writer.
+     */
+    public static ReportWriter to(PrintStream out, ReportFormat format) {
+        return new ReportWriter(Channels.newChannel(out), out, false, format);
+    }
+
+    @Override
+    public void accept(SaleRow row) throws IOException {
+        format.appendRow(row, text);
+        if (text.length() >= BUFFER_SIZE) {
+            drain();
+        }
+    }
+
+    /**
+     * Writes the buffered rows and, for a stream, flushes it.
+     *
+     * @throws IOException If the rows cannot be written.
+     */
+    public void flush() throws IOException {
+        drain();
+        if (flushable != null) {
+            flushable.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flush();
+        } finally {
+            if (closeChannel) {
+                channel.close();
+            }
+        }
+    }
+
+    private void drain() throws IOException {
+        if (text.isEmpty()) {
+            return;
+        }
+        CharBuffer chars = CharBuffer.wrap(text);
+        encoder.reset();
+        CoderResult result;
+        do {
+            result = encoder.encode(chars, bytes, true);
+            if (result.isOverflow()) {
+                writeBytes();
+            } else if (result.isError()) {
+                result.throwException();
+            }
+        } while (result.isOverflow());
+        while (encoder.flush(bytes).isOverflow()) {
+            writeBytes();
+        }
+        writeBytes();
+        text.setLength(0);
+    }
+
+    private void writeBytes() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+}
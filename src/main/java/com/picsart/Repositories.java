@@ -0,0 +1,36 @@
+package com.picsart;
+
+/**
+ * The repositories used by the management and report classes. JDBC implementations are used unless
+ * others are installed, e.g. by benchmarks.
+ */
+public class Repositories {
+
+    private static volatile BookRepository books = new JdbcBookRepository();
+    private static volatile CustomerRepository customers = new JdbcCustomerRepository();
+    private static volatile SaleRepository sales = new JdbcSaleRepository();
+
+    public static BookRepository books() {
+        return books;
+    }
+
+    public static CustomerRepository customers() {
+        return customers;
+    }
+
+    public static SaleRepository sales() {
+        return sales;
+    }
+
+    public static void use(BookRepository bookRepository) {
+        books = bookRepository;
+    }
+
+    public static void use(CustomerRepository customerRepository) {
+        customers = customerRepository;
+    }
+
+    public static void use(SaleRepository saleRepository) {
+        sales = saleRepository;
+    }
+}
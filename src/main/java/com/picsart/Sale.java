@@ -0,0 +1,16 @@
+package com.picsart;
+
+import java.time.LocalDate;
+
+/**
+ * A row of the {@code Sales} table.
+ *
+ * @param saleId       The ID of the sale.
+ * @param bookId       The ID of the sold book.
+ * @param customerId   The ID of the purchasing customer.
+ * @param dateOfSale   The date of the sale.
+ * @param quantitySold The number of books sold.
+ * @param totalPrice   The charged price.
+ */
+public record Sale(int saleId, int bookId, int customerId, LocalDate dateOfSale, int quantitySold, double totalPrice) {
+}
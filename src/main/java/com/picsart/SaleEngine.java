@@ -0,0 +1,167 @@
+package com.picsart;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Records sales with a single statement per sale.
+ * <p>
+ * The stock decrement is conditional on enough stock being left, returns the book price and feeds
+ * the {@code Sales} insert in the same statement, so a sale costs one round trip and cannot oversell
+ * even when two terminals sell the last copy at the same time. The statement also takes the
+ * {@link StockLedger} lock shared, so it refuses to sell while another instance's ledger owns the stock.
+ */
+public class SaleEngine {
+
+    /**
+     * Decrements stock if enough is left and no ledger runs elsewhere, inserts the sale priced from the
+     * updated row, and always returns one row telling whether the book exists, which sale was recorded
+     * and whether the ledger lock was free.
+     */
+    private static final String SALE_QUERY =
+            "WITH guard AS (SELECT pg_try_advisory_xact_lock_shared(?) AS free), " +
+            "stock AS (" +
+                    "UPDATE Books SET QuantityInStock = QuantityInStock - ? " +
+                    "WHERE BookID = ? AND QuantityInStock >= ? AND (SELECT free FROM guard) " +
+                    "RETURNING BookID, Price, Genre), " +
+            "sale AS (" +
+                    "INSERT INTO Sales (BookID, CustomerID, DateOfSale, QuantitySold, TotalPrice) " +
+                    "SELECT BookID, ?, ?, ?, Price * ? FROM stock " +
+                    "RETURNING SaleID, TotalPrice) " +
+            "SELECT sale.SaleID, sale.TotalPrice, EXISTS (SELECT 1 FROM Books WHERE BookID = ?), " +
+            "(SELECT Genre FROM stock), (SELECT free FROM guard) " +
+            "FROM (SELECT 1) AS one LEFT JOIN sale ON TRUE";
+
+    /**
+     * Inserts a sale whose stock was already reserved in the {@link StockLedger}.
+     */
+    private static final String INSERT_SALE_QUERY =
+            "INSERT INTO Sales (BookID, CustomerID, DateOfSale, QuantitySold, TotalPrice) VALUES (?, ?, ?, ?, ?) " +
+                    "RETURNING SaleID";
+
+    /**
+     * Sells books on the given connection. The statement is atomic on its own; when the connection
+     * is inside a transaction the caller decides when to commit and must pass completed results to
+     * {@link SaleEvents#publish(SaleResult)} once it has.
+     *
+     * @param connection The database connection.
+     * @param customerId The ID of the customer making the purchase.
+     * @param bookId     The ID of the book being purchased.
+     * @param dateOfSale The date of the sale.
+     * @param quantity   The quantity of books being purchased.
+     * @return The outcome of the sale.
+     * @throws SQLException If a database access error occurs.
+     */
+    public static SaleResult sell(Connection connection, int customerId, int bookId, Date dateOfSale, int quantity)
+            throws SQLException {
+        if (quantity <= 0) {
+            return SaleResult.failed(customerId, bookId, quantity, "Quantity must be positive");
+        }
+
+        try (PreparedStatement preparedStatement = connection.prepareStatement(SALE_QUERY)) {
+            preparedStatement.setLong(1, StockLedger.LOCK_KEY);
+            preparedStatement.setInt(2, quantity);
+            preparedStatement.setInt(3, bookId);
+            preparedStatement.setInt(4, quantity);
+            preparedStatement.setInt(5, customerId);
+            preparedStatement.setDate(6, dateOfSale);
+            preparedStatement.setInt(7, quantity);
+            preparedStatement.setInt(8, quantity);
+            preparedStatement.setInt(9, bookId);
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                resultSet.next();
+                int saleId = resultSet.getInt(1);
+                if (!resultSet.wasNull()) {
+                    return SaleResult.completed(saleId, customerId, bookId, resultSet.getString(4), quantity,
+                            resultSet.getDouble(2));
+                }
+                if (!resultSet.getBoolean(5)) {
+                    return SaleResult.failed(customerId, bookId, quantity, StockLedger.RUNNING_ELSEWHERE);
+                }
+                SaleResult.Status status = resultSet.getBoolean(3)
+                        ? SaleResult.Status.INSUFFICIENT_STOCK
+                        : SaleResult.Status.BOOK_NOT_FOUND;
+                return SaleResult.rejected(status, customerId, bookId, quantity);
+            }
+        }
+    }
+
+    /**
+     * Sells books on a pooled connection in auto-commit mode. While the {@link StockLedger} runs, stock
+     * is reserved in memory and only the sale is written.
+     *
+     * @param customerId The ID of the customer making the purchase.
+     * @param bookId     The ID of the book being purchased.
+     * @param dateOfSale The date of the sale.
+     * @param quantity   The quantity of books being purchased.
+     * @return The outcome of the sale; database errors are reported as {@link SaleResult.Status#FAILED}.
+     */
+    public static SaleResult sell(int customerId, int bookId, Date dateOfSale, int quantity) {
+        if (StockLedger.isRunning()) {
+            return sellFromLedger(customerId, bookId, dateOfSale, quantity);
+        }
+        try (Connection connection = DatabaseConnection.connection()) {
+            SaleResult result = sell(connection, customerId, bookId, dateOfSale, quantity);
+            if (result.isCompleted()) {
+                DatabaseConnection.recordWrite();
+            }
+            SaleEvents.publish(result);
+            return result;
+        } catch (SQLException e) {
+            return SaleResult.failed(customerId, bookId, quantity, e.getSQLState() + ": " + e.getMessage());
+        }
+    }
+
+    private static SaleResult sellFromLedger(int customerId, int bookId, Date dateOfSale, int quantity) {
+        if (quantity <= 0) {
+            return SaleResult.failed(customerId, bookId, quantity, "Quantity must be positive");
+        }
+        try {
+            Book book = BookCatalog.get(bookId);
+            StockLedger.Outcome outcome = book == null
+                    ? StockLedger.Outcome.BOOK_NOT_FOUND
+                    : StockLedger.reserve(bookId, quantity);
+            switch (outcome) {
+                case BOOK_NOT_FOUND -> {
+                    return SaleResult.rejected(SaleResult.Status.BOOK_NOT_FOUND, customerId, bookId, quantity);
+                }
+                case INSUFFICIENT_STOCK -> {
+                    return SaleResult.rejected(SaleResult.Status.INSUFFICIENT_STOCK, customerId, bookId, quantity);
+                }
+                case RESERVED -> {
+                }
+            }
+
+            double totalPrice = book.price() * quantity;
+            int saleId;
+            try (Connection connection = DatabaseConnection.connection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(INSERT_SALE_QUERY)) {
+                preparedStatement.setInt(1, bookId);
+                preparedStatement.setInt(2, customerId);
+                preparedStatement.setDate(3, dateOfSale);
+                preparedStatement.setInt(4, quantity);
+                preparedStatement.setDouble(5, totalPrice);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    resultSet.next();
+                    saleId = resultSet.getInt(1);
+                }
+            } catch (SQLException e) {
+                StockLedger.release(bookId, quantity);
+                throw e;
+            }
+            SaleResult result = SaleResult.completed(saleId, customerId, bookId, book.genre(), quantity, totalPrice);
+            DatabaseConnection.recordWrite();
+            SaleEvents.publish(result);
+            return result;
+        } catch (SQLException e) {
+            return SaleResult.failed(customerId, bookId, quantity, e.getSQLState() + ": " + e.getMessage());
+        } catch (IOException e) {
+            return SaleResult.failed(customerId, bookId, quantity, "Stock journal: " + e.getMessage());
+        }
+    }
+}
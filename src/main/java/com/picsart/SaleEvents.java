@@ -0,0 +1,45 @@
+package com.picsart;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Notifies in-process subscribers about committed sales, so derived data such as revenue totals can
+ * be maintained incrementally instead of being recomputed from the {@code Sales} table.
+ */
+public class SaleEvents {
+
+    private static final List<Consumer<SaleResult>> SUBSCRIBERS = new CopyOnWriteArrayList<>();
+
+    /**
+     * Registers a subscriber. Subscribers run on the selling thread and must be fast.
+     *
+     * @param subscriber Receives every committed sale.
+     */
+    public static void subscribe(Consumer<SaleResult> subscriber) {
+        SUBSCRIBERS.add(subscriber);
+    }
+
+    public static void unsubscribe(Consumer<SaleResult> subscriber) {
+        SUBSCRIBERS.remove(subscriber);
+    }
+
+    /**
+     * Passes a sale to all subscribers if it was completed. Must only be called after the commit.
+     *
+     * @param result The outcome of the sale.
+     */
+    public static void publish(SaleResult result) {
+        if (!result.isCompleted()) {
+            return;
+        }
+        for (Consumer<SaleResult> subscriber : SUBSCRIBERS) {
+            try {
+                subscriber.accept(result);
+            } catch (RuntimeException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,452 @@
+package com.picsart;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the sales accepted by {@link JournaledSales} but not yet written to {@code Sales}.
+ * <p>
+ * Segments are preallocated files mapped into memory. Each entry is a fixed 52-byte record: sequence
+ * number, client sale UUID, customer, book, day of sale, quantity, total price and a CRC32 of the first
+ * 48 bytes. Reading stops at the first record that is zero or fails its checksum, so a record torn by a
+ * crash is ignored. With fsync enabled an append returns once its record is forced to disk; concurrent
+ * appenders share one {@code force} call. A full segment is sealed and a new one started.
+ * <p>
+ * A failed {@code force} stops the journal: the records not yet on disk are cleared from the mapping, so
+ * no later {@code force} writes a sale whose seller was told it failed, and every later append fails
+ * until the journal is reopened.
+ * <p>
+ * The applier reads entries from a cursor with {@link #peek} and moves past them with {@link #advance}
+ * once they are in the database; segments it has moved past are deleted. Only entries on disk are
+ * handed to the applier, so the database never holds a sale the journal could lose.
+ */
+final class SaleJournal implements AutoCloseable {
+
+    static final int RECORD_SIZE = 52;
+    private static final int CHECKSUMMED_SIZE = RECORD_SIZE - 4;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("sales-(\\d+)\\.journal");
+
+    /**
+     * A journaled sale.
+     *
+     * @param sequence     Position of the entry in the journal, increasing across segments.
+     * @param clientSaleId The UUID identifying the sale across replays.
+     * @param customerId   The ID of the customer.
+     * @param bookId       The ID of the book.
+     * @param dateOfSale   The date of the sale.
+     * @param quantity     Copies sold.
+     * @param totalPrice   Price of the sale.
+     */
+    record Entry(long sequence, UUID clientSaleId, int customerId, int bookId, LocalDate dateOfSale, int quantity,
+                 double totalPrice) {
+    }
+
+    private final Path directory;
+    private final boolean fsync;
+    private final int segmentBytes;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    private final CRC32 crc = new CRC32();
+    private final Deque<Segment> segments = new ConcurrentLinkedDeque<>();
+    private Segment active;
+    private int segmentNumber;
+    private long nextSequence;
+    private Segment cursorSegment;
+    private int cursorOffset;
+    private IOException failure;
+    private boolean closed;
+
+    private SaleJournal(Path directory, boolean fsync, int segmentBytes) {
+        this.directory = directory;
+        this.fsync = fsync;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Opens the journal: maps the existing segments, positions the cursor after the entries the database
+     * already has and starts a new segment for appends.
+     *
+     * @param directory      The journal directory.
+     * @param fsync          Whether appends are forced to disk before they return.
+     * @param segmentBytes   Size of a segment file.
+     * @param lastApplied    Sequence number of the last entry written to the database.
+     * @return The open journal.
+     * @throws IOException If a segment cannot be read or created.
+     */
+    static SaleJournal open(Path directory, boolean fsync, int segmentBytes, long lastApplied) throws IOException {
+        Files.createDirectories(directory);
+        SaleJournal journal = new SaleJournal(directory, fsync, Math.max(1, segmentBytes / RECORD_SIZE) * RECORD_SIZE);
+        long lastSequence = lastApplied;
+        List<Path> paths;
+        try (Stream<Path> files = Files.list(directory)) {
+            paths = files.filter(path -> SEGMENT_NAME.matcher(path.getFileName().toString()).matches())
+                    .sorted((a, b) -> Integer.compare(segmentNumber(a), segmentNumber(b)))
+                    .toList();
+        }
+        for (Path path : paths) {
+            Segment segment = Segment.recover(path);
+            journal.segmentNumber = Math.max(journal.segmentNumber, segmentNumber(path));
+            if (segment.written == 0) {
+                segment.delete();
+                continue;
+            }
+            lastSequence = Math.max(lastSequence, segment.lastSequence());
+            journal.segments.add(segment);
+        }
+        journal.nextSequence = lastSequence + 1;
+        journal.active = journal.newSegment();
+        journal.cursorSegment = journal.segments.peekFirst();
+
+        List<Entry> skipped = journal.scan(Integer.MAX_VALUE, lastApplied);
+        journal.advance(skipped.size());
+        return journal;
+    }
+
+    /**
+     * Appends a sale and, with fsync enabled, waits until it is on disk.
+     *
+     * @return The sequence number of the entry.
+     * @throws IOException If the entry cannot be written or forced, or the journal has stopped after an
+     *                     earlier failure; the entry is not kept then.
+     */
+    long append(UUID clientSaleId, int customerId, int bookId, LocalDate dateOfSale, int quantity, double totalPrice)
+            throws IOException {
+        Segment target;
+        int end;
+        long sequence;
+        appendLock.lock();
+        try {
+            if (closed) {
+                throw new IOException("Sale journal is closed");
+            }
+            if (failure != null) {
+                throw new IOException("Sale journal stopped after a failed write: " + failure.getMessage(), failure);
+            }
+            if (active.written + RECORD_SIZE > active.capacity) {
+                active.seal();
+                active = newSegment();
+            }
+            sequence = nextSequence;
+            record.clear();
+            record.putLong(sequence)
+                    .putLong(clientSaleId.getMostSignificantBits())
+                    .putLong(clientSaleId.getLeastSignificantBits())
+                    .putInt(customerId)
+                    .putInt(bookId)
+                    .putInt((int) dateOfSale.toEpochDay())
+                    .putInt(quantity)
+                    .putDouble(totalPrice);
+            crc.reset();
+            crc.update(record.array(), 0, CHECKSUMMED_SIZE);
+            record.putInt((int) crc.getValue());
+            target = active;
+            end = target.write(record.array(), fsync);
+            nextSequence = sequence + 1;
+        } finally {
+            appendLock.unlock();
+        }
+        if (fsync) {
+            try {
+                target.sync(end);
+            } catch (IOException e) {
+                fail(target, e);
+                throw e;
+            }
+        }
+        return sequence;
+    }
+
+    /**
+     * Stops the journal after a failed force and drops the records of the segment not yet on disk, none
+     * of which was acknowledged.
+     */
+    private void fail(Segment target, IOException e) {
+        appendLock.lock();
+        try {
+            if (failure == null) {
+                failure = e;
+                System.out.println("Sale journal stopped, restart to sell again: " + e.getMessage());
+            }
+            target.dropUnsynced();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code max} durable entries after the cursor, without moving it. Only the applier
+     * calls this.
+     */
+    List<Entry> peek(int max) {
+        return scan(max, Long.MAX_VALUE);
+    }
+
+    /**
+     * Moves the cursor past {@code count} entries and deletes the segments left behind.
+     */
+    void advance(int count) throws IOException {
+        while (count > 0 && cursorSegment != null) {
+            int available = (cursorSegment.durable() - cursorOffset) / RECORD_SIZE;
+            int step = Math.min(count, available);
+            cursorOffset += step * RECORD_SIZE;
+            count -= step;
+            if (!nextSegmentIfDone()) {
+                break;
+            }
+        }
+        nextSegmentIfDone();
+    }
+
+    /**
+     * Reads up to {@code max} durable entries after the cursor, stopping before the first entry whose
+     * sequence number is above {@code through}.
+     */
+    private List<Entry> scan(int max, long through) {
+        List<Entry> entries = new ArrayList<>();
+        Iterator<Segment> iterator = segments.iterator();
+        Segment segment = null;
+        while (iterator.hasNext() && segment != cursorSegment) {
+            segment = iterator.next();
+        }
+        if (segment != cursorSegment || segment == null) {
+            return entries;
+        }
+        int offset = cursorOffset;
+        byte[] bytes = new byte[RECORD_SIZE];
+        while (entries.size() < max) {
+            if (offset < segment.durable()) {
+                Entry entry = segment.read(offset, bytes);
+                if (entry.sequence() > through) {
+                    return entries;
+                }
+                entries.add(entry);
+                offset += RECORD_SIZE;
+            } else if (segment.sealed && offset >= segment.written && iterator.hasNext()) {
+                segment = iterator.next();
+                offset = 0;
+            } else {
+                break;
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Steps the cursor to the next segment if it has read all of a sealed one, deleting that one.
+     *
+     * @return Whether the cursor moved.
+     */
+    private boolean nextSegmentIfDone() throws IOException {
+        if (cursorSegment == null || !cursorSegment.sealed || cursorOffset < cursorSegment.written) {
+            return false;
+        }
+        Segment done = segments.pollFirst();
+        cursorSegment = segments.peekFirst();
+        cursorOffset = 0;
+        if (done != null) {
+            done.delete();
+        }
+        return cursorSegment != null;
+    }
+
+    private Segment newSegment() throws IOException {
+        Segment segment = Segment.create(directory.resolve("sales-" + ++segmentNumber + ".journal"), segmentBytes);
+        segments.add(segment);
+        return segment;
+    }
+
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            closed = true;
+            for (Segment segment : segments) {
+                segment.close();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private static int segmentNumber(Path path) {
+        Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+        return matcher.matches() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
+    /**
+     * One mapped segment file. Records are written under the journal's append lock; forcing has its own
+     * lock so that one thread's {@code force} covers every record written before it started.
+     */
+    static final class Segment {
+
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private final ReentrantLock syncLock = new ReentrantLock();
+        private volatile int written;
+        private volatile int synced;
+        private volatile boolean sealed;
+        private boolean closed;
+        private boolean failed;
+
+        private Segment(Path path, FileChannel channel, int capacity) throws IOException {
+            this.path = path;
+            this.channel = channel;
+            this.capacity = capacity;
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+
+        static Segment create(Path path, int capacity) throws IOException {
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(path, channel, capacity);
+        }
+
+        /**
+         * Maps an existing segment as sealed, up to its last intact record.
+         */
+        static Segment recover(Path path) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            int size = (int) Math.min(channel.size(), Integer.MAX_VALUE) / RECORD_SIZE * RECORD_SIZE;
+            Segment segment = new Segment(path, channel, size);
+            byte[] bytes = new byte[RECORD_SIZE];
+            CRC32 checksum = new CRC32();
+            int offset = 0;
+            while (offset + RECORD_SIZE <= size) {
+                segment.buffer.get(offset, bytes);
+                checksum.reset();
+                checksum.update(bytes, 0, CHECKSUMMED_SIZE);
+                ByteBuffer record = ByteBuffer.wrap(bytes);
+                if (record.getLong(0) == 0 || record.getInt(CHECKSUMMED_SIZE) != (int) checksum.getValue()) {
+                    break;
+                }
+                offset += RECORD_SIZE;
+            }
+            segment.written = offset;
+            segment.synced = offset;
+            segment.sealed = true;
+            return segment;
+        }
+
+        /**
+         * Copies a record into the mapping and returns the segment size after it.
+         */
+        int write(byte[] bytes, boolean fsync) {
+            int offset = written;
+            buffer.put(offset, bytes, 0, RECORD_SIZE);
+            written = offset + RECORD_SIZE;
+            if (!fsync) {
+                synced = written;
+            }
+            return written;
+        }
+
+        /**
+         * Size of the part the applier may read: what is on disk, or everything when fsync is off.
+         */
+        int durable() {
+            return synced;
+        }
+
+        long lastSequence() {
+            return written == 0 ? 0 : buffer.getLong(written - RECORD_SIZE);
+        }
+
+        Entry read(int offset, byte[] bytes) {
+            buffer.get(offset, bytes);
+            ByteBuffer record = ByteBuffer.wrap(bytes);
+            return new Entry(record.getLong(),
+                    new UUID(record.getLong(), record.getLong()),
+                    record.getInt(),
+                    record.getInt(),
+                    LocalDate.ofEpochDay(record.getInt()),
+                    record.getInt(),
+                    record.getDouble());
+        }
+
+        /**
+         * Forces the mapping at least up to the given size.
+         *
+         * @throws IOException If the force fails, or the size is not forced yet and the segment is closed
+         *                     or failed before.
+         */
+        void sync(int upTo) throws IOException {
+            syncLock.lock();
+            try {
+                if (synced >= upTo) {
+                    return;
+                }
+                if (closed) {
+                    throw new IOException("Sale journal segment " + path.getFileName() + " is closed");
+                }
+                if (failed) {
+                    throw new IOException("Sale journal segment " + path.getFileName() + " failed");
+                }
+                int from = synced;
+                int target = written;
+                buffer.force(from, target - from);
+                synced = target;
+            } catch (UncheckedIOException e) {
+                failed = true;
+                throw e.getCause();
+            } finally {
+                syncLock.unlock();
+            }
+        }
+
+        /**
+         * Zeroes the records written after the forced size and moves the size back to it, so recovery
+         * stops there. Called under the journal's append lock.
+         */
+        void dropUnsynced() {
+            syncLock.lock();
+            try {
+                failed = true;
+                buffer.put(synced, new byte[written - synced]);
+                written = synced;
+            } finally {
+                syncLock.unlock();
+            }
+        }
+
+        void seal() {
+            sealed = true;
+        }
+
+        void close() throws IOException {
+            syncLock.lock();
+            try {
+                if (!closed) {
+                    closed = true;
+                    channel.close();
+                }
+            } finally {
+                syncLock.unlock();
+            }
+        }
+
+        void delete() throws IOException {
+            close();
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.picsart;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Group commit of single-book sales: concurrent checkouts share one transaction and one commit.
+ * <p>
+ * {@link #submit} queues a sale and returns a future. A single writer thread takes the first queued
+ * sale, collects more until it has {@code sales.groupCommit.maxBatch} of them, at most {@link #MAX_BATCH},
+ * or {@code sales.groupCommit.maxDelayMillis} have passed since the first one, and applies the batch in
+ * one transaction. Each sale runs the {@link SaleEngine} statement behind its own savepoint, so a sale
+ * that fails is rolled back alone and the others still commit. The futures complete after the commit.
+ * While one batch is applied the next one fills up, so batches grow with load and the commits per sale
+ * fall, while a sale waits at most the delay plus one batch.
+ * <p>
+ * A batch is applied in book order, the order in which {@link OrderProcessing} locks books, so it cannot
+ * deadlock with an order. While the {@link StockLedger} runs, stock is not locked in the database and
+ * sales bypass the queue.
+ */
+public class SaleQueue {
+
+    /**
+     * A queued sale and the future of its outcome.
+     */
+    private record Submission(int customerId, int bookId, Date dateOfSale, int quantity,
+                              CompletableFuture<SaleResult> result) {
+    }
+
+    /**
+     * Queued by {@link #stop()} behind the last sale; the writer exits when it takes it.
+     */
+    private static final Submission STOP = new Submission(0, 0, null, 0, null);
+
+    /**
+     * Largest batch: each sale takes a subtransaction, and Postgres caches only 64 of them per backend
+     * before other sessions have to look them up on disk.
+     */
+    static final int MAX_BATCH = 64;
+
+    private static final Comparator<Submission> BOOK_ORDER = Comparator.comparingInt(Submission::bookId);
+
+    /**
+     * Held shared while queueing and exclusively while stopping, so no sale is queued behind {@link #STOP}.
+     */
+    private static final ReentrantReadWriteLock LIFECYCLE = new ReentrantReadWriteLock();
+
+    private static volatile BlockingQueue<Submission> queue;
+    private static Thread writer;
+    private static int maxBatch;
+    private static long maxDelayNanos;
+
+    /**
+     * Starts the writer thread.
+     *
+     * @param configuration The application configuration.
+     */
+    public static void start(Configuration configuration) {
+        LIFECYCLE.writeLock().lock();
+        try {
+            if (queue != null) {
+                return;
+            }
+            maxBatch = Math.min(MAX_BATCH, Math.max(1, configuration.getInt("sales.groupCommit.maxBatch", 32)));
+            maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(
+                    Math.max(0, configuration.getLong("sales.groupCommit.maxDelayMillis", 2)));
+            BlockingQueue<Submission> submissions = new ArrayBlockingQueue<>(
+                    Math.max(maxBatch, configuration.getInt("sales.groupCommit.queueCapacity", 4096)));
+            writer = new Thread(() -> drain(submissions), "sale-group-commit");
+            writer.setDaemon(true);
+            writer.start();
+            queue = submissions;
+        } finally {
+            LIFECYCLE.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stops accepting sales, commits the queued ones and waits for the writer to finish.
+     */
+    public static void stop() {
+        Thread stopped;
+        LIFECYCLE.writeLock().lock();
+        try {
+            if (queue == null) {
+                return;
+            }
+            queue.put(STOP);
+            queue = null;
+            stopped = writer;
+            writer = null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            LIFECYCLE.writeLock().unlock();
+        }
+        try {
+            stopped.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static boolean isRunning() {
+        return queue != null;
+    }
+
+    /**
+     * Queues a sale. If the queue is not running, or the {@link StockLedger} is, the sale is made right
+     * away on a pooled connection and the returned future is already complete.
+     *
+     * @param customerId The ID of the customer making the purchase.
+     * @param bookId     The ID of the book being purchased.
+     * @param dateOfSale The date of the sale.
+     * @param quantity   The quantity of books being purchased.
+     * @return The outcome, once the sale's batch has been committed or rolled back.
+     */
+    public static CompletableFuture<SaleResult> submit(int customerId, int bookId, Date dateOfSale, int quantity) {
+        CompletableFuture<SaleResult> result = new CompletableFuture<>();
+        LIFECYCLE.readLock().lock();
+        try {
+            BlockingQueue<Submission> submissions = queue;
+            if (submissions != null && !StockLedger.isRunning()) {
+                submissions.put(new Submission(customerId, bookId, dateOfSale, quantity, result));
+                return result;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.completedFuture(
+                    SaleResult.failed(customerId, bookId, quantity, "Interrupted while queueing the sale"));
+        } finally {
+            LIFECYCLE.readLock().unlock();
+        }
+        return CompletableFuture.completedFuture(SaleEngine.sell(customerId, bookId, dateOfSale, quantity));
+    }
+
+    /**
+     * Queues a sale and waits for its outcome.
+     *
+     * @param customerId The ID of the customer making the purchase.
+     * @param bookId     The ID of the book being purchased.
+     * @param dateOfSale The date of the sale.
+     * @param quantity   The quantity of books being purchased.
+     * @return The outcome of the sale; database errors are reported as {@link SaleResult.Status#FAILED}.
+     */
+    public static SaleResult sell(int customerId, int bookId, Date dateOfSale, int quantity) {
+        SaleResult result = submit(customerId, bookId, dateOfSale, quantity).join();
+        if (result.isCompleted()) {
+            DatabaseConnection.recordWrite();
+        }
+        return result;
+    }
+
+    private static void drain(BlockingQueue<Submission> submissions) {
+        List<Submission> batch = new ArrayList<>(maxBatch);
+        while (true) {
+            Submission next;
+            try {
+                next = submissions.take();
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (next != STOP) {
+                    batch.add(next);
+                    if (batch.size() == maxBatch) {
+                        break;
+                    }
+                    next = submissions.poll();
+                    if (next == null) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0 || (next = submissions.poll(remaining, TimeUnit.NANOSECONDS)) == null) {
+                            break;
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                next = STOP;
+            }
+            if (!batch.isEmpty()) {
+                apply(batch);
+                batch.clear();
+            }
+            if (next == STOP) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Applies a batch in one transaction and completes its futures.
+     */
+    private static void apply(List<Submission> batch) {
+        batch.sort(BOOK_ORDER);
+        SaleResult[] results = new SaleResult[batch.size()];
+        String failure = null;
+        try (Metrics.Scope ignored = Metrics.begin("SaleQueue.commit");
+             Connection connection = DatabaseConnection.connection()) {
+            connection.setAutoCommit(false);
+            try {
+                for (int i = 0; i < results.length; i++) {
+                    Submission sale = batch.get(i);
+                    Savepoint savepoint = connection.setSavepoint();
+                    try {
+                        results[i] = SaleEngine.sell(connection, sale.customerId(), sale.bookId(), sale.dateOfSale(),
+                                sale.quantity());
+                        connection.releaseSavepoint(savepoint);
+                    } catch (SQLException e) {
+                        connection.rollback(savepoint);
+                        results[i] = SaleResult.failed(sale.customerId(), sale.bookId(), sale.quantity(),
+                                e.getSQLState() + ": " + e.getMessage());
+                    }
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            failure = e.getSQLState() + ": " + e.getMessage();
+        } catch (RuntimeException e) {
+            failure = e.toString();
+        }
+
+        for (int i = 0; i < results.length; i++) {
+            Submission sale = batch.get(i);
+            if (failure != null) {
+                sale.result().complete(SaleResult.failed(sale.customerId(), sale.bookId(), sale.quantity(), failure));
+            } else {
+                SaleEvents.publish(results[i]);
+                sale.result().complete(results[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.picsart;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Read access to the {@code Sales} table. Sales are written by {@link SaleEngine} and
+ * {@link OrderProcessing}.
+ */
+public interface SaleRepository {
+
+    /**
+     * Finds all sales of a customer, ordered by sale ID.
+     *
+     * @param customerId The ID of the customer.
+     * @return The customer's sales.
+     * @throws SQLException If a database access error occurs.
+     */
+    List<Sale> findByCustomer(int customerId) throws SQLException;
+
+    /**
+     * Returns a page of a customer's purchase history with book titles, newest sale first, together
+     * with the customer's lifetime totals.
+     *
+     * @param customerId The ID of the customer.
+     * @param after      Where the page starts, or null for the first page.
+     * @param limit      Maximum number of sales on the page.
+     * @return The page.
+     * @throws SQLException If a database access error occurs.
+     */
+    PurchaseHistoryPage purchaseHistory(int customerId, PurchaseHistoryPage.Cursor after, int limit) throws SQLException;
+
+    /**
+     * Streams the book sales report. The stream holds a database connection until it is closed.
+     *
+     * @param query The date range and page to report.
+     * @return The report rows in sale ID order.
+     * @throws SQLException If the query cannot be started.
+     */
+    Stream<SaleRow> bookSales(SalesReportQuery query) throws SQLException;
+
+    /**
+     * Sums the revenue of all sales per genre of the sold book.
+     *
+     * @return Revenue in cents per genre.
+     * @throws SQLException If a database access error occurs.
+     */
+    Map<String, Long> revenueCentsByGenre() throws SQLException;
+
+    /**
+     * Sums the revenue of the sales in a date range per genre of the sold book.
+     *
+     * @param from First day of the range, inclusive.
+     * @param to   End of the range, exclusive.
+     * @return Revenue in cents per genre.
+     * @throws SQLException If a database access error occurs.
+     */
+    Map<String, Long> revenueCentsByGenre(LocalDate from, LocalDate to) throws SQLException;
+
+    /**
+     * Sums the sales of a date range per period from the daily rollups, in total or per genre.
+     *
+     * @param from        First day of the range, inclusive.
+     * @param to          End of the range, exclusive.
+     * @param granularity Length of the periods.
+     * @param byGenre     Whether to sum per genre instead of over all genres.
+     * @return The periods with sales, oldest first, then by genre.
+     * @throws SQLException If a database access error occurs.
+     */
+    List<SalesTrend> salesTrend(LocalDate from, LocalDate to, SalesTrend.Granularity granularity, boolean byGenre)
+            throws SQLException;
+
+    /**
+     * Sums the sales of one book in a date range per period from the daily rollups.
+     *
+     * @param bookId      The ID of the book.
+     * @param from        First day of the range, inclusive.
+     * @param to          End of the range, exclusive.
+     * @param granularity Length of the periods.
+     * @return The periods with sales of the book, oldest first.
+     * @throws SQLException If a database access error occurs.
+     */
+    List<SalesTrend> bookSalesTrend(int bookId, LocalDate from, LocalDate to, SalesTrend.Granularity granularity)
+            throws SQLException;
+}
@@ -0,0 +1,50 @@
+package com.picsart;
+
+/**
+ * Outcome of a sale attempt.
+ *
+ * @param status     What happened to the sale.
+ * @param saleId     The ID of the recorded sale, or 0 if none was recorded or it belongs to a batched order.
+ * @param customerId The ID of the purchasing customer.
+ * @param bookId     The ID of the book.
+ * @param genre      The genre of the book if the sale was completed, otherwise null.
+ * @param quantity   The requested quantity.
+ * @param totalPrice The charged price, or 0 if nothing was sold.
+ * @param message    Error details for {@link Status#FAILED}, otherwise null.
+ */
+public record SaleResult(
+        Status status,
+        int saleId,
+        int customerId,
+        int bookId,
+        String genre,
+        int quantity,
+        double totalPrice,
+        String message) {
+
+    /**
+     * Possible sale outcomes.
+     */
+    public enum Status {
+        COMPLETED,
+        INSUFFICIENT_STOCK,
+        BOOK_NOT_FOUND,
+        FAILED
+    }
+
+    public static SaleResult completed(int saleId, int customerId, int bookId, String genre, int quantity, double totalPrice) {
+        return new SaleResult(Status.COMPLETED, saleId, customerId, bookId, genre, quantity, totalPrice, null);
+    }
+
+    public static SaleResult rejected(Status status, int customerId, int bookId, int quantity) {
+        return new SaleResult(status, 0, customerId, bookId, null, quantity, 0, null);
+    }
+
+    public static SaleResult failed(int customerId, int bookId, int quantity, String message) {
+        return new SaleResult(Status.FAILED, 0, customerId, bookId, null, quantity, 0, message);
+    }
+
+    public boolean isCompleted() {
+        return status == Status.COMPLETED;
+    }
+}
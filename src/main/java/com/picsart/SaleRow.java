@@ -0,0 +1,14 @@
+package com.picsart;
+
+import java.time.LocalDate;
+
+/**
+ * One row of the book sales report.
+ *
+ * @param saleId       The ID of the sale.
+ * @param bookTitle    The title of the sold book.
+ * @param customerName The name of the purchasing customer.
+ * @param saleDate     The date of the sale.
+ */
+public record SaleRow(int saleId, String bookTitle, String customerName, LocalDate saleDate) {
+}
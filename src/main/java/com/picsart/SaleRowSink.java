@@ -0,0 +1,70 @@
+package com.picsart;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+
+/**
+ * Destination of streamed book sales report rows.
+ */
+public interface SaleRowSink extends AutoCloseable {
+
+    /**
+     * Consumes one report row.
+     *
+     * @param row The row.
+     * @throws IOException If the row cannot be written.
+     */
+    void accept(SaleRow row) throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
+
+    /**
+     * Prints rows to the console in the classic report format.
+     */
+    static SaleRowSink console() {
+        return printing(System.out);
+    }
+
+    /**
+     * Prints rows to a stream in the classic report format. Rows are buffered and written in large
+     * chunks; the stream is flushed when the sink is closed.
+     *
+     * @param out The stream; it is not closed.
+     */
+    static SaleRowSink printing(PrintStream out) {
+        return ReportWriter.to(out, ReportFormat.TEXT);
+    }
+
+    /**
+     * Writes rows to a CSV file with a header line.
+     *
+     * @param file The file to create or overwrite.
+     * @throws IOException If the file cannot be opened.
+     */
+    static SaleRowSink csv(Path file) throws IOException {
+        return ReportWriter.open(file, ReportFormat.CSV);
+    }
+
+    /**
+     * Writes rows to a file in the given format.
+     *
+     * @param file   The file to create or overwrite.
+     * @param format The layout of the rows.
+     * @throws IOException If the file cannot be opened.
+     */
+    static SaleRowSink file(Path file, ReportFormat format) throws IOException {
+        return ReportWriter.open(file, format);
+    }
+
+    /**
+     * Writes rows to another sink on a background thread; see {@link AsyncSaleRowSink}.
+     *
+     * @param delegate The sink; it is closed with the returned one.
+     */
+    static SaleRowSink async(SaleRowSink delegate) {
+        return new AsyncSaleRowSink(delegate);
+    }
+}
@@ -0,0 +1,308 @@
+package com.picsart;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory analytics over a columnar snapshot of {@code Sales} joined with {@code Books}, so exploratory
+ * reports (revenue by genre and month, by author, by customer) do not run ad-hoc joins on the database.
+ * <p>
+ * The snapshot is held by {@link SalesColumns}: primitive arrays with dictionary-encoded genres and
+ * authors, dates as days since 1970 and totals in cents, about 26 bytes per sale. Queries filter and
+ * group it with parallel fork-join scans.
+ * <p>
+ * The loader thread reads the sales from the read replica: all of them at start, then every
+ * {@code analytics.refreshSeconds} those with a {@code SaleID} above the highest loaded one minus
+ * {@code analytics.idLookback}, skipping the ones already loaded. The lookback picks up sales whose
+ * transactions committed after a higher ID had been read; a sale committed later than that is missed
+ * until the next full reload. Every {@code analytics.fullReloadHours} the snapshot is rebuilt and
+ * swapped, which also picks up deleted sales and changed genres or authors, since a sale keeps the
+ * genre and author its book had when the sale was loaded.
+ */
+public class SalesAnalytics {
+
+    /**
+     * Attributes sales can be grouped by.
+     */
+    public enum Dimension {
+        GENRE,
+        AUTHOR,
+        CUSTOMER,
+        BOOK,
+        MONTH;
+
+        /**
+         * Parses a comma-separated list of dimension names, ignoring case.
+         *
+         * @param names The names, such as {@code genre,month}.
+         * @return The dimensions, in the given order.
+         * @throws IllegalArgumentException If a name is unknown.
+         */
+        public static List<Dimension> parse(String names) {
+            List<Dimension> dimensions = new ArrayList<>();
+            for (String name : names.split(",")) {
+                try {
+                    dimensions.add(valueOf(name.trim().toUpperCase(Locale.ROOT)));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Unknown dimension " + name.trim());
+                }
+            }
+            return dimensions;
+        }
+    }
+
+    /**
+     * A group-by query over the snapshot. Null filters match every sale.
+     *
+     * @param groupBy    One or two dimensions to group by.
+     * @param from       The first day of the period, inclusive; undated sales only match without a period.
+     * @param to         The end of the period, exclusive.
+     * @param genre      Only sales of books of this genre, ignoring case.
+     * @param author     Only sales of books of this author, ignoring case.
+     * @param customerId Only sales to this customer.
+     */
+    public record Query(List<Dimension> groupBy, LocalDate from, LocalDate to, String genre, String author,
+                        Integer customerId) {
+
+        public Query {
+            if (groupBy == null || groupBy.isEmpty() || groupBy.size() > 2) {
+                throw new IllegalArgumentException("Group by one or two dimensions");
+            }
+            groupBy = List.copyOf(groupBy);
+        }
+
+        public static Query groupBy(Dimension... dimensions) {
+            return new Query(List.of(dimensions), null, null, null, null, null);
+        }
+
+        public Query between(LocalDate from, LocalDate to) {
+            return new Query(groupBy, from, to, genre, author, customerId);
+        }
+
+        public Query withGenre(String genre) {
+            return new Query(groupBy, from, to, genre, author, customerId);
+        }
+
+        public Query withAuthor(String author) {
+            return new Query(groupBy, from, to, genre, author, customerId);
+        }
+
+        public Query withCustomer(Integer customerId) {
+            return new Query(groupBy, from, to, genre, author, customerId);
+        }
+    }
+
+    /**
+     * The totals of one group.
+     *
+     * @param key          The values of the grouped dimensions, in query order.
+     * @param sales        Number of sales.
+     * @param copies       Copies sold.
+     * @param revenueCents Revenue in cents.
+     */
+    public record Group(List<String> key, long sales, long copies, long revenueCents) {
+
+        public double revenue() {
+            return revenueCents / 100.0;
+        }
+    }
+
+    private static final String LOAD_QUERY =
+            "SELECT Sales.SaleID, Sales.BookID, Sales.CustomerID, Sales.DateOfSale, Sales.QuantitySold, " +
+                    "ROUND(Sales.TotalPrice::numeric * 100)::integer, Books.Genre, Books.Author " +
+                    "FROM Sales LEFT JOIN Books ON Sales.BookID = Books.BookID " +
+                    "WHERE Sales.SaleID > ?";
+    private static final String HIGHEST_SALE_QUERY = "SELECT COALESCE(MAX(SaleID), 0) FROM Sales";
+
+    private static int fetchSize;
+    private static int idLookback;
+    private static long fullReloadMillis;
+    private static volatile SalesColumns columns;
+    private static int highestSaleId;
+    private static IntLongMap recentSaleIds = new IntLongMap();
+    private static long loadedAt;
+    private static ScheduledExecutorService loader;
+
+    /**
+     * Schedules the initial load and the refreshes, if {@code analytics.enabled} is set. The snapshot is
+     * loaded in the background; until then queries return nothing.
+     *
+     * @param configuration The application configuration.
+     */
+    public static synchronized void start(Configuration configuration) {
+        if (loader != null || !configuration.getBoolean("analytics.enabled", false)) {
+            return;
+        }
+        fetchSize = Math.max(1, configuration.getInt("analytics.fetchSize", 10000));
+        idLookback = Math.max(0, configuration.getInt("analytics.idLookback", 10000));
+        fullReloadMillis = TimeUnit.HOURS.toMillis(Math.max(1, configuration.getLong("analytics.fullReloadHours", 24)));
+        long refreshSeconds = Math.max(1, configuration.getLong("analytics.refreshSeconds", 60));
+
+        loader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "analytics-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        loader.scheduleWithFixedDelay(SalesAnalytics::refresh, 0, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops refreshing and drops the snapshot.
+     */
+    public static synchronized void stop() {
+        if (loader == null) {
+            return;
+        }
+        loader.shutdownNow();
+        loader = null;
+        columns = null;
+    }
+
+    public static boolean isRunning() {
+        return loader != null;
+    }
+
+    /**
+     * Tells whether the initial load has finished, so queries see the sales.
+     */
+    public static boolean isLoaded() {
+        return columns != null;
+    }
+
+    /**
+     * Returns the number of sales in the snapshot.
+     */
+    public static int size() {
+        SalesColumns snapshot = columns;
+        return snapshot == null ? 0 : snapshot.view().rows();
+    }
+
+    /**
+     * Filters and groups the sales in the snapshot.
+     *
+     * @param query The query.
+     * @return The groups, highest revenue first; empty if the snapshot is not loaded.
+     */
+    public static List<Group> query(Query query) {
+        SalesColumns snapshot = columns;
+        if (snapshot == null) {
+            return List.of();
+        }
+        List<Group> groups = SalesColumns.query(snapshot.view(), query);
+        groups.sort(Comparator.comparingLong(Group::revenueCents).reversed()
+                .thenComparing(group -> String.join("\u0000", group.key())));
+        return groups;
+    }
+
+    /**
+     * Loads new sales into the snapshot, or rebuilds it when it is missing or due for a full reload.
+     */
+    private static void refresh() {
+        try (Metrics.Scope ignored = Metrics.begin("SalesAnalytics.refresh")) {
+            SalesColumns snapshot = columns;
+            if (snapshot == null || System.currentTimeMillis() - loadedAt >= fullReloadMillis) {
+                reload();
+            } else {
+                load(snapshot);
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getSQLState());
+            System.out.println(e.getMessage());
+        } catch (RuntimeException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Loads a new snapshot and swaps it in. If the load fails, the current snapshot and its loaded IDs
+     * are kept.
+     */
+    private static void reload() throws SQLException {
+        int previousHighest = highestSaleId;
+        IntLongMap previousRecent = recentSaleIds;
+        SalesColumns snapshot = new SalesColumns();
+        highestSaleId = 0;
+        recentSaleIds = new IntLongMap();
+        long startedAt = System.currentTimeMillis();
+        try {
+            load(snapshot);
+        } catch (SQLException | RuntimeException e) {
+            highestSaleId = previousHighest;
+            recentSaleIds = previousRecent;
+            throw e;
+        }
+        synchronized (SalesAnalytics.class) {
+            if (loader != null) {
+                loadedAt = startedAt;
+                columns = snapshot;
+            }
+        }
+    }
+
+    /**
+     * Appends the sales above the lookback window that are not loaded yet, then forgets the IDs that fell
+     * out of the window. Only IDs that can still be in the window after this load are remembered, so a
+     * full load does not keep the ID of every sale.
+     */
+    private static void load(SalesColumns snapshot) throws SQLException {
+        int lowestRead = Math.max(0, highestSaleId - idLookback);
+        try (Connection connection = DatabaseConnection.readConnection()) {
+            connection.setAutoCommit(false);
+            connection.setReadOnly(true);
+            int lowestTracked;
+            try (PreparedStatement preparedStatement = connection.prepareStatement(HIGHEST_SALE_QUERY);
+                 ResultSet resultSet = preparedStatement.executeQuery()) {
+                resultSet.next();
+                lowestTracked = Math.max(lowestRead, resultSet.getInt(1) - idLookback);
+            }
+            try (PreparedStatement preparedStatement = connection.prepareStatement(LOAD_QUERY)) {
+                preparedStatement.setInt(1, lowestRead);
+                preparedStatement.setFetchSize(fetchSize);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    int batch = 0;
+                    while (resultSet.next()) {
+                        int saleId = resultSet.getInt(1);
+                        if (recentSaleIds.get(saleId) != 0) {
+                            continue;
+                        }
+                        Date dateOfSale = resultSet.getDate(4);
+                        snapshot.append(resultSet.getInt(2), resultSet.getInt(3),
+                                dateOfSale == null ? SalesColumns.NO_DAY : (int) dateOfSale.toLocalDate().toEpochDay(),
+                                resultSet.getInt(5), resultSet.getInt(6), resultSet.getString(7), resultSet.getString(8));
+                        if (saleId > lowestTracked) {
+                            recentSaleIds.add(saleId, 1);
+                        }
+                        highestSaleId = Math.max(highestSaleId, saleId);
+                        if (++batch == fetchSize) {
+                            snapshot.publish();
+                            batch = 0;
+                        }
+                    }
+                }
+            } finally {
+                connection.commit();
+            }
+        }
+        snapshot.publish();
+
+        int lowestKept = highestSaleId - idLookback;
+        IntLongMap kept = new IntLongMap();
+        recentSaleIds.forEach((saleId, loaded) -> {
+            if (saleId > lowestKept) {
+                kept.add(saleId, loaded);
+            }
+        });
+        recentSaleIds = kept;
+    }
+}
@@ -0,0 +1,344 @@
+package com.picsart;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Column store of sales for {@link SalesAnalytics}: one primitive array per attribute, in chunks of
+ * 65536 rows, with genres and authors replaced by dictionary ids.
+ * <p>
+ * A row takes 26 bytes: book, customer, day (days since 1970, {@link #NO_DAY} when unknown), quantity,
+ * total in cents, author id as {@code int}s and genre id as a {@code short}. A single loader appends
+ * rows; after each batch it publishes a new {@link View} holding the row count and the dictionaries, so
+ * queries running at the same time read a consistent prefix without locking.
+ * <p>
+ * Queries scan the chunks in parallel on the common fork-join pool: each leaf filters and groups one
+ * chunk into its own hash table and the tables are merged on the way up.
+ */
+final class SalesColumns {
+
+    static final int NO_DAY = Integer.MIN_VALUE;
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final String UNKNOWN = "(unknown)";
+
+    /**
+     * What queries see: the first {@code rows} rows of the columns and the dictionaries as of then.
+     */
+    record View(int rows, int[][] books, int[][] customers, int[][] days, int[][] quantities, int[][] cents,
+                short[][] genres, int[][] authors, String[] genreNames, String[] authorNames) {
+    }
+
+    private final Map<String, Integer> genreIds = new HashMap<>();
+    private final Map<String, Integer> authorIds = new HashMap<>();
+    private final List<String> genreNames = new ArrayList<>();
+    private final List<String> authorNames = new ArrayList<>();
+    private int[][] books = new int[0][];
+    private int[][] customers = new int[0][];
+    private int[][] days = new int[0][];
+    private int[][] quantities = new int[0][];
+    private int[][] cents = new int[0][];
+    private short[][] genres = new short[0][];
+    private int[][] authors = new int[0][];
+    private int rows;
+    private volatile View view;
+
+    SalesColumns() {
+        genreIds.put(null, 0);
+        genreNames.add(UNKNOWN);
+        authorIds.put(null, 0);
+        authorNames.add(UNKNOWN);
+        publish();
+    }
+
+    View view() {
+        return view;
+    }
+
+    /**
+     * Appends a row; it becomes visible with the next {@link #publish()}. Only the loader calls this.
+     */
+    void append(int bookId, int customerId, int day, int quantity, int totalCents, String genre, String author) {
+        int chunk = rows >>> CHUNK_BITS;
+        int index = rows & (CHUNK_SIZE - 1);
+        if (chunk == books.length) {
+            addChunk();
+        }
+        books[chunk][index] = bookId;
+        customers[chunk][index] = customerId;
+        days[chunk][index] = day;
+        quantities[chunk][index] = quantity;
+        cents[chunk][index] = totalCents;
+        genres[chunk][index] = (short) (int) genreIds.computeIfAbsent(genre, name -> {
+            if (genreNames.size() > Short.MAX_VALUE) {
+                throw new IllegalStateException("More than " + Short.MAX_VALUE + " genres");
+            }
+            genreNames.add(name);
+            return genreNames.size() - 1;
+        });
+        authors[chunk][index] = authorIds.computeIfAbsent(author, name -> {
+            authorNames.add(name);
+            return authorNames.size() - 1;
+        });
+        rows++;
+    }
+
+    /**
+     * Makes the appended rows visible to queries.
+     */
+    void publish() {
+        view = new View(rows, books, customers, days, quantities, cents, genres, authors,
+                genreNames.toArray(new String[0]), authorNames.toArray(new String[0]));
+    }
+
+    private void addChunk() {
+        int chunks = books.length + 1;
+        books = Arrays.copyOf(books, chunks);
+        customers = Arrays.copyOf(customers, chunks);
+        days = Arrays.copyOf(days, chunks);
+        quantities = Arrays.copyOf(quantities, chunks);
+        cents = Arrays.copyOf(cents, chunks);
+        genres = Arrays.copyOf(genres, chunks);
+        authors = Arrays.copyOf(authors, chunks);
+        books[chunks - 1] = new int[CHUNK_SIZE];
+        customers[chunks - 1] = new int[CHUNK_SIZE];
+        days[chunks - 1] = new int[CHUNK_SIZE];
+        quantities[chunks - 1] = new int[CHUNK_SIZE];
+        cents[chunks - 1] = new int[CHUNK_SIZE];
+        genres[chunks - 1] = new short[CHUNK_SIZE];
+        authors[chunks - 1] = new int[CHUNK_SIZE];
+    }
+
+    /**
+     * Filters and groups the rows of a view.
+     *
+     * @param view  The rows to scan.
+     * @param query The query.
+     * @return One group per distinct key, in no particular order.
+     */
+    static List<SalesAnalytics.Group> query(View view, SalesAnalytics.Query query) {
+        Scan scan = new Scan(view, new Filter(view, query), query.groupBy().toArray(new SalesAnalytics.Dimension[0]),
+                0, (view.rows() + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+        GroupTable table = view.rows() == 0 ? new GroupTable() : ForkJoinPool.commonPool().invoke(scan);
+
+        List<SalesAnalytics.Group> groups = new ArrayList<>(table.size);
+        for (int slot = 0; slot < table.keys.length; slot++) {
+            if (!table.used[slot]) {
+                continue;
+            }
+            List<String> key = new ArrayList<>(scan.dimensions.length);
+            for (int d = 0; d < scan.dimensions.length; d++) {
+                int value = d == 0 ? (int) (table.keys[slot] >>> 32) : (int) table.keys[slot];
+                key.add(label(view, scan.dimensions[d], value));
+            }
+            groups.add(new SalesAnalytics.Group(List.copyOf(key), table.sales[slot], table.copies[slot],
+                    table.cents[slot]));
+        }
+        return groups;
+    }
+
+    private static String label(View view, SalesAnalytics.Dimension dimension, int value) {
+        return switch (dimension) {
+            case GENRE -> view.genreNames()[value];
+            case AUTHOR -> view.authorNames()[value];
+            case CUSTOMER, BOOK -> value == 0 ? UNKNOWN : Integer.toString(value);
+            case MONTH -> value < 0 ? UNKNOWN : YearMonth.of(value / 12, value % 12 + 1).toString();
+        };
+    }
+
+    /**
+     * Returns {@code year * 12 + month - 1} of a day since 1970, or -1 for {@link #NO_DAY}, without
+     * creating a {@code LocalDate} per row.
+     */
+    static int month(int day) {
+        if (day == NO_DAY) {
+            return -1;
+        }
+        int z = day + 719468;
+        int era = (z >= 0 ? z : z - 146096) / 146097;
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 12 + month - 1;
+    }
+
+    /**
+     * A query's filter, with names resolved to dictionary ids once. An id of -1 matches nothing.
+     */
+    private record Filter(int fromDay, int toDay, int genre, int author, int customerId) {
+
+        static final int ANY = -2;
+
+        Filter(View view, SalesAnalytics.Query query) {
+            this(query.from() == null ? Integer.MIN_VALUE + 1 : (int) query.from().toEpochDay(),
+                    query.to() == null ? Integer.MAX_VALUE : (int) query.to().toEpochDay(),
+                    query.genre() == null ? ANY : indexOf(view.genreNames(), query.genre()),
+                    query.author() == null ? ANY : indexOf(view.authorNames(), query.author()),
+                    query.customerId() == null ? ANY : query.customerId());
+        }
+
+        boolean dated() {
+            return fromDay != Integer.MIN_VALUE + 1 || toDay != Integer.MAX_VALUE;
+        }
+
+        private static int indexOf(String[] names, String name) {
+            for (int i = 1; i < names.length; i++) {
+                if (names[i].equalsIgnoreCase(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Groups a range of chunks, splitting it in halves down to single chunks.
+     */
+    private static final class Scan extends RecursiveTask<GroupTable> {
+
+        private final View view;
+        private final Filter filter;
+        private final SalesAnalytics.Dimension[] dimensions;
+        private final int firstChunk;
+        private final int endChunk;
+
+        Scan(View view, Filter filter, SalesAnalytics.Dimension[] dimensions, int firstChunk, int endChunk) {
+            this.view = view;
+            this.filter = filter;
+            this.dimensions = dimensions;
+            this.firstChunk = firstChunk;
+            this.endChunk = endChunk;
+        }
+
+        @Override
+        protected GroupTable compute() {
+            if (endChunk - firstChunk <= 1) {
+                return scan(firstChunk);
+            }
+            int middle = (firstChunk + endChunk) >>> 1;
+            Scan left = new Scan(view, filter, dimensions, firstChunk, middle);
+            left.fork();
+            GroupTable right = new Scan(view, filter, dimensions, middle, endChunk).compute();
+            GroupTable merged = left.join();
+            merged.addAll(right);
+            return merged;
+        }
+
+        private GroupTable scan(int chunk) {
+            GroupTable table = new GroupTable();
+            int length = Math.min(CHUNK_SIZE, view.rows() - (chunk << CHUNK_BITS));
+            int[] days = view.days()[chunk];
+            int[] customers = view.customers()[chunk];
+            int[] quantities = view.quantities()[chunk];
+            int[] cents = view.cents()[chunk];
+            short[] genres = view.genres()[chunk];
+            int[] authors = view.authors()[chunk];
+            boolean dated = filter.dated();
+            for (int i = 0; i < length; i++) {
+                if (dated && (days[i] == NO_DAY || days[i] < filter.fromDay() || days[i] >= filter.toDay())) {
+                    continue;
+                }
+                if (filter.genre() != Filter.ANY && genres[i] != filter.genre()) {
+                    continue;
+                }
+                if (filter.author() != Filter.ANY && authors[i] != filter.author()) {
+                    continue;
+                }
+                if (filter.customerId() != Filter.ANY && customers[i] != filter.customerId()) {
+                    continue;
+                }
+                long key = 0;
+                for (int d = 0; d < dimensions.length; d++) {
+                    int value = value(dimensions[d], chunk, i);
+                    key = d == 0 ? (long) value << 32 : key | (value & 0xFFFFFFFFL);
+                }
+                table.add(key, quantities[i], cents[i]);
+            }
+            return table;
+        }
+
+        private int value(SalesAnalytics.Dimension dimension, int chunk, int i) {
+            return switch (dimension) {
+                case GENRE -> view.genres()[chunk][i];
+                case AUTHOR -> view.authors()[chunk][i];
+                case CUSTOMER -> view.customers()[chunk][i];
+                case BOOK -> view.books()[chunk][i];
+                case MONTH -> month(view.days()[chunk][i]);
+            };
+        }
+    }
+
+    /**
+     * Open-addressing table from a group key to its sale count, copies and cents.
+     */
+    private static final class GroupTable {
+
+        private long[] keys = new long[64];
+        private long[] sales = new long[64];
+        private long[] copies = new long[64];
+        private long[] cents = new long[64];
+        private boolean[] used = new boolean[64];
+        private int size;
+
+        void add(long key, long quantity, long totalCents) {
+            add(key, 1, quantity, totalCents);
+        }
+
+        void addAll(GroupTable other) {
+            for (int slot = 0; slot < other.keys.length; slot++) {
+                if (other.used[slot]) {
+                    add(other.keys[slot], other.sales[slot], other.copies[slot], other.cents[slot]);
+                }
+            }
+        }
+
+        private void add(long key, long saleCount, long quantity, long totalCents) {
+            int mask = keys.length - 1;
+            long h = key * 0x9E3779B97F4A7C15L;
+            int slot = (int) (h ^ (h >>> 32)) & mask;
+            while (used[slot] && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            sales[slot] += saleCount;
+            copies[slot] += quantity;
+            cents[slot] += totalCents;
+            if (!used[slot]) {
+                used[slot] = true;
+                keys[slot] = key;
+                if (++size > keys.length * 3 / 4) {
+                    resize();
+                }
+            }
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            long[] oldSales = sales;
+            long[] oldCopies = copies;
+            long[] oldCents = cents;
+            boolean[] oldUsed = used;
+            int capacity = oldKeys.length << 1;
+            keys = new long[capacity];
+            sales = new long[capacity];
+            copies = new long[capacity];
+            cents = new long[capacity];
+            used = new boolean[capacity];
+            size = 0;
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldUsed[slot]) {
+                    add(oldKeys[slot], oldSales[slot], oldCopies[slot], oldCents[slot]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.picsart;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the range partitions of {@code Sales} ahead of the calendar and retires old ones.
+ * <p>
+ * {@code V3__partition_sales_by_date.sql} turns {@code Sales} into a table partitioned by
+ * {@code DateOfSale} with monthly partitions and a {@code sales_default} partition for rows without a
+ * matching one. Each run of {@link #maintain} creates partitions of {@code sales.partition.intervalMonths}
+ * months after the last existing one, including any months it has fallen behind, until
+ * {@code sales.partition.premakeMonths} months ahead are covered, moving any rows already sitting in
+ * {@code sales_default} into them. Without any partition, it starts at the month of the oldest sale in
+ * {@code sales_default}, or the current month. With
+ * {@code sales.partition.retainMonths} set, partitions that end before that many months ago are detached
+ * and either dropped or moved to the {@code sales_archive} schema.
+ * <p>
+ * A session-level advisory lock lets only one instance maintain the partitions at a time. Detached
+ * sales no longer count towards reports, including the totals of {@link GenreRevenue}.
+ */
+public class SalesPartitions {
+
+    /**
+     * Schema that detached partitions are moved to unless they are dropped.
+     */
+    public static final String ARCHIVE_SCHEMA = "sales_archive";
+
+    private static final String DEFAULT_PARTITION = "sales_default";
+
+    /**
+     * Arbitrary key of the advisory lock held while the partitions are maintained.
+     */
+    private static final long LOCK_KEY = 0x73616c6573L;
+
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final Pattern BOUNDS = Pattern.compile("FROM \\('(\\d{4}-\\d{2}-\\d{2})'\\) TO \\('(\\d{4}-\\d{2}-\\d{2})'\\)");
+
+    private static final String IS_PARTITIONED_QUERY =
+            "SELECT relkind = 'p' FROM pg_class WHERE oid = to_regclass('sales')";
+    private static final String SELECT_PARTITIONS_QUERY =
+            "SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) " +
+                    "FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                    "WHERE i.inhparent = 'sales'::regclass";
+    private static final String OLDEST_DEFAULT_QUERY = "SELECT MIN(DateOfSale) FROM " + DEFAULT_PARTITION;
+
+    private static ScheduledExecutorService scheduler;
+
+    /**
+     * Partition settings.
+     *
+     * @param intervalMonths Months covered by each new partition.
+     * @param premakeMonths  Months ahead of the current one that must have a partition.
+     * @param retainMonths   Months of partitions kept attached before the current one; 0 keeps all.
+     * @param dropDetached   Drop detached partitions instead of moving them to {@link #ARCHIVE_SCHEMA}.
+     */
+    public record Settings(int intervalMonths, int premakeMonths, int retainMonths, boolean dropDetached) {
+
+        public Settings {
+            if (intervalMonths < 1 || premakeMonths < 0 || retainMonths < 0) {
+                throw new IllegalArgumentException("Invalid sales partition settings");
+            }
+        }
+
+        static Settings from(Configuration configuration) {
+            return new Settings(
+                    configuration.getInt("sales.partition.intervalMonths", 1),
+                    configuration.getInt("sales.partition.premakeMonths", 3),
+                    configuration.getInt("sales.partition.retainMonths", 0),
+                    configuration.getBoolean("sales.partition.dropDetached", false));
+        }
+    }
+
+    /**
+     * An attached range partition, covering {@code from} inclusive to {@code to} exclusive.
+     */
+    private record Partition(String name, LocalDate from, LocalDate to) {
+    }
+
+    /**
+     * Maintains the partitions now and then every {@code sales.partition.checkIntervalHours}, if
+     * {@code sales.partition.enabled} is set.
+     *
+     * @param configuration The application settings.
+     */
+    public static synchronized void start(Configuration configuration) {
+        if (scheduler != null || !configuration.getBoolean("sales.partition.enabled", true)) {
+            return;
+        }
+        Settings settings = Settings.from(configuration);
+        long checkIntervalHours = Math.max(1, configuration.getLong("sales.partition.checkIntervalHours", 24));
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sales-partitions");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                maintain(settings, LocalDate.now());
+            } catch (SQLException e) {
+                System.out.println(e.getSQLState());
+                System.out.println(e.getMessage());
+            }
+        }, 0, checkIntervalHours, TimeUnit.HOURS);
+    }
+
+    /**
+     * Stops the scheduled maintenance.
+     */
+    public static synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Creates the missing upcoming partitions and retires expired ones. Does nothing if {@code Sales}
+     * is not partitioned or another instance holds the maintenance lock.
+     *
+     * @param settings The partition settings.
+     * @param today    The current date.
+     * @return The number of partitions created or detached.
+     * @throws SQLException If a partition cannot be created or detached; earlier changes are kept.
+     */
+    public static int maintain(Settings settings, LocalDate today) throws SQLException {
+        try (Connection connection = DatabaseConnection.connection()) {
+            if (!isPartitioned(connection) || !tryLock(connection)) {
+                return 0;
+            }
+            try {
+                return premake(connection, settings, today) + retire(connection, settings, today);
+            } finally {
+                unlock(connection);
+            }
+        }
+    }
+
+    private static int premake(Connection connection, Settings settings, LocalDate today) throws SQLException {
+        LocalDate horizon = today.withDayOfMonth(1).plusMonths(settings.premakeMonths());
+        LocalDate from = null;
+        for (Partition partition : partitions(connection)) {
+            if (from == null || partition.to().isAfter(from)) {
+                from = partition.to();
+            }
+        }
+        if (from == null) {
+            from = oldestDefaultMonth(connection, today.withDayOfMonth(1));
+        }
+
+        int created = 0;
+        while (!from.isAfter(horizon)) {
+            LocalDate to = from.plusMonths(settings.intervalMonths());
+            create(connection, new Partition("sales_" + from.format(NAME_FORMAT), from, to));
+            created++;
+            from = to;
+        }
+        return created;
+    }
+
+    /**
+     * Returns the first day of the month of the oldest sale in the default partition, or {@code month}
+     * if there is none or it is later.
+     */
+    private static LocalDate oldestDefaultMonth(Connection connection, LocalDate month) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(OLDEST_DEFAULT_QUERY);
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            if (resultSet.next() && resultSet.getDate(1) != null) {
+                LocalDate oldest = resultSet.getDate(1).toLocalDate().withDayOfMonth(1);
+                return oldest.isBefore(month) ? oldest : month;
+            }
+            return month;
+        }
+    }
+
+    /**
+     * Creates a partition as a plain table, moves the matching rows out of the default partition and
+     * attaches it, all in one transaction; attaching an empty new partition directly would fail as
+     * soon as the default partition holds a row in its range. The default partition is locked against
+     * writes first, so a sale inserted while the rows are moved is neither left behind nor deleted
+     * without being copied.
+     */
+    private static void create(Connection connection, Partition partition) throws SQLException {
+        String range = " WHERE DateOfSale >= DATE '" + partition.from() + "' AND DateOfSale < DATE '" + partition.to() + "'";
+        inTransaction(connection,
+                "LOCK TABLE " + DEFAULT_PARTITION + " IN SHARE ROW EXCLUSIVE MODE",
+                "CREATE TABLE " + partition.name() + " (LIKE Sales INCLUDING DEFAULTS INCLUDING CONSTRAINTS)",
+                "WITH moved AS (DELETE FROM " + DEFAULT_PARTITION + range + " RETURNING *) " +
+                        "INSERT INTO " + partition.name() + " SELECT * FROM moved",
+                "ALTER TABLE Sales ATTACH PARTITION " + partition.name() +
+                        " FOR VALUES FROM ('" + partition.from() + "') TO ('" + partition.to() + "')");
+        System.out.println("Created sales partition " + partition.name());
+    }
+
+    private static int retire(Connection connection, Settings settings, LocalDate today) throws SQLException {
+        if (settings.retainMonths() == 0) {
+            return 0;
+        }
+        LocalDate cutoff = today.withDayOfMonth(1).minusMonths(settings.retainMonths());
+        int detached = 0;
+        for (Partition partition : partitions(connection)) {
+            if (partition.to().isAfter(cutoff)) {
+                continue;
+            }
+            String detach = "ALTER TABLE Sales DETACH PARTITION " + partition.name();
+            if (settings.dropDetached()) {
+                inTransaction(connection, detach, "DROP TABLE " + partition.name());
+                System.out.println("Dropped sales partition " + partition.name());
+            } else {
+                inTransaction(connection, detach,
+                        "CREATE SCHEMA IF NOT EXISTS " + ARCHIVE_SCHEMA,
+                        "ALTER TABLE " + partition.name() + " SET SCHEMA " + ARCHIVE_SCHEMA);
+                System.out.println("Archived sales partition " + partition.name());
+            }
+            detached++;
+        }
+        return detached;
+    }
+
+    /**
+     * Returns the attached range partitions; the default partition has no bounds and is left out.
+     */
+    private static List<Partition> partitions(Connection connection) throws SQLException {
+        List<Partition> partitions = new ArrayList<>();
+        try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_PARTITIONS_QUERY);
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            while (resultSet.next()) {
+                Matcher matcher = BOUNDS.matcher(resultSet.getString(2));
+                if (matcher.find()) {
+                    partitions.add(new Partition(resultSet.getString(1),
+                            LocalDate.parse(matcher.group(1)), LocalDate.parse(matcher.group(2))));
+                }
+            }
+        }
+        return partitions;
+    }
+
+    private static boolean isPartitioned(Connection connection) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(IS_PARTITIONED_QUERY);
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            return resultSet.next() && resultSet.getBoolean(1);
+        }
+    }
+
+    private static boolean tryLock(Connection connection) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+            preparedStatement.setLong(1, LOCK_KEY);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next() && resultSet.getBoolean(1);
+            }
+        }
+    }
+
+    private static void unlock(Connection connection) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+            preparedStatement.setLong(1, LOCK_KEY);
+            preparedStatement.execute();
+        }
+    }
+
+    private static void inTransaction(Connection connection, String... statements) throws SQLException {
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+}
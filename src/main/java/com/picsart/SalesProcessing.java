@@ -1,6 +1,8 @@
 package com.picsart;
 
-import java.sql.*;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.Map;
 
 /**
  * Utility class for processing sales and calculating total revenue in the Bookstore Management System.
@@ -9,164 +11,37 @@ public class SalesProcessing {
 
     /**
      * Processes a new sale transaction, updating stock quantity and recording the sale in the database.
+     * While the {@link SaleQueue} runs, the sale is committed together with other concurrent sales; while
+     * {@link JournaledSales} runs, it is acknowledged once journaled locally and written to the database later.
      *
-     * @param connection   The database connection.
      * @param customerId   The ID of the customer making the purchase.
      * @param bookId       The ID of the book being purchased.
      * @param dateOfSale   The date of the sale.
      * @param quantity     The quantity of books being purchased.
+     * @return The outcome of the sale.
      */
-    public static void processNewSale(Connection connection, int customerId, int bookId, Date dateOfSale, int quantity) {
-        try {
-            connection.setAutoCommit(false);
-
-            if (isStockAvailable(connection, bookId, quantity)) {
-
-                double totalPrice = calculateTotalPrice(connection, bookId, quantity);
-
-                updateStockQuantity(connection, bookId, quantity);
-
-                insertSaleRecord(connection, bookId, customerId, dateOfSale, quantity, totalPrice);
-
-                connection.commit();
-
-                System.out.println("Sale processed successfully. Total Price: $" + totalPrice);
-            } else {
-                System.out.println("Not enough stock available for the requested quantity.");
+    public static SaleResult processNewSale(int customerId, int bookId, Date dateOfSale, int quantity) {
+        try (Metrics.Scope ignored = Metrics.begin("SalesProcessing.processNewSale")) {
+            if (JournaledSales.isRunning()) {
+                return JournaledSales.sell(customerId, bookId, dateOfSale, quantity);
             }
-
-        } catch (SQLException e) {
-            try {
-                connection.rollback();
-            } catch (SQLException rollbackEx) {
-                System.out.println(e.getMessage());
+            if (SaleQueue.isRunning()) {
+                return SaleQueue.sell(customerId, bookId, dateOfSale, quantity);
             }
-            System.out.println(e.getSQLState());
-            System.out.println(e.getMessage());
-            System.out.println(e.getErrorCode());
+            return SaleEngine.sell(customerId, bookId, dateOfSale, quantity);
         }
     }
 
 
     /**
-     * Checks if there is sufficient stock available for a given book and quantity.
+     * Calculates the total revenue by genre.
      *
-     * @param connection The database connection.
-     * @param bookId     The ID of the book.
-     * @param quantity   The requested quantity.
-     * @return True if there is enough stock, false otherwise.
-     * @throws SQLException If a database access error occurs.
+     * @return Revenue per genre, sorted by genre.
+     * @throws SQLException If the totals have to be loaded and the query fails.
      */
-    private static boolean isStockAvailable(Connection connection, int bookId, int quantity) throws SQLException {
-        String selectQuery = "SELECT Books.QuantityInStock AS quantity_stock FROM Books WHERE BookID = ?";
-
-        try (PreparedStatement preparedStatement = connection.prepareStatement(selectQuery)) {
-            preparedStatement.setInt(1, bookId);
-
-            try (ResultSet resultSet = preparedStatement.executeQuery()) {
-                if (resultSet.next()) {
-                    int currentStock = resultSet.getInt("quantity_stock");
-                    return currentStock >= quantity;
-                }
-            }
+    public static Map<String, Double> calculateTotalRevenueByGenre() throws SQLException {
+        try (Metrics.Scope ignored = Metrics.begin("SalesProcessing.calculateTotalRevenueByGenre")) {
+            return GenreRevenue.revenueByGenre();
         }
-        return false;
-    }
-
-    /**
-     * Calculates the total price for a given book and quantity.
-     *
-     * @param connection The database connection.
-     * @param bookId     The ID of the book.
-     * @param quantity   The quantity of books.
-     * @return The total price for the purchase.
-     * @throws SQLException If a database access error occurs.
-     */
-    private static double calculateTotalPrice(Connection connection, int bookId, int quantity) throws SQLException {
-        String selectQuery = "SELECT Books.Price AS price FROM Books WHERE BookID = ?";
-
-        try (PreparedStatement preparedStatement = connection.prepareStatement(selectQuery)) {
-            preparedStatement.setInt(1, bookId);
-
-            try (ResultSet resultSet = preparedStatement.executeQuery()) {
-                if (resultSet.next()) {
-                    double unitPrice = resultSet.getDouble("price");
-                    return unitPrice * quantity;
-                }
-            }
-        }
-        return 0;
-    }
-
-    /**
-     * Updates the stock quantity of a given book after a successful sale.
-     *
-     * @param connection The database connection.
-     * @param bookId     The ID of the book.
-     * @param quantity   The quantity of books sold.
-     * @throws SQLException If a database access error occurs.
-     */
-    private static void updateStockQuantity(Connection connection, int bookId, int quantity) throws SQLException {
-        String updateQuery = "UPDATE Books SET QuantityInStock = QuantityInStock - ? WHERE BookID = ?";
-
-        try (PreparedStatement preparedStatement = connection.prepareStatement(updateQuery)) {
-            preparedStatement.setInt(1, quantity);
-            preparedStatement.setInt(2, bookId);
-
-            preparedStatement.executeUpdate();
-        }
-    }
-
-    /**
-     * Inserts a new sale record into the database.
-     *
-     * @param connection   The database connection.
-     * @param bookId       The ID of the book sold.
-     * @param customerId   The ID of the customer making the purchase.
-     * @param dateOfSale   The date of the sale.
-     * @param quantitySold The quantity of books sold.
-     * @param totalPrice   The total price of the sale.
-     * @throws SQLException If a database access error occurs.
-     */
-    private static void insertSaleRecord(Connection connection, int bookId, int customerId, Date dateOfSale, int quantitySold, double totalPrice) throws SQLException {
-        String insertQuery = "INSERT INTO Sales (BookID, CustomerID, DateOfSale, QuantitySold, TotalPrice) VALUES (?, ?, ?, ?, ?)";
-
-        try (PreparedStatement preparedStatement = connection.prepareStatement(insertQuery)) {
-            preparedStatement.setInt(1, bookId);
-            preparedStatement.setInt(2, customerId);
-            preparedStatement.setDate(3, dateOfSale);
-            preparedStatement.setInt(4, quantitySold);
-            preparedStatement.setDouble(5, totalPrice);
-
-            preparedStatement.executeUpdate();
-        }
-    }
-
-
-    /**
-     * Calculates and prints the total revenue by genre.
-     *
-     * @param connection The database connection.
-     */
-    public static void calculateTotalRevenueByGenre(Connection connection) {
-        String selectQuery = "SELECT Books.Genre AS genre, SUM(Sales.TotalPrice) AS total_revenue FROM Sales " +
-                "JOIN Books ON Sales.BookID = Books.BookID " +
-                "GROUP BY Books.Genre";
-
-        try (PreparedStatement preparedStatement = connection.prepareStatement(selectQuery);
-             ResultSet resultSet = preparedStatement.executeQuery()) {
-
-            while (resultSet.next()) {
-                String genre = resultSet.getString("genre");
-                double totalRevenue = resultSet.getDouble("total_revenue");
-                System.out.println("Genre: " + genre + ", Total Revenue: $" + totalRevenue);
-            }
-
-        } catch (SQLException e) {
-            System.out.println(e.getErrorCode());
-            System.out.println(e.getSQLState());
-            System.out.println(e.getMessage());
-        }
-
     }
 }
@@ -0,0 +1,36 @@
+package com.picsart;
+
+import java.time.LocalDate;
+
+/**
+ * Filter and page of the book sales report. Rows come ordered by sale ID, so the next page starts
+ * after the last sale ID of the previous one.
+ *
+ * @param from        First sale date to include, or null for no lower bound.
+ * @param to          First sale date to exclude, or null for no upper bound.
+ * @param afterSaleId Only sales with a greater ID are returned; 0 starts from the beginning.
+ * @param limit       Maximum number of rows, or 0 for no limit.
+ */
+public record SalesReportQuery(LocalDate from, LocalDate to, int afterSaleId, int limit) {
+
+    /**
+     * Every sale, without date bounds or limit.
+     */
+    public static SalesReportQuery all() {
+        return new SalesReportQuery(null, null, 0, 0);
+    }
+
+    /**
+     * Sales in the date range {@code [from, to)}.
+     */
+    public static SalesReportQuery between(LocalDate from, LocalDate to) {
+        return new SalesReportQuery(from, to, 0, 0);
+    }
+
+    /**
+     * The same filter limited to {@code limit} rows after the given sale.
+     */
+    public SalesReportQuery page(int afterSaleId, int limit) {
+        return new SalesReportQuery(from, to, afterSaleId, limit);
+    }
+}
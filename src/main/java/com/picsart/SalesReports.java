@@ -1,75 +1,208 @@
 package com.picsart;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
 
 /**
  * Utility class for generating sales reports in the Bookstore Management System.
  */
 public class SalesReports {
 
+    private static final boolean ASYNC_EXPORT = Configuration.load().getBoolean("report.async", true);
+
     /**
      * Generates a sales report for books, including sale ID, book title, customer name, and sale date.
      *
-     * @param connection The database connection.
+     * @param sink The destination of the rows; it is not closed.
+     * @return The number of rows written.
+     * @throws SQLException If a database access error occurs.
+     * @throws IOException  If the sink fails.
      */
-    public static void generateBookSalesReport(Connection connection) {
-        String selectQuery = "SELECT Sales.SaleID AS sale_id, Books.Title AS book_title, " +
-                "Customers.Name AS customer_name, " +
-                "Sales.DateOfSale AS sale_date " +
-                "FROM Sales " +
-                "JOIN Books ON Sales.BookID = Books.BookID " +
-                "JOIN Customers ON Sales.CustomerID = Customers.CustomerID";
-
-        try (PreparedStatement preparedStatement = connection.prepareStatement(selectQuery);
-             ResultSet resultSet = preparedStatement.executeQuery()) {
+    public static long generateBookSalesReport(SaleRowSink sink) throws SQLException, IOException {
+        return streamBookSalesReport(SalesReportQuery.all(), sink);
+    }
 
-            while (resultSet.next()) {
-                int saleId = resultSet.getInt("sale_id");
-                String bookTitle = resultSet.getString("book_title");
-                String customerName = resultSet.getString("customer_name");
-                String saleDate = resultSet.getString("sale_date");
+    /**
+     * Generates the book sales report for the sales of a period. Only the {@code Sales} partitions
+     * covering the period are read.
+     *
+     * @param firstDay The first day of the period.
+     * @param lastDay  The last day of the period, inclusive.
+     * @param sink     The destination of the rows; it is not closed.
+     * @return The number of rows written.
+     * @throws SQLException If a database access error occurs.
+     * @throws IOException  If the sink fails.
+     */
+    public static long generateBookSalesReport(LocalDate firstDay, LocalDate lastDay, SaleRowSink sink)
+            throws SQLException, IOException {
+        return streamBookSalesReport(SalesReportQuery.between(firstDay, lastDay.plusDays(1)), sink);
+    }
 
-                System.out.println("Sale ID: " + saleId +
-                        ", Book Title: " + bookTitle +
-                        ", Customer Name: " + customerName +
-                        ", Sale Date: " + saleDate);
+    /**
+     * Writes the book sales report to a file. With {@code report.async} rows are formatted and written
+     * on a background thread while the next ones are fetched.
+     *
+     * @param query  The date range and page to report.
+     * @param file   The file to create or overwrite.
+     * @param format The layout of the rows.
+     * @return The number of rows written.
+     * @throws SQLException If a database access error occurs.
+     * @throws IOException  If the file cannot be written.
+     */
+    public static long exportBookSalesReport(SalesReportQuery query, Path file, ReportFormat format)
+            throws SQLException, IOException {
+        try (Metrics.Scope ignored = Metrics.begin("SalesReports.exportBookSalesReport")) {
+            SaleRowSink writer = SaleRowSink.file(file, format);
+            try (SaleRowSink sink = ASYNC_EXPORT ? SaleRowSink.async(writer) : writer) {
+                return streamBookSalesReport(query, sink);
             }
+        }
+    }
 
-        } catch (SQLException e) {
-            System.out.println(e.getErrorCode());
-            System.out.println(e.getSQLState());
-            System.out.println(e.getMessage());
+    /**
+     * Streams the book sales report into a sink without holding the report in memory.
+     *
+     * @param query The date range and page to report.
+     * @param sink  The destination of the rows; it is not closed.
+     * @return The number of rows written.
+     * @throws SQLException If a database access error occurs.
+     * @throws IOException  If the sink fails.
+     */
+    public static long streamBookSalesReport(SalesReportQuery query, SaleRowSink sink) throws SQLException, IOException {
+        long rows = 0;
+        try (Metrics.Scope ignored = Metrics.begin("SalesReports.streamBookSalesReport");
+             Stream<SaleRow> stream = bookSales(query)) {
+            Iterator<SaleRow> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                sink.accept(iterator.next());
+                rows++;
+            }
+        } catch (UncheckedSQLException e) {
+            throw e.getCause();
         }
+        return rows;
     }
 
+    /**
+     * Returns the book sales report as a lazily fetched stream. The stream holds a pooled connection
+     * until it is closed, so it must be used in a try-with-resources block.
+     *
+     * @param query The date range and page to report.
+     * @return The report rows in sale ID order.
+     * @throws SQLException If the query cannot be started.
+     */
+    public static Stream<SaleRow> bookSales(SalesReportQuery query) throws SQLException {
+        return Repositories.sales().bookSales(query);
+    }
 
     /**
      * Generates a revenue report by genre, including genre and total revenue.
      *
-     * @param connection The database connection.
+     * @return Revenue per genre, sorted by genre.
+     * @throws SQLException If the totals have to be loaded and the query fails.
+     */
+    public static Map<String, Double> generateRevenueReportByGenre() throws SQLException {
+        try (Metrics.Scope ignored = Metrics.begin("SalesReports.generateRevenueReportByGenre")) {
+            return GenreRevenue.revenueByGenre();
+        }
+    }
+
+    /**
+     * Generates the revenue report by genre for the sales of a period. Unlike the all-time report it is
+     * computed by the database, reading only the {@code Sales} partitions covering the period.
+     *
+     * @param firstDay The first day of the period.
+     * @param lastDay  The last day of the period, inclusive.
+     * @return Revenue per genre, sorted by genre.
+     * @throws SQLException If a database access error occurs.
      */
-    public static void generateRevenueReportByGenre(Connection connection) {
-        String selectQuery = "SELECT Books.Genre AS genre, SUM(Sales.TotalPrice) AS total_revenue " +
-                "FROM Books " +
-                "JOIN Sales ON Books.BookID = Sales.BookID " +
-                "GROUP BY Books.Genre";
+    public static Map<String, Double> generateRevenueReportByGenre(LocalDate firstDay, LocalDate lastDay)
+            throws SQLException {
+        Map<String, Double> result = new TreeMap<>();
+        try (Metrics.Scope ignored = Metrics.begin("SalesReports.generateRevenueReportByGenrePeriod")) {
+            Repositories.sales().revenueCentsByGenre(firstDay, lastDay.plusDays(1))
+                    .forEach((genre, cents) -> result.put(genre, cents / 100.0));
+        }
+        return result;
+    }
 
-        try (PreparedStatement preparedStatement = connection.prepareStatement(selectQuery);
-             ResultSet resultSet = preparedStatement.executeQuery()) {
+    /**
+     * Returns the best-selling titles of the last hour, day or week, as tracked in memory by
+     * {@link Bestsellers}.
+     *
+     * @param window The window.
+     * @param limit  Maximum number of titles.
+     * @return The titles, most copies first; empty if the tracker is disabled.
+     */
+    public static List<Bestsellers.Bestseller> bestsellers(Bestsellers.Window window, int limit) {
+        return Bestsellers.top(window, limit);
+    }
 
-            while (resultSet.next()) {
-                String genre = resultSet.getString("genre");
-                double totalRevenue = resultSet.getDouble("total_revenue");
-                System.out.println("Genre: " + genre + ", Total Revenue: $" + totalRevenue);
-            }
+    /**
+     * Returns the titles selling fastest relative to their weekly average, as tracked by {@link Bestsellers}.
+     *
+     * @param limit Maximum number of titles.
+     * @return The titles, fastest rise first; empty if the tracker is disabled.
+     */
+    public static List<Bestsellers.Bestseller> trendingTitles(int limit) {
+        return Bestsellers.trending(limit);
+    }
+
+    /**
+     * Filters and groups sales in the in-memory snapshot kept by {@link SalesAnalytics}, without querying
+     * the database.
+     *
+     * @param query The grouping and filters.
+     * @return The groups, highest revenue first; empty if the snapshot is disabled or still loading.
+     */
+    public static List<SalesAnalytics.Group> analyzeSales(SalesAnalytics.Query query) {
+        try (Metrics.Scope ignored = Metrics.begin("SalesReports.analyzeSales")) {
+            return SalesAnalytics.query(query);
+        }
+    }
 
-        } catch (SQLException e) {
-            System.out.println(e.getErrorCode());
-            System.out.println(e.getSQLState());
-            System.out.println(e.getMessage());
+    /**
+     * Returns the sales of a period per day, week or month, in total or per genre. The numbers come from
+     * the daily rollups kept by {@link SalesRollups}, so the last {@code rollup.refreshSeconds} of sales
+     * may be missing and undated sales are left out.
+     *
+     * @param firstDay    The first day of the period.
+     * @param lastDay     The last day of the period, inclusive.
+     * @param granularity Length of the reported periods; the first and last week or month may be partial.
+     * @param byGenre     Whether to report every genre separately.
+     * @return The periods with sales, oldest first, then by genre.
+     * @throws SQLException If a database access error occurs.
+     */
+    public static List<SalesTrend> salesTrend(LocalDate firstDay, LocalDate lastDay,
+                                              SalesTrend.Granularity granularity, boolean byGenre)
+            throws SQLException {
+        try (Metrics.Scope ignored = Metrics.begin("SalesReports.salesTrend")) {
+            return Repositories.sales().salesTrend(firstDay, lastDay.plusDays(1), granularity, byGenre);
+        }
+    }
+
+    /**
+     * Returns the sales of one book in a period per day, week or month, from the daily rollups kept by
+     * {@link SalesRollups}.
+     *
+     * @param bookId      The ID of the book.
+     * @param firstDay    The first day of the period.
+     * @param lastDay     The last day of the period, inclusive.
+     * @param granularity Length of the reported periods.
+     * @return The periods with sales of the book, oldest first.
+     * @throws SQLException If a database access error occurs.
+     */
+    public static List<SalesTrend> bookSalesTrend(int bookId, LocalDate firstDay, LocalDate lastDay,
+                                                  SalesTrend.Granularity granularity) throws SQLException {
+        try (Metrics.Scope ignored = Metrics.begin("SalesReports.bookSalesTrend")) {
+            return Repositories.sales().bookSalesTrend(bookId, firstDay, lastDay.plusDays(1), granularity);
         }
     }
 }
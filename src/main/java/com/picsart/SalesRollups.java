@@ -0,0 +1,237 @@
+package com.picsart;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the daily sales rollups of {@code V7__add_sales_rollups.sql} up to date, so trend reports read
+ * one row per day and book or genre instead of every sale.
+ * <p>
+ * Each run of {@link #refresh} finds the days that need rolling up: the days of the sales added since
+ * the {@code SaleID} recorded by the previous run, less {@code rollup.idLookback} IDs to catch sales whose
+ * transactions committed late, plus the last {@code rollup.recentDays} days. Those days are recomputed
+ * from {@code Sales} one month at a time, by deleting their rollup rows and inserting fresh ones in one
+ * transaction, which also drops groups whose sales went away. The first run rolls up every day.
+ * <p>
+ * Days without new sales are never recomputed, so the rollups keep the history of partitions that
+ * {@link SalesPartitions} detached, and a book moved to another genre stays in its old genre for past
+ * days. A session-level advisory lock lets only one instance refresh at a time.
+ */
+public class SalesRollups {
+
+    /**
+     * Arbitrary key of the advisory lock held while the rollups are refreshed.
+     */
+    private static final long LOCK_KEY = 0x726f6c6c7570L;
+
+    private static final String HIGHEST_SALE_QUERY = "SELECT COALESCE(MAX(SaleID), 0) FROM Sales";
+    private static final String CHECKPOINT_QUERY = "SELECT LastSaleID FROM SalesRollupCheckpoint WHERE ID = 1";
+    private static final String UPDATE_CHECKPOINT = "UPDATE SalesRollupCheckpoint SET LastSaleID = ? WHERE ID = 1";
+    private static final String CHANGED_DAYS_QUERY =
+            "SELECT DISTINCT DateOfSale FROM Sales WHERE SaleID > ? AND DateOfSale IS NOT NULL";
+
+    /**
+     * The statements recomputing the days given as an array, bounded by the month holding them so only
+     * its partition of {@code Sales} is read.
+     */
+    private static final String DELETE_BOOK_ROLLUP =
+            "DELETE FROM SalesDailyBookRollup WHERE Day >= ? AND Day < ? AND Day = ANY(?)";
+    private static final String INSERT_BOOK_ROLLUP =
+            "INSERT INTO SalesDailyBookRollup (Day, BookID, Genre, SaleCount, Quantity, RevenueCents) " +
+                    "SELECT Sales.DateOfSale, COALESCE(Sales.BookID, 0), Books.Genre, COUNT(*), " +
+                    "SUM(Sales.QuantitySold), SUM(ROUND(Sales.TotalPrice::numeric * 100))::bigint " +
+                    "FROM Sales LEFT JOIN Books ON Sales.BookID = Books.BookID " +
+                    "WHERE Sales.DateOfSale >= ? AND Sales.DateOfSale < ? AND Sales.DateOfSale = ANY(?) " +
+                    "GROUP BY Sales.DateOfSale, COALESCE(Sales.BookID, 0), Books.Genre";
+    private static final String DELETE_GENRE_ROLLUP =
+            "DELETE FROM SalesDailyGenreRollup WHERE Day >= ? AND Day < ? AND Day = ANY(?)";
+    private static final String INSERT_GENRE_ROLLUP =
+            "INSERT INTO SalesDailyGenreRollup (Day, Genre, SaleCount, Quantity, RevenueCents) " +
+                    "SELECT Day, COALESCE(Genre, ''), SUM(SaleCount), SUM(Quantity), SUM(RevenueCents) " +
+                    "FROM SalesDailyBookRollup " +
+                    "WHERE Day >= ? AND Day < ? AND Day = ANY(?) " +
+                    "GROUP BY Day, COALESCE(Genre, '')";
+
+    private static ScheduledExecutorService scheduler;
+
+    /**
+     * Refresh settings.
+     *
+     * @param recentDays Days before today that are recomputed on every run, besides today.
+     * @param idLookback Sale IDs below the last recorded one whose days are recomputed again.
+     */
+    public record Settings(int recentDays, int idLookback) {
+
+        public Settings {
+            if (recentDays < 0 || idLookback < 0) {
+                throw new IllegalArgumentException("Invalid sales rollup settings");
+            }
+        }
+
+        static Settings from(Configuration configuration) {
+            return new Settings(
+                    configuration.getInt("rollup.recentDays", 2),
+                    configuration.getInt("rollup.idLookback", 10000));
+        }
+    }
+
+    /**
+     * Refreshes the rollups now and then every {@code rollup.refreshSeconds}, if {@code rollup.enabled}
+     * is set.
+     *
+     * @param configuration The application settings.
+     */
+    public static synchronized void start(Configuration configuration) {
+        if (scheduler != null || !configuration.getBoolean("rollup.enabled", true)) {
+            return;
+        }
+        Settings settings = Settings.from(configuration);
+        long refreshSeconds = Math.max(1, configuration.getLong("rollup.refreshSeconds", 300));
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sales-rollups");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try (Metrics.Scope ignored = Metrics.begin("SalesRollups.refresh")) {
+                refresh(settings, LocalDate.now());
+            } catch (SQLException e) {
+                System.out.println(e.getSQLState());
+                System.out.println(e.getMessage());
+            }
+        }, 0, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the scheduled refresh.
+     */
+    public static synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Recomputes the rollups of the days with new sales and of the recent days. Does nothing if another
+     * instance holds the refresh lock.
+     *
+     * @param settings The refresh settings.
+     * @param today    The current date.
+     * @return The number of days recomputed.
+     * @throws SQLException If a month cannot be rolled up; months done before are kept, and the next run
+     *                      recomputes all the days again.
+     */
+    public static int refresh(Settings settings, LocalDate today) throws SQLException {
+        try (Connection connection = DatabaseConnection.connection()) {
+            if (!tryLock(connection)) {
+                return 0;
+            }
+            try {
+                int highestSaleId = queryInt(connection, HIGHEST_SALE_QUERY);
+                int lastSaleId = queryInt(connection, CHECKPOINT_QUERY);
+                TreeSet<LocalDate> days = changedDays(connection, Math.max(0, lastSaleId - settings.idLookback()));
+                for (int i = 0; i <= settings.recentDays(); i++) {
+                    days.add(today.minusDays(i));
+                }
+
+                Map<LocalDate, List<LocalDate>> months = new TreeMap<>();
+                for (LocalDate day : days) {
+                    months.computeIfAbsent(day.withDayOfMonth(1), month -> new ArrayList<>()).add(day);
+                }
+                connection.setAutoCommit(false);
+                try {
+                    for (Map.Entry<LocalDate, List<LocalDate>> month : months.entrySet()) {
+                        rollUp(connection, month.getKey(), month.getValue());
+                        connection.commit();
+                    }
+                    try (PreparedStatement preparedStatement = connection.prepareStatement(UPDATE_CHECKPOINT)) {
+                        preparedStatement.setInt(1, Math.max(lastSaleId, highestSaleId));
+                        preparedStatement.executeUpdate();
+                    }
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+                return days.size();
+            } finally {
+                unlock(connection);
+            }
+        }
+    }
+
+    private static TreeSet<LocalDate> changedDays(Connection connection, int afterSaleId) throws SQLException {
+        TreeSet<LocalDate> days = new TreeSet<>();
+        try (PreparedStatement preparedStatement = connection.prepareStatement(CHANGED_DAYS_QUERY)) {
+            preparedStatement.setInt(1, afterSaleId);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    days.add(resultSet.getDate(1).toLocalDate());
+                }
+            }
+        }
+        return days;
+    }
+
+    /**
+     * Recomputes the book rollup of some days of one month, then the genre rollup from it.
+     */
+    private static void rollUp(Connection connection, LocalDate month, List<LocalDate> days) throws SQLException {
+        Date[] dates = new Date[days.size()];
+        for (int i = 0; i < dates.length; i++) {
+            dates[i] = Date.valueOf(days.get(i));
+        }
+        Array dayArray = connection.createArrayOf("date", dates);
+        try {
+            for (String statement : new String[]{DELETE_BOOK_ROLLUP, INSERT_BOOK_ROLLUP, DELETE_GENRE_ROLLUP, INSERT_GENRE_ROLLUP}) {
+                try (PreparedStatement preparedStatement = connection.prepareStatement(statement)) {
+                    preparedStatement.setDate(1, Date.valueOf(month));
+                    preparedStatement.setDate(2, Date.valueOf(month.plusMonths(1)));
+                    preparedStatement.setArray(3, dayArray);
+                    preparedStatement.executeUpdate();
+                }
+            }
+        } finally {
+            dayArray.free();
+        }
+    }
+
+    private static int queryInt(Connection connection, String query) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(query);
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+    }
+
+    private static boolean tryLock(Connection connection) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+            preparedStatement.setLong(1, LOCK_KEY);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next() && resultSet.getBoolean(1);
+            }
+        }
+    }
+
+    private static void unlock(Connection connection) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+            preparedStatement.setLong(1, LOCK_KEY);
+            preparedStatement.execute();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.picsart;
+
+import java.time.LocalDate;
+
+/**
+ * Sales of one period of a trend report, read from the daily rollups kept by {@link SalesRollups}.
+ *
+ * @param period       The first day of the period; weeks start on Monday.
+ * @param genre        The genre for trends by genre, otherwise null; empty for sales of deleted books.
+ * @param sales        Number of sales.
+ * @param copies       Copies sold.
+ * @param revenueCents Revenue in cents.
+ */
+public record SalesTrend(LocalDate period, String genre, long sales, long copies, long revenueCents) {
+
+    /**
+     * Length of the periods of a trend.
+     */
+    public enum Granularity {
+        DAY,
+        WEEK,
+        MONTH
+    }
+
+    public double revenue() {
+        return revenueCents / 100.0;
+    }
+}
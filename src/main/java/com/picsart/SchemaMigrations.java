@@ -0,0 +1,144 @@
+package com.picsart;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Brings the database schema up to date at startup.
+ * <p>
+ * Migrations are SQL scripts under {@code db/migration/} on the classpath, named
+ * {@code V<version>__<description>.sql} and listed in {@link #SCRIPTS} in the order they are applied.
+ * Each one runs in its own transaction and is recorded in the {@code SchemaVersion} table with a
+ * checksum; applied scripts are skipped, and a script changed after it was applied stops the startup.
+ * A transaction-level advisory lock keeps two instances starting at once from applying the same script.
+ */
+public class SchemaMigrations {
+
+    /**
+     * The migrations, oldest first. Never edit or reorder a released entry; add a new one instead.
+     */
+    static final List<String> SCRIPTS = List.of(
+            "V1__drop_double_stock_trigger.sql",
+            "V2__add_query_indexes.sql",
+            "V3__partition_sales_by_date.sql",
+            "V4__add_purchase_history_index.sql",
+            "V5__add_book_search_indexes.sql",
+            "V6__add_sale_journal.sql",
+            "V7__add_sales_rollups.sql",
+            "V8__add_stock_ledger_checkpoint.sql");
+
+    private static final String LOCATION = "db/migration/";
+
+    /**
+     * Arbitrary key of the advisory lock held while a migration is checked and applied.
+     */
+    private static final long LOCK_KEY = 0x626f6f6b73L;
+
+    private static final String CREATE_VERSION_TABLE =
+            "CREATE TABLE IF NOT EXISTS SchemaVersion (" +
+                    "Version INTEGER PRIMARY KEY, " +
+                    "Description TEXT NOT NULL, " +
+                    "Checksum BIGINT NOT NULL, " +
+                    "AppliedAt TIMESTAMPTZ NOT NULL DEFAULT now())";
+    private static final String LOCK_QUERY = "SELECT pg_advisory_xact_lock(?)";
+    private static final String SELECT_CHECKSUM_QUERY = "SELECT Checksum FROM SchemaVersion WHERE Version = ?";
+    private static final String INSERT_VERSION_QUERY =
+            "INSERT INTO SchemaVersion (Version, Description, Checksum) VALUES (?, ?, ?)";
+
+    /**
+     * Applies every migration the database has not seen yet.
+     *
+     * @return The number of migrations applied.
+     * @throws SQLException If a migration fails; it is rolled back and later ones are not run.
+     * @throws IOException  If a script cannot be read.
+     */
+    public static int migrate() throws SQLException, IOException {
+        int applied = 0;
+        try (Connection connection = DatabaseConnection.connection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(CREATE_VERSION_TABLE);
+            }
+            connection.setAutoCommit(false);
+            try {
+                for (String script : SCRIPTS) {
+                    if (apply(connection, script)) {
+                        applied++;
+                        System.out.println("Applied migration " + script);
+                    }
+                    connection.commit();
+                }
+            } catch (SQLException | IOException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Returns the version of the newest migration.
+     */
+    public static int latestVersion() {
+        return version(SCRIPTS.get(SCRIPTS.size() - 1));
+    }
+
+    private static boolean apply(Connection connection, String script) throws SQLException, IOException {
+        int version = version(script);
+        String sql = read(script);
+        CRC32 crc = new CRC32();
+        crc.update(sql.getBytes(StandardCharsets.UTF_8));
+        long checksum = crc.getValue();
+
+        try (PreparedStatement preparedStatement = connection.prepareStatement(LOCK_QUERY)) {
+            preparedStatement.setLong(1, LOCK_KEY);
+            preparedStatement.execute();
+        }
+        try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_CHECKSUM_QUERY)) {
+            preparedStatement.setInt(1, version);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (resultSet.next()) {
+                    if (resultSet.getLong(1) != checksum) {
+                        throw new SQLException("Migration " + script + " was changed after it was applied");
+                    }
+                    return false;
+                }
+            }
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+        try (PreparedStatement preparedStatement = connection.prepareStatement(INSERT_VERSION_QUERY)) {
+            preparedStatement.setInt(1, version);
+            preparedStatement.setString(2, description(script));
+            preparedStatement.setLong(3, checksum);
+            preparedStatement.executeUpdate();
+        }
+        return true;
+    }
+
+    private static String read(String script) throws IOException {
+        try (InputStream in = SchemaMigrations.class.getClassLoader().getResourceAsStream(LOCATION + script)) {
+            if (in == null) {
+                throw new IOException("Migration " + script + " is not on the classpath");
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static int version(String script) {
+        return Integer.parseInt(script.substring(1, script.indexOf("__")));
+    }
+
+    private static String description(String script) {
+        return script.substring(script.indexOf("__") + 2, script.length() - ".sql".length()).replace('_', ' ');
+    }
+}
@@ -0,0 +1,305 @@
+package com.picsart;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+
+/**
+ * One client connection of the {@link BookstoreServer}, run on its own virtual thread.
+ * <p>
+ * The client sends one command per line and every response ends with a line holding a single dot:
+ * <pre>
+ * HELP
+ * BOOKS GENRE|AUTHOR &lt;value&gt;
+ * SEARCH &lt;text&gt;
+ * SUGGEST &lt;prefix&gt;
+ * SELL &lt;customerId&gt; &lt;bookId&gt; &lt;quantity&gt; [yyyy-MM-dd]
+ * ORDER &lt;customerId&gt; &lt;bookId&gt;:&lt;quantity&gt; ...
+ * HISTORY &lt;customerId&gt; [&lt;afterDate|-&gt; &lt;afterSaleId&gt;]
+ * REVENUE [&lt;from&gt; &lt;to&gt;]
+ * REPORT [&lt;from&gt; &lt;to&gt;]
+ * BESTSELLERS
+ * ANALYZE &lt;dimension&gt;[,&lt;dimension&gt;] [&lt;from&gt; &lt;to&gt;]
+ * TREND DAY|WEEK|MONTH &lt;from&gt; &lt;to&gt; [GENRE|&lt;bookId&gt;]
+ * METRICS
+ * QUIT
+ * </pre>
+ * Results are printed by a {@link CLI} bound to the socket, so they read the same as on the console.
+ * A command holds one of the server's database permits only while it runs, never while the session
+ * waits for input.
+ */
+class ServerSession implements Runnable {
+
+    private static final String END_OF_RESPONSE = ".";
+    private static final ValidationDate DATE_VALIDATION = new ValidationDate();
+    private static final int HISTORY_PAGE_SIZE = Math.max(1, Configuration.load().getInt("history.pageSize", 20));
+    private static final int SEARCH_PAGE_SIZE = Math.max(1, Configuration.load().getInt("search.pageSize", 20));
+    private static final int SUGGESTIONS = 10;
+
+    private final Socket socket;
+    private final Semaphore databasePermits;
+    private final int idleTimeoutMillis;
+
+    ServerSession(Socket socket, Semaphore databasePermits, int idleTimeoutMillis) {
+        this.socket = socket;
+        this.databasePermits = databasePermits;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    @Override
+    public void run() {
+        try (Socket ignored = socket;
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8), 512);
+             PrintStream out = new PrintStream(
+                     new BufferedOutputStream(socket.getOutputStream(), 1024), false, StandardCharsets.UTF_8)) {
+            socket.setSoTimeout(idleTimeoutMillis);
+            socket.setTcpNoDelay(true);
+            CLI cli = new CLI(out);
+            out.println("Bookstore Management System. Type HELP for the list of commands.");
+            endResponse(out);
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] words = line.split("\\s+", 3);
+                String command = words[0].toUpperCase(Locale.ROOT);
+                if (command.equals("QUIT")) {
+                    out.println("Bye");
+                    endResponse(out);
+                    break;
+                }
+                try {
+                    execute(cli, out, command, line);
+                } catch (IllegalArgumentException e) {
+                    out.println("ERROR: " + e.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                endResponse(out);
+            }
+        } catch (SocketTimeoutException e) {
+            // idle session closed by the server
+        } catch (IOException e) {
+            // client went away
+        }
+    }
+
+    private void execute(CLI cli, PrintStream out, String command, String line) throws InterruptedException {
+        switch (command) {
+            case "HELP" -> printHelp(out);
+            case "BOOKS" -> {
+                String[] words = line.split("\\s+", 3);
+                if (words.length < 3 || !(words[1].equalsIgnoreCase("genre") || words[1].equalsIgnoreCase("author"))) {
+                    throw new IllegalArgumentException("Usage: BOOKS GENRE|AUTHOR <value>");
+                }
+                String searchBy = words[1].toLowerCase(Locale.ROOT);
+                withDatabase(cli, () -> cli.printBooks(searchBy, BooksManagement.listBooksByGenreOrAuthor(searchBy, words[2])));
+            }
+            case "SEARCH" -> {
+                String[] words = line.split("\\s+", 2);
+                if (words.length < 2) {
+                    throw new IllegalArgumentException("Usage: SEARCH <text>");
+                }
+                withDatabase(cli, () -> {
+                    BookSearchQuery query = BookSearchQuery.words(words[1], SEARCH_PAGE_SIZE);
+                    List<BookSearchHit> hits = BooksManagement.searchBooks(query);
+                    if (hits.isEmpty()) {
+                        hits = BooksManagement.searchBooks(query.withMode(BookSearchQuery.Mode.CONTAINS));
+                    }
+                    cli.printSearchHits(words[1], hits, true);
+                });
+            }
+            case "SUGGEST" -> {
+                String[] words = line.split("\\s+", 2);
+                if (words.length < 2) {
+                    throw new IllegalArgumentException("Usage: SUGGEST <prefix>");
+                }
+                if (BookTypeahead.isRunning()) {
+                    cli.printSuggestions(BookTypeahead.suggest(words[1], SUGGESTIONS));
+                } else {
+                    withDatabase(cli, () -> cli.printSuggestions(BooksManagement.suggestBooks(words[1], SUGGESTIONS)));
+                }
+            }
+            case "SELL" -> {
+                String[] words = line.split("\\s+");
+                if (words.length != 4 && words.length != 5) {
+                    throw new IllegalArgumentException("Usage: SELL <customerId> <bookId> <quantity> [yyyy-MM-dd]");
+                }
+                int customerId = Integer.parseInt(words[1]);
+                int bookId = Integer.parseInt(words[2]);
+                int quantity = Integer.parseInt(words[3]);
+                Date dateOfSale = words.length == 5 ? parseDate(words[4]) : Date.valueOf(LocalDate.now());
+                withDatabase(cli, () -> cli.printSaleResult(SalesProcessing.processNewSale(customerId, bookId, dateOfSale, quantity)));
+            }
+            case "ORDER" -> {
+                String[] words = line.split("\\s+");
+                if (words.length < 3) {
+                    throw new IllegalArgumentException("Usage: ORDER <customerId> <bookId>:<quantity> ...");
+                }
+                int customerId = Integer.parseInt(words[1]);
+                List<OrderLine> lines = new ArrayList<>(words.length - 2);
+                for (int i = 2; i < words.length; i++) {
+                    int separator = words[i].indexOf(':');
+                    if (separator < 0) {
+                        throw new IllegalArgumentException("Order lines are written as <bookId>:<quantity>");
+                    }
+                    lines.add(new OrderLine(
+                            Integer.parseInt(words[i].substring(0, separator)),
+                            Integer.parseInt(words[i].substring(separator + 1))));
+                }
+                Date dateOfSale = Date.valueOf(LocalDate.now());
+                withDatabase(cli, () -> cli.printOrderResult(OrderProcessing.placeOrder(customerId, dateOfSale, lines)));
+            }
+            case "HISTORY" -> {
+                String[] words = line.split("\\s+");
+                PurchaseHistoryPage.Cursor after;
+                if (words.length == 2) {
+                    after = null;
+                } else if (words.length == 4) {
+                    after = new PurchaseHistoryPage.Cursor(
+                            words[2].equals("-") ? null : parseDate(words[2]).toLocalDate(), Integer.parseInt(words[3]));
+                } else {
+                    throw new IllegalArgumentException("Usage: HISTORY <customerId> [<afterDate|-> <afterSaleId>]");
+                }
+                int customerId = Integer.parseInt(words[1]);
+                withDatabase(cli, () -> {
+                    PurchaseHistoryPage page = CustomerManagement.purchaseHistory(customerId, after, HISTORY_PAGE_SIZE);
+                    cli.printPurchaseHistory(page, after == null);
+                    if (page.next() != null) {
+                        out.println("More: HISTORY " + customerId + " " +
+                                (page.next().dateOfSale() == null ? "-" : page.next().dateOfSale()) + " " +
+                                page.next().saleId());
+                    }
+                });
+            }
+            case "REVENUE" -> {
+                String[] words = line.split("\\s+");
+                if (words.length == 1) {
+                    withDatabase(cli, cli::printRevenueByGenre);
+                } else if (words.length == 3) {
+                    LocalDate firstDay = parseDate(words[1]).toLocalDate();
+                    LocalDate lastDay = parseDate(words[2]).toLocalDate();
+                    withDatabase(cli, () -> cli.printRevenueByGenre(firstDay, lastDay));
+                } else {
+                    throw new IllegalArgumentException("Usage: REVENUE [<from> <to>]");
+                }
+            }
+            case "REPORT" -> {
+                String[] words = line.split("\\s+");
+                SalesReportQuery query;
+                if (words.length == 1) {
+                    query = SalesReportQuery.all();
+                } else if (words.length == 3) {
+                    query = SalesReportQuery.between(
+                            parseDate(words[1]).toLocalDate(), parseDate(words[2]).toLocalDate().plusDays(1));
+                } else {
+                    throw new IllegalArgumentException("Usage: REPORT [<from> <to>]");
+                }
+                withDatabase(cli, () -> cli.printBookSalesReport(query));
+            }
+            case "BESTSELLERS" -> cli.printBestsellers();
+            case "ANALYZE" -> {
+                String[] words = line.split("\\s+");
+                if (words.length != 2 && words.length != 4) {
+                    throw new IllegalArgumentException("Usage: ANALYZE <dimension>[,<dimension>] [<from> <to>]");
+                }
+                SalesAnalytics.Query query =
+                        new SalesAnalytics.Query(SalesAnalytics.Dimension.parse(words[1]), null, null, null, null, null);
+                if (words.length == 4) {
+                    query = query.between(
+                            parseDate(words[2]).toLocalDate(), parseDate(words[3]).toLocalDate().plusDays(1));
+                }
+                cli.printSalesAnalysis(query);
+            }
+            case "TREND" -> {
+                String[] words = line.split("\\s+");
+                if (words.length != 4 && words.length != 5) {
+                    throw new IllegalArgumentException("Usage: TREND DAY|WEEK|MONTH <from> <to> [GENRE|<bookId>]");
+                }
+                SalesTrend.Granularity granularity;
+                try {
+                    granularity = SalesTrend.Granularity.valueOf(words[1].toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Unknown period " + words[1] + ", use DAY, WEEK or MONTH");
+                }
+                LocalDate firstDay = parseDate(words[2]).toLocalDate();
+                LocalDate lastDay = parseDate(words[3]).toLocalDate();
+                if (words.length == 4) {
+                    withDatabase(cli, () -> cli.printSalesTrend(firstDay, lastDay, granularity, false));
+                } else if (words[4].equalsIgnoreCase("GENRE")) {
+                    withDatabase(cli, () -> cli.printSalesTrend(firstDay, lastDay, granularity, true));
+                } else {
+                    int bookId = Integer.parseInt(words[4]);
+                    withDatabase(cli, () -> cli.printBookSalesTrend(bookId, firstDay, lastDay, granularity));
+                }
+            }
+            case "METRICS" -> cli.printMetrics();
+            default -> throw new IllegalArgumentException("Unknown command " + command + ", type HELP.");
+        }
+    }
+
+    /**
+     * Runs database work while holding one of the server's permits.
+     */
+    private void withDatabase(CLI cli, DatabaseWork work) throws InterruptedException {
+        databasePermits.acquire();
+        try {
+            work.run();
+        } catch (SQLException e) {
+            cli.printError(e);
+        } finally {
+            databasePermits.release();
+        }
+    }
+
+    private static Date parseDate(String value) {
+        ValidationResult result = DATE_VALIDATION.validate(value);
+        if (!result.isValid()) {
+            throw new IllegalArgumentException("Invalid date " + value + ": " + result.message());
+        }
+        return Date.valueOf(value);
+    }
+
+    private static void printHelp(PrintStream out) {
+        out.println("BOOKS GENRE|AUTHOR <value>");
+        out.println("SEARCH <text>");
+        out.println("SUGGEST <prefix>");
+        out.println("SELL <customerId> <bookId> <quantity> [yyyy-MM-dd]");
+        out.println("ORDER <customerId> <bookId>:<quantity> ...");
+        out.println("HISTORY <customerId> [<afterDate|-> <afterSaleId>]");
+        out.println("REVENUE [<from> <to>]");
+        out.println("REPORT [<from> <to>]");
+        out.println("BESTSELLERS");
+        out.println("ANALYZE <dimension>[,<dimension>] [<from> <to>]");
+        out.println("TREND DAY|WEEK|MONTH <from> <to> [GENRE|<bookId>]");
+        out.println("METRICS");
+        out.println("QUIT");
+    }
+
+    private static void endResponse(PrintStream out) {
+        out.println(END_OF_RESPONSE);
+        out.flush();
+    }
+
+    @FunctionalInterface
+    private interface DatabaseWork {
+        void run() throws SQLException;
+    }
+}
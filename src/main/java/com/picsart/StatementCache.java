@@ -0,0 +1,190 @@
+package com.picsart;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prepared statements of one pooled connection, kept open across borrows.
+ * <p>
+ * {@code connection.prepareStatement(sql)} on a pooled connection returns the statement prepared the
+ * first time that SQL text was used on the same physical connection. Closing the returned statement
+ * clears its parameters and gives it back to the cache instead of closing it. Together with the driver's
+ * {@code prepareThreshold} this lets Postgres keep a named server-side plan per query and connection.
+ * <p>
+ * A statement that is already in use when the same SQL is prepared again, e.g. in a nested call, is
+ * served by a plain uncached statement. The cache is bounded and evicts the least recently used entry.
+ */
+public class StatementCache {
+
+    /**
+     * Hit, miss and eviction counts across all pooled connections.
+     *
+     * @param hits      Prepares served by a cached statement.
+     * @param misses    Prepares that had to create a statement.
+     * @param evictions Cached statements closed to make room.
+     */
+    public record Stats(long hits, long misses, long evictions) {
+
+        public double hitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final LongAdder EVICTIONS = new LongAdder();
+
+    private final Connection physical;
+    private final Map<String, CachedStatement> statements;
+
+    /**
+     * @param physical The physical connection that owns the statements.
+     * @param capacity Maximum number of cached statements.
+     */
+    StatementCache(Connection physical, int capacity) {
+        this.physical = physical;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= capacity) {
+                    return false;
+                }
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns the hit, miss and eviction counts of all statement caches.
+     */
+    public static Stats stats() {
+        return new Stats(HITS.sum(), MISSES.sum(), EVICTIONS.sum());
+    }
+
+    /**
+     * Returns a cached statement for the SQL text, preparing it on first use.
+     *
+     * @param sql The SQL text.
+     * @return A statement whose {@code close()} returns it to the cache.
+     * @throws SQLException If the statement cannot be prepared.
+     */
+    PreparedStatement prepare(String sql) throws SQLException {
+        CachedStatement cached = statements.get(sql);
+        if (cached != null) {
+            if (cached.inUse) {
+                MISSES.increment();
+                return (PreparedStatement) JdbcMetrics.statement(physical.prepareStatement(sql), PreparedStatement.class);
+            }
+            HITS.increment();
+            cached.inUse = true;
+            return cached.handle;
+        }
+
+        MISSES.increment();
+        cached = new CachedStatement(physical.prepareStatement(sql));
+        cached.inUse = true;
+        statements.put(sql, cached);
+        return cached.handle;
+    }
+
+    /**
+     * Takes back statements the last borrower did not close.
+     */
+    void releaseAll() {
+        for (CachedStatement cached : statements.values()) {
+            if (cached.inUse) {
+                cached.release();
+            }
+        }
+    }
+
+    /**
+     * A cached statement and the handle given to callers.
+     */
+    private static final class CachedStatement implements InvocationHandler {
+
+        private final PreparedStatement statement;
+        private final PreparedStatement handle;
+        private boolean inUse;
+        private boolean evicted;
+
+        CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+            this.handle = (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    this);
+        }
+
+        void evict() {
+            EVICTIONS.increment();
+            evicted = true;
+            if (!inUse) {
+                closeQuietly();
+            }
+        }
+
+        void release() {
+            inUse = false;
+            if (evicted) {
+                closeQuietly();
+                return;
+            }
+            try {
+                statement.clearParameters();
+                statement.clearBatch();
+                statement.setFetchSize(0);
+            } catch (SQLException e) {
+                evicted = true;
+                closeQuietly();
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (inUse) {
+                        release();
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return !inUse || statement.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Cached" + statement;
+                }
+                default -> {
+                }
+            }
+            if (!inUse) {
+                throw new SQLException("Statement is closed", "HY010");
+            }
+            return JdbcMetrics.invoke(statement, method, args);
+        }
+    }
+}
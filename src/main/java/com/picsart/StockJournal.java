@@ -0,0 +1,445 @@
+package com.picsart;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of the stock decrements granted by the {@link StockLedger} but not yet written
+ * to {@code Books}.
+ * <p>
+ * Each entry is a fixed 20-byte record: sequence number, book ID, quantity delta and a CRC32 of the
+ * first 16 bytes, so a record torn by a crash is recognised and ignored. Appends are forced to disk
+ * before the reservation is granted; concurrent appenders share one {@code force} call. An entry only
+ * counts towards the pending decrements once it is written and forced.
+ * <p>
+ * A failed write or {@code force} stops the journal: the segment is cut back to the entries already
+ * acknowledged, so neither the failed entry nor one behind it is replayed, and every later append fails
+ * until the ledger is restarted with a new journal.
+ * <p>
+ * A {@link #checkpoint()} hands the decrements accumulated so far to the flusher and starts a new
+ * segment file. Once the flusher has written them to the database, together with the sequence number
+ * of the last entry, the old segments are deleted.
+ */
+final class StockJournal implements AutoCloseable {
+
+    private static final int RECORD_SIZE = 20;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("stock-(\\d+)\\.journal");
+
+    /**
+     * A journal entry.
+     *
+     * @param sequence Position of the entry in the journal, increasing across segments.
+     * @param bookId   The ID of the book.
+     * @param delta    Copies taken from stock; negative when a reservation was given back.
+     */
+    record Entry(long sequence, int bookId, int delta) {
+    }
+
+    /**
+     * Decrements handed to the flusher.
+     *
+     * @param lastSequence Sequence number of the last entry covered.
+     * @param decrements   Net decrement per book.
+     * @param segments     Segment files holding the covered entries.
+     */
+    record Checkpoint(long lastSequence, Map<Integer, Integer> decrements, List<Segment> segments) {
+
+        boolean isEmpty() {
+            return decrements.isEmpty();
+        }
+
+        void sync() throws IOException {
+            for (Segment segment : segments) {
+                segment.syncAll();
+            }
+        }
+    }
+
+    private final Path directory;
+    private final boolean fsync;
+    private final ChannelOpener opener;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Condition settled = appendLock.newCondition();
+    private final ByteBuffer record = ByteBuffer.allocateDirect(RECORD_SIZE);
+    private final CRC32 crc = new CRC32();
+    private final List<Segment> retained = new ArrayList<>();
+    private Map<Integer, Integer> pending = new HashMap<>();
+    private Segment segment;
+    private int segmentNumber;
+    private long nextSequence;
+    private int unsynced;
+    private boolean rotating;
+    private IOException failure;
+
+    /**
+     * Opens the file of a new segment; replaced in tests to inject write failures.
+     */
+    interface ChannelOpener {
+        FileChannel open(Path path) throws IOException;
+    }
+
+    private StockJournal(Path directory, boolean fsync, int segmentNumber, long nextSequence, ChannelOpener opener)
+            throws IOException {
+        this.directory = directory;
+        this.fsync = fsync;
+        this.segmentNumber = segmentNumber;
+        this.nextSequence = nextSequence;
+        this.opener = opener;
+        this.segment = newSegment(segmentNumber);
+    }
+
+    /**
+     * Starts a new segment after the existing ones.
+     *
+     * @param directory    The journal directory.
+     * @param fsync        Whether appends are forced to disk before they return.
+     * @param nextSequence Sequence number of the first new entry.
+     * @return The open journal.
+     * @throws IOException If the segment cannot be created.
+     */
+    static StockJournal open(Path directory, boolean fsync, long nextSequence) throws IOException {
+        return open(directory, fsync, nextSequence, path -> FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+    }
+
+    static StockJournal open(Path directory, boolean fsync, long nextSequence, ChannelOpener opener) throws IOException {
+        Files.createDirectories(directory);
+        int last = 0;
+        for (Path path : segments(directory)) {
+            last = Math.max(last, segmentNumber(path));
+        }
+        return new StockJournal(directory, fsync, last + 1, nextSequence, opener);
+    }
+
+    /**
+     * Lists the segment files of a journal directory in the order they were written.
+     */
+    static List<Path> segments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> SEGMENT_NAME.matcher(path.getFileName().toString()).matches())
+                    .sorted((a, b) -> Integer.compare(segmentNumber(a), segmentNumber(b)))
+                    .toList();
+        }
+    }
+
+    /**
+     * Reads the intact entries of a segment, skipping corrupt records and ignoring a torn last one.
+     */
+    static void read(Path path, Consumer<Entry> consumer) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        CRC32 checksum = new CRC32();
+        while (buffer.remaining() >= RECORD_SIZE) {
+            int start = buffer.position();
+            long sequence = buffer.getLong();
+            int bookId = buffer.getInt();
+            int delta = buffer.getInt();
+            checksum.reset();
+            checksum.update(buffer.array(), start, RECORD_SIZE - 4);
+            if ((int) checksum.getValue() == buffer.getInt()) {
+                consumer.accept(new Entry(sequence, bookId, delta));
+            }
+        }
+    }
+
+    /**
+     * Appends an entry and, with fsync enabled, waits until it is on disk. The entry counts towards
+     * {@link #pending} only if this returns normally.
+     *
+     * @param bookId The ID of the book.
+     * @param delta  Copies taken from stock, negative to give them back.
+     * @throws IOException If the entry cannot be written or forced, or the journal has stopped after an
+     *                     earlier failure.
+     */
+    void append(int bookId, int delta) throws IOException {
+        Segment target;
+        long end;
+        appendLock.lock();
+        try {
+            while (rotating) {
+                settled.awaitUninterruptibly();
+            }
+            if (failure != null) {
+                throw new IOException("Stock journal stopped after a failed write: " + failure.getMessage(), failure);
+            }
+            long sequence = nextSequence;
+            crc.reset();
+            record.clear();
+            record.putLong(sequence).putInt(bookId).putInt(delta).flip();
+            crc.update(record);
+            record.limit(RECORD_SIZE).position(RECORD_SIZE - 4);
+            record.putInt((int) crc.getValue()).flip();
+            target = segment;
+            try {
+                end = target.write(record);
+            } catch (IOException e) {
+                fail(target, e);
+                throw e;
+            }
+            nextSequence = sequence + 1;
+            if (!fsync) {
+                count(bookId, delta);
+                return;
+            }
+            unsynced++;
+        } finally {
+            appendLock.unlock();
+        }
+
+        IOException syncFailure = null;
+        try {
+            target.sync(end);
+        } catch (IOException e) {
+            syncFailure = e;
+        }
+        appendLock.lock();
+        try {
+            if (syncFailure == null) {
+                count(bookId, delta);
+            } else {
+                fail(target, syncFailure);
+            }
+            if (--unsynced == 0) {
+                settled.signalAll();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+        if (syncFailure != null) {
+            throw syncFailure;
+        }
+    }
+
+    private void count(int bookId, int delta) {
+        pending.merge(bookId, delta, (a, b) -> a + b == 0 ? null : a + b);
+    }
+
+    /**
+     * Stops the journal after a failed write or force and cuts the segment back to the entries already
+     * acknowledged. Called under the append lock.
+     */
+    private void fail(Segment target, IOException e) {
+        if (failure == null) {
+            failure = e;
+            System.out.println("Stock journal stopped, restart the stock ledger: " + e.getMessage());
+        }
+        try {
+            target.truncate(fsync);
+        } catch (IOException truncateFailure) {
+            System.out.println("Stock journal could not be cut back: " + truncateFailure.getMessage());
+        }
+    }
+
+    /**
+     * Returns the net decrement of a book that has not been handed to the flusher yet.
+     */
+    int pending(int bookId) {
+        appendLock.lock();
+        try {
+            return pending.getOrDefault(bookId, 0);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Takes the pending decrements and switches to a new segment.
+     *
+     * @return The decrements to flush; empty if nothing was appended since the last checkpoint.
+     * @throws IOException If the new segment cannot be created.
+     */
+    Checkpoint checkpoint() throws IOException {
+        appendLock.lock();
+        try {
+            rotating = true;
+            while (unsynced > 0) {
+                settled.awaitUninterruptibly();
+            }
+            if (segment.size() == 0 && retained.isEmpty()) {
+                return new Checkpoint(nextSequence - 1, Map.of(), List.of());
+            }
+            Segment next = newSegment(segmentNumber + 1);
+            List<Segment> segments = new ArrayList<>(retained);
+            segments.add(segment);
+            retained.clear();
+            Checkpoint checkpoint = new Checkpoint(nextSequence - 1, pending, segments);
+            pending = new HashMap<>();
+            segment = next;
+            segmentNumber++;
+            return checkpoint;
+        } finally {
+            rotating = false;
+            settled.signalAll();
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Gives a checkpoint that could not be written back to the journal, to be retried with the next one.
+     */
+    void restore(Checkpoint checkpoint) {
+        appendLock.lock();
+        try {
+            checkpoint.decrements().forEach((bookId, delta) ->
+                    pending.merge(bookId, delta, (a, b) -> a + b == 0 ? null : a + b));
+            retained.addAll(0, checkpoint.segments());
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the segments of a checkpoint that has been written to the database.
+     */
+    void complete(Checkpoint checkpoint) throws IOException {
+        for (Segment covered : checkpoint.segments()) {
+            covered.delete();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            segment.close();
+            for (Segment covered : retained) {
+                covered.close();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private Segment newSegment(int number) throws IOException {
+        return new Segment(directory.resolve("stock-" + number + ".journal"), opener);
+    }
+
+    private static int segmentNumber(Path path) {
+        Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+        return matcher.matches() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
+    /**
+     * One journal file. Writes happen under the journal's append lock; forcing has its own lock so that
+     * one thread's {@code force} covers every record written before it started.
+     */
+    static final class Segment {
+
+        private final Path path;
+        private final FileChannel channel;
+        private final ReentrantLock syncLock = new ReentrantLock();
+        private volatile long written;
+        private long synced;
+        private boolean closed;
+        private boolean failed;
+
+        Segment(Path path, ChannelOpener opener) throws IOException {
+            this.path = path;
+            this.channel = opener.open(path);
+        }
+
+        long size() {
+            return written;
+        }
+
+        /**
+         * Writes a record and returns the file size after it. The size only moves once the whole record
+         * is written.
+         */
+        long write(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            written += RECORD_SIZE;
+            return written;
+        }
+
+        /**
+         * Forces the file at least up to the given size.
+         *
+         * @throws IOException If the force fails, or the size is not forced yet and the segment is closed
+         *                     or cut back after a failure.
+         */
+        void sync(long upTo) throws IOException {
+            syncLock.lock();
+            try {
+                if (synced >= upTo) {
+                    return;
+                }
+                if (closed) {
+                    throw new IOException("Stock journal segment " + path.getFileName() + " is closed");
+                }
+                if (failed) {
+                    throw new IOException("Stock journal segment " + path.getFileName() + " failed");
+                }
+                long target = written;
+                try {
+                    channel.force(false);
+                } catch (IOException e) {
+                    failed = true;
+                    throw e;
+                }
+                synced = target;
+            } finally {
+                syncLock.unlock();
+            }
+        }
+
+        /**
+         * Cuts the file back after a failure: to the forced size when appends wait for the force, since
+         * no later record was acknowledged, otherwise to the last complete record.
+         */
+        void truncate(boolean toSynced) throws IOException {
+            syncLock.lock();
+            try {
+                failed = true;
+                if (toSynced) {
+                    written = synced;
+                }
+                channel.truncate(written);
+                channel.force(false);
+                synced = written;
+            } finally {
+                syncLock.unlock();
+            }
+        }
+
+        void syncAll() throws IOException {
+            sync(written);
+        }
+
+        void close() throws IOException {
+            syncLock.lock();
+            try {
+                if (!closed) {
+                    closed = true;
+                    channel.close();
+                }
+            } finally {
+                syncLock.unlock();
+            }
+        }
+
+        void delete() throws IOException {
+            close();
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,527 @@
+package com.picsart;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory stock reservations, so that selling a hot title does not queue on its {@code Books} row.
+ * <p>
+ * The first reservation of a book hydrates a {@link StripedStock} counter from
+ * {@code Books.QuantityInStock}; after that sales are granted or denied from memory. Every granted
+ * reservation is first appended to the {@link StockJournal} and forced to disk. A background flusher
+ * periodically sums the journaled decrements per book and applies them to {@code Books} in one
+ * transaction, together with the sequence number of the last applied entry in
+ * {@code StockLedgerCheckpoint}, created by {@code V8__add_stock_ledger_checkpoint.sql}. On start,
+ * entries after that sequence number are replayed, so a crash loses no decrement and applies none
+ * twice.
+ * <p>
+ * The ledger must be the only writer of stock. While it runs it holds a session-level advisory lock on
+ * a dedicated connection, so a second instance with {@code stock.ledger.enabled} refuses to start, and
+ * instances selling through SQL take the same lock shared in each sale transaction (see
+ * {@link #lockOut}), so they refuse to sell while a ledger runs elsewhere. If the lock connection drops,
+ * the lock is gone until the ledger is restarted. Direct stock changes such as book updates and imports
+ * go through {@link #directUpdate}.
+ * <p>
+ * Decrements are applied without clamping: should stock still go negative, the {@code CHECK} on
+ * {@code QuantityInStock} fails the flush and it is reported and retried instead of being zeroed.
+ */
+public class StockLedger {
+
+    /**
+     * Outcome of a reservation.
+     */
+    public enum Outcome {
+        RESERVED,
+        INSUFFICIENT_STOCK,
+        BOOK_NOT_FOUND
+    }
+
+    /**
+     * Pass to {@link #directUpdate} when any book may change.
+     */
+    public static final int ALL_BOOKS = -1;
+
+    /**
+     * Arbitrary key of the advisory lock held while a ledger runs.
+     */
+    static final long LOCK_KEY = 0x73746f636bL;
+
+    /**
+     * Error of a sale refused because another instance's ledger owns the stock.
+     */
+    static final String RUNNING_ELSEWHERE = "Stock is managed by the stock ledger of another instance";
+
+    private static final String SELECT_CHECKPOINT =
+            "SELECT LastSequence FROM StockLedgerCheckpoint WHERE ID = 1";
+    private static final String UPDATE_CHECKPOINT =
+            "UPDATE StockLedgerCheckpoint SET LastSequence = ? WHERE ID = 1";
+    private static final String DECREMENT_STOCK =
+            "UPDATE Books SET QuantityInStock = QuantityInStock - ? WHERE BookID = ?";
+
+    private static final Map<Integer, StripedStock> STOCK = new ConcurrentHashMap<>();
+
+    /**
+     * Serialises flushes, hydration and direct updates: a counter is only hydrated while no decrement
+     * is on its way to the database, so {@code QuantityInStock} minus the journal's pending decrement
+     * is exact.
+     */
+    private static final ReentrantLock FLUSH_LOCK = new ReentrantLock();
+
+    /**
+     * Held shared by reservations, releases, flushes and direct updates and exclusively while starting or
+     * stopping, so none of them sees the journal closed under it. Taken before {@link #FLUSH_LOCK}.
+     */
+    private static final ReentrantReadWriteLock LIFECYCLE = new ReentrantReadWriteLock();
+
+    private static volatile StockJournal journal;
+    private static Connection lockConnection;
+    private static ScheduledExecutorService flusher;
+    private static int stripes;
+
+    /**
+     * Takes the ledger lock, replays the journal and starts granting reservations from memory.
+     *
+     * @param configuration The application configuration.
+     * @throws SQLException If another instance runs a ledger or sells through SQL right now, or if
+     *                      recovery cannot update the database.
+     * @throws IOException  If the journal cannot be read or created.
+     */
+    public static void start(Configuration configuration) throws SQLException, IOException {
+        LIFECYCLE.writeLock().lock();
+        try {
+            startLocked(configuration);
+        } finally {
+            LIFECYCLE.writeLock().unlock();
+        }
+    }
+
+    private static void startLocked(Configuration configuration) throws SQLException, IOException {
+        if (journal != null) {
+            return;
+        }
+        Path directory = Path.of(configuration.get("stock.journal.dir", "stock-journal"));
+        stripes = Integer.highestOneBit(Math.max(1,
+                configuration.getInt("stock.stripes", Math.min(Runtime.getRuntime().availableProcessors(), 16))));
+
+        lockConnection = DatabaseConnection.pool().openDedicated();
+        try {
+            if (!tryLock(lockConnection)) {
+                throw new SQLException("Stock ledger not started: another instance holds the stock ledger lock "
+                        + "or is selling through SQL", "55P03");
+            }
+            long lastSequence = recover(directory);
+            journal = StockJournal.open(directory, configuration.getBoolean("stock.journal.fsync", true), lastSequence + 1);
+        } catch (SQLException | IOException | RuntimeException e) {
+            closeLockConnection();
+            throw e;
+        }
+
+        long flushIntervalMillis = configuration.getLong("stock.flushIntervalMillis", 200);
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-ledger-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (SQLException e) {
+                System.out.println(e.getSQLState());
+                System.out.println(e.getMessage());
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+        }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Waits for the reservations in progress, stops the flusher, writes the remaining decrements and
+     * closes the journal. Later reservations and releases fail.
+     */
+    public static void stop() {
+        LIFECYCLE.writeLock().lock();
+        try {
+            if (journal == null) {
+                return;
+            }
+            flusher.shutdownNow();
+            flusher = null;
+            try {
+                flush();
+            } catch (SQLException e) {
+                System.out.println(e.getSQLState());
+                System.out.println(e.getMessage());
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+            journal = null;
+            STOCK.clear();
+            closeLockConnection();
+        } finally {
+            LIFECYCLE.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Keeps other instances' ledgers from starting until the caller's transaction ends, or fails if one
+     * runs. Sales that write stock through SQL call this inside their transaction first.
+     *
+     * @param connection A connection inside the sale transaction.
+     * @throws SQLException If a ledger runs on another instance, or the lock cannot be queried.
+     */
+    static void lockOut(Connection connection) throws SQLException {
+        try (PreparedStatement preparedStatement =
+                     connection.prepareStatement("SELECT pg_try_advisory_xact_lock_shared(?)")) {
+            preparedStatement.setLong(1, LOCK_KEY);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (!resultSet.next() || !resultSet.getBoolean(1)) {
+                    throw new SQLException(RUNNING_ELSEWHERE, "55P03");
+                }
+            }
+        }
+    }
+
+    private static boolean tryLock(Connection connection) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+            preparedStatement.setLong(1, LOCK_KEY);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next() && resultSet.getBoolean(1);
+            }
+        }
+    }
+
+    /**
+     * Closes the lock connection, which releases the lock.
+     */
+    private static void closeLockConnection() {
+        if (lockConnection == null) {
+            return;
+        }
+        try {
+            lockConnection.close();
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        lockConnection = null;
+    }
+
+    public static boolean isRunning() {
+        return journal != null;
+    }
+
+    /**
+     * Takes copies of a book from stock. The decrement is journaled before this returns and reaches
+     * {@code Books} with the next flush.
+     *
+     * @param bookId   The ID of the book.
+     * @param quantity The number of copies, positive.
+     * @return Whether the copies were reserved.
+     * @throws SQLException If the book has to be hydrated and the query fails.
+     * @throws IOException  If the journal cannot be written or the ledger is stopped; nothing is reserved
+     *                      then.
+     */
+    public static Outcome reserve(int bookId, int quantity) throws SQLException, IOException {
+        LIFECYCLE.readLock().lock();
+        try {
+            StockJournal current = runningJournal();
+            while (true) {
+                StripedStock stock = counter(current, bookId);
+                if (stock == null) {
+                    return Outcome.BOOK_NOT_FOUND;
+                }
+                stock.enter();
+                try {
+                    if (stock.retired()) {
+                        continue;
+                    }
+                    if (!stock.tryReserve(quantity)) {
+                        return Outcome.INSUFFICIENT_STOCK;
+                    }
+                    try {
+                        current.append(bookId, quantity);
+                    } catch (IOException e) {
+                        stock.release(quantity);
+                        throw e;
+                    }
+                    return Outcome.RESERVED;
+                } finally {
+                    stock.exit();
+                }
+            }
+        } finally {
+            LIFECYCLE.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gives back copies reserved by a sale that could not be recorded.
+     *
+     * @param bookId   The ID of the book.
+     * @param quantity The number of copies reserved.
+     * @throws SQLException If the book has to be hydrated and the query fails.
+     * @throws IOException  If the journal cannot be written or the ledger is stopped.
+     */
+    public static void release(int bookId, int quantity) throws SQLException, IOException {
+        LIFECYCLE.readLock().lock();
+        try {
+            StockJournal current = runningJournal();
+            while (true) {
+                StripedStock stock = counter(current, bookId);
+                if (stock == null) {
+                    return;
+                }
+                stock.enter();
+                try {
+                    if (stock.retired()) {
+                        continue;
+                    }
+                    current.append(bookId, -quantity);
+                    stock.release(quantity);
+                    return;
+                } finally {
+                    stock.exit();
+                }
+            }
+        } finally {
+            LIFECYCLE.readLock().unlock();
+        }
+    }
+
+    private static StockJournal runningJournal() throws IOException {
+        StockJournal current = journal;
+        if (current == null) {
+            throw new IOException("The stock ledger is not running");
+        }
+        return current;
+    }
+
+    /**
+     * Writes the journaled decrements to {@code Books}.
+     *
+     * @throws SQLException If the database update fails; the decrements are kept for the next flush.
+     * @throws IOException  If the journal cannot be forced or rotated.
+     */
+    public static void flush() throws SQLException, IOException {
+        LIFECYCLE.readLock().lock();
+        try {
+            StockJournal current = journal;
+            if (current != null) {
+                flush(current);
+            }
+        } finally {
+            LIFECYCLE.readLock().unlock();
+        }
+    }
+
+    private static void flush(StockJournal current) throws SQLException, IOException {
+        FLUSH_LOCK.lock();
+        try {
+            StockJournal.Checkpoint checkpoint = current.checkpoint();
+            if (checkpoint.segments().isEmpty()) {
+                return;
+            }
+            if (!checkpoint.isEmpty()) {
+                try {
+                    checkpoint.sync();
+                    try (Connection connection = DatabaseConnection.connection()) {
+                        apply(connection, checkpoint.decrements(), checkpoint.lastSequence());
+                    }
+                } catch (SQLException | IOException e) {
+                    current.restore(checkpoint);
+                    throw e;
+                }
+            }
+            current.complete(checkpoint);
+        } finally {
+            FLUSH_LOCK.unlock();
+        }
+    }
+
+    /**
+     * Gets the ledger out of the way of a change that sets {@code Books.QuantityInStock} directly. The
+     * affected counters are retired and their decrements flushed; closing the returned handle lets
+     * them be hydrated again from the new value. Reservations of those books wait meanwhile.
+     * <pre>
+     * try (StockLedger.DirectUpdate ignored = StockLedger.directUpdate(bookId)) {
+     *     // UPDATE Books ...
+     * }
+     * </pre>
+     *
+     * @param bookId The ID of the book about to change, or {@link #ALL_BOOKS}.
+     * @return The handle to close once the change is committed.
+     * @throws SQLException If pending decrements cannot be flushed.
+     */
+    public static DirectUpdate directUpdate(int bookId) throws SQLException {
+        LIFECYCLE.readLock().lock();
+        if (!isRunning()) {
+            LIFECYCLE.readLock().unlock();
+            return new DirectUpdate(List.of(), false);
+        }
+        FLUSH_LOCK.lock();
+        List<Integer> bookIds = bookId == ALL_BOOKS ? List.copyOf(STOCK.keySet()) : List.of(bookId);
+        DirectUpdate update = new DirectUpdate(bookIds, true);
+        try {
+            for (Integer id : bookIds) {
+                StripedStock stock = STOCK.get(id);
+                if (stock != null) {
+                    stock.retire();
+                }
+            }
+            flush();
+        } catch (SQLException | RuntimeException e) {
+            update.close();
+            throw e;
+        } catch (IOException e) {
+            update.close();
+            throw new UncheckedIOException(e);
+        }
+        return update;
+    }
+
+    /**
+     * Handle of a {@link #directUpdate}.
+     */
+    public static final class DirectUpdate implements AutoCloseable {
+
+        private final List<Integer> bookIds;
+        private boolean locked;
+
+        private DirectUpdate(List<Integer> bookIds, boolean locked) {
+            this.bookIds = bookIds;
+            this.locked = locked;
+        }
+
+        @Override
+        public void close() {
+            if (!locked) {
+                return;
+            }
+            locked = false;
+            for (Integer id : bookIds) {
+                STOCK.computeIfPresent(id, (key, stock) -> stock.retired() ? null : stock);
+            }
+            FLUSH_LOCK.unlock();
+            LIFECYCLE.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the available quantity the ledger holds for a book, or -1 if it is not hydrated.
+     */
+    public static int available(int bookId) {
+        StripedStock stock = STOCK.get(bookId);
+        return stock == null || stock.retired() ? -1 : stock.available();
+    }
+
+    /**
+     * Returns the live counter of a book, hydrating it if needed.
+     *
+     * @return The counter, or null if the book does not exist.
+     */
+    private static StripedStock counter(StockJournal current, int bookId) throws SQLException {
+        StripedStock stock = STOCK.get(bookId);
+        if (stock != null && !stock.retired()) {
+            return stock;
+        }
+        FLUSH_LOCK.lock();
+        try {
+            stock = STOCK.get(bookId);
+            if (stock != null && !stock.retired()) {
+                return stock;
+            }
+            Optional<Book> book = Repositories.books().findById(bookId);
+            if (book.isEmpty()) {
+                return null;
+            }
+            stock = new StripedStock(stripes, book.get().quantityInStock() - current.pending(bookId));
+            STOCK.put(bookId, stock);
+            return stock;
+        } finally {
+            FLUSH_LOCK.unlock();
+        }
+    }
+
+    /**
+     * Applies decrements and records the last applied journal entry in one transaction.
+     */
+    private static void apply(Connection connection, Map<Integer, Integer> decrements, long lastSequence)
+            throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            try (PreparedStatement preparedStatement = connection.prepareStatement(DECREMENT_STOCK)) {
+                for (Map.Entry<Integer, Integer> decrement : decrements.entrySet()) {
+                    preparedStatement.setInt(1, decrement.getValue());
+                    preparedStatement.setInt(2, decrement.getKey());
+                    preparedStatement.addBatch();
+                }
+                preparedStatement.executeBatch();
+            }
+            try (PreparedStatement preparedStatement = connection.prepareStatement(UPDATE_CHECKPOINT)) {
+                preparedStatement.setLong(1, lastSequence);
+                preparedStatement.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * Applies the journal entries the database has not seen and deletes the old segments.
+     *
+     * @return The sequence number of the last entry known to the database.
+     */
+    private static long recover(Path directory) throws SQLException, IOException {
+        try (Connection connection = DatabaseConnection.connection()) {
+            long checkpoint;
+            try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_CHECKPOINT);
+                 ResultSet resultSet = preparedStatement.executeQuery()) {
+                resultSet.next();
+                checkpoint = resultSet.getLong(1);
+            }
+
+            List<Path> segments = StockJournal.segments(directory);
+            Map<Integer, Integer> decrements = new HashMap<>();
+            long[] lastSequence = {checkpoint};
+            for (Path segment : segments) {
+                StockJournal.read(segment, entry -> {
+                    if (entry.sequence() > checkpoint) {
+                        decrements.merge(entry.bookId(), entry.delta(), Integer::sum);
+                        lastSequence[0] = Math.max(lastSequence[0], entry.sequence());
+                    }
+                });
+            }
+            if (lastSequence[0] > checkpoint) {
+                decrements.values().removeIf(delta -> delta == 0);
+                apply(connection, decrements, lastSequence[0]);
+                System.out.println("Stock ledger recovered " + (lastSequence[0] - checkpoint) + " journal entries");
+            }
+            for (Path segment : segments) {
+                Files.delete(segment);
+            }
+            return lastSequence[0];
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.picsart;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Available quantity of one book, split over several counters so that concurrent reservations of a
+ * hot title rarely touch the same cache line.
+ * <p>
+ * A reservation takes its quantity from one stripe with a compare-and-set. Only when no single stripe
+ * holds enough does it lock the book, gather all stripes and spread the remainder back. Every copy is
+ * in exactly one stripe or in the hands of that gathering thread, so the stripes together can never
+ * grant more than was hydrated.
+ */
+final class StripedStock {
+
+    /**
+     * Ints per 64-byte cache line; stripe {@code i} lives at index {@code i * PAD}.
+     */
+    private static final int PAD = 16;
+
+    private final AtomicIntegerArray cells;
+    private final int stripes;
+    private final ReentrantLock gatherLock = new ReentrantLock();
+    private final LongAdder inFlight = new LongAdder();
+    private volatile boolean retired;
+
+    /**
+     * @param stripes  Number of counters, a power of two.
+     * @param quantity The available quantity.
+     */
+    StripedStock(int stripes, int quantity) {
+        this.stripes = stripes;
+        this.cells = new AtomicIntegerArray(stripes * PAD);
+        spread(Math.max(quantity, 0));
+    }
+
+    /**
+     * Takes the quantity if enough is available.
+     *
+     * @param quantity The quantity to reserve.
+     * @return True if it was reserved.
+     */
+    boolean tryReserve(int quantity) {
+        int start = ThreadLocalRandom.current().nextInt(stripes);
+        for (int i = 0; i < stripes; i++) {
+            int index = ((start + i) & (stripes - 1)) * PAD;
+            int available = cells.get(index);
+            while (available >= quantity) {
+                int witness = cells.compareAndExchange(index, available, available - quantity);
+                if (witness == available) {
+                    return true;
+                }
+                available = witness;
+            }
+        }
+        return gatherAndReserve(quantity);
+    }
+
+    /**
+     * Gives back a reserved quantity.
+     */
+    void release(int quantity) {
+        cells.addAndGet(ThreadLocalRandom.current().nextInt(stripes) * PAD, quantity);
+    }
+
+    int available() {
+        int total = 0;
+        for (int i = 0; i < stripes; i++) {
+            total += cells.get(i * PAD);
+        }
+        return total;
+    }
+
+    /**
+     * Marks a reservation or release as running; see {@link #retire()}.
+     */
+    void enter() {
+        inFlight.increment();
+    }
+
+    void exit() {
+        inFlight.decrement();
+    }
+
+    boolean retired() {
+        return retired;
+    }
+
+    /**
+     * Stops new reservations and waits for running ones to finish, after which the counter is no
+     * longer used and can be replaced by one hydrated from the database.
+     */
+    void retire() {
+        retired = true;
+        while (inFlight.sum() != 0) {
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    private boolean gatherAndReserve(int quantity) {
+        gatherLock.lock();
+        try {
+            int total = 0;
+            for (int i = 0; i < stripes; i++) {
+                total += cells.getAndSet(i * PAD, 0);
+            }
+            boolean granted = total >= quantity;
+            spread(granted ? total - quantity : total);
+            return granted;
+        } finally {
+            gatherLock.unlock();
+        }
+    }
+
+    private void spread(int quantity) {
+        int share = quantity / stripes;
+        int remainder = quantity % stripes;
+        for (int i = 0; i < stripes; i++) {
+            int amount = share + (i < remainder ? 1 : 0);
+            if (amount > 0) {
+                cells.addAndGet(i * PAD, amount);
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.picsart;
+
+import java.sql.SQLException;
+
+/**
+ * Wraps an {@link SQLException} where the API cannot throw checked exceptions, e.g. inside streams.
+ */
+public class UncheckedSQLException extends RuntimeException {
+
+    public UncheckedSQLException(SQLException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
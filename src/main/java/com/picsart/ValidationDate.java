@@ -1,24 +1,61 @@
 package com.picsart;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+/**
+ * Validates calendar dates written as {@code yyyy-MM-dd} with a year between 1950 and 2099.
+ */
+public class ValidationDate implements Validator {
+
+    private static final int MIN_YEAR = 1950;
+    private static final int MAX_YEAR = 2099;
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
 
-public class ValidationDate {
     public boolean validDateFormat(String date) {
-        String str = "^(19[5-9][0-9]|20(0[0-9]|1[0-9]|2[0-4]))-(0[1-9]|1[0-2])-(0[1-9]|[12][0-9]|3[01])$";
-        Pattern pattern = Pattern.compile(str);
-        Matcher matcher = pattern.matcher(date);
-        if (matcher.matches()) {
-            String[] split = date.split("-");
-            int year = Integer.parseInt(split[0]);
-            int month = Integer.parseInt(split[1]);
-            int day = Integer.parseInt(split[2]);
+        return validate(date) == ValidationResult.VALID;
+    }
+
+    @Override
+    public ValidationResult validate(String date) {
+        if (date == null || date.isEmpty()) {
+            return ValidationResult.EMPTY;
+        }
+        if (date.length() != 10 || date.charAt(4) != '-' || date.charAt(7) != '-') {
+            return ValidationResult.DATE_WRONG_FORMAT;
+        }
+        int year = digits(date, 0, 4);
+        int month = digits(date, 5, 7);
+        int day = digits(date, 8, 10);
+        if (year < 0 || month < 0 || day < 0) {
+            return ValidationResult.DATE_WRONG_FORMAT;
+        }
+        if (year < MIN_YEAR || year > MAX_YEAR) {
+            return ValidationResult.DATE_YEAR_OUT_OF_RANGE;
+        }
+        if (month < 1 || month > 12) {
+            return ValidationResult.DATE_MONTH_OUT_OF_RANGE;
+        }
+        int daysInMonth = month == 2 && isLeapYear(year) ? 29 : DAYS_IN_MONTH[month - 1];
+        if (day < 1 || day > daysInMonth) {
+            return ValidationResult.DATE_DAY_OUT_OF_RANGE;
+        }
+        return ValidationResult.VALID;
+    }
+
+    static boolean isLeapYear(int year) {
+        return year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
 
-            if (((month == 1 || month == 3 || month == 5 || month == 7 || month == 8 || month == 10 || month == 12)
-                    && (day >= 1 && day <= 31)) || ((month == 4 || month == 6 || month == 9 || month == 11) && day >= 1 && day <= 30)) {
-                return true;
-            } else return (month == 2 && (year % 4 == 0 && year % 100 != 0) && (day >= 1 && day <= 29)) || (month == 2 && day >= 1 && day <= 28);
+    /**
+     * Parses the decimal digits in {@code [from, to)}, or returns -1 if one of them is not a digit.
+     */
+    private static int digits(String value, int from, int to) {
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
         }
-        return false;
+        return result;
     }
 }
@@ -0,0 +1,35 @@
+package com.picsart;
+
+/**
+ * Outcome of a {@link Validator}: {@link #VALID} or the reason the value was rejected.
+ */
+public enum ValidationResult {
+    VALID("valid"),
+    EMPTY("value is empty"),
+
+    PHONE_WRONG_LENGTH("phone number must have 12 characters"),
+    PHONE_MISSING_PLUS("phone number must start with +"),
+    PHONE_WRONG_COUNTRY_CODE("phone number must start with +374"),
+    PHONE_NOT_A_DIGIT("phone number may only contain digits after +"),
+    PHONE_LEADING_ZERO("operator code must not start with 0"),
+    PHONE_UNKNOWN_OPERATOR("unknown operator code"),
+
+    DATE_WRONG_FORMAT("date must be written as yyyy-MM-dd"),
+    DATE_YEAR_OUT_OF_RANGE("year must be between 1950 and 2099"),
+    DATE_MONTH_OUT_OF_RANGE("month must be between 01 and 12"),
+    DATE_DAY_OUT_OF_RANGE("day does not exist in that month");
+
+    private final String message;
+
+    ValidationResult(String message) {
+        this.message = message;
+    }
+
+    public boolean isValid() {
+        return this == VALID;
+    }
+
+    public String message() {
+        return message;
+    }
+}
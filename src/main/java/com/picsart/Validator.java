@@ -0,0 +1,50 @@
+package com.picsart;
+
+/**
+ * Checks single text values, such as a CSV field or a line typed at the console.
+ * <p>
+ * Implementations scan the characters directly and report the first problem found as a
+ * {@link ValidationResult}; they neither allocate nor throw, so they can be run for every row of a
+ * bulk import.
+ */
+public interface Validator {
+
+    /**
+     * Validates one value.
+     *
+     * @param value The value, may be null.
+     * @return {@link ValidationResult#VALID} or the reason it was rejected.
+     */
+    ValidationResult validate(String value);
+
+    /**
+     * Validates several values.
+     *
+     * @param values The values.
+     * @return The result of every value, in the same order.
+     */
+    default ValidationResult[] validate(String[] values) {
+        ValidationResult[] results = new ValidationResult[values.length];
+        validate(values, results);
+        return results;
+    }
+
+    /**
+     * Validates several values into a caller-supplied array, allocating nothing.
+     *
+     * @param values  The values.
+     * @param results Receives the result of every value; at least as long as {@code values}.
+     * @return The number of valid values.
+     */
+    default int validate(String[] values, ValidationResult[] results) {
+        int valid = 0;
+        for (int i = 0; i < values.length; i++) {
+            ValidationResult result = validate(values[i]);
+            results[i] = result;
+            if (result == ValidationResult.VALID) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+}
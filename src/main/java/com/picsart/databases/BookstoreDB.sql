@@ -46,21 +46,10 @@ CREATE TABLE Sales (
                        CONSTRAINT fk_customer FOREIGN KEY (CustomerID) REFERENCES Customers(CustomerID) ON DELETE SET NULL
 );
 
---creating a trigger to update quantity of books in store
-CREATE OR REPLACE FUNCTION update_books_quantity_in_stock()
-    RETURNS TRIGGER AS $$
-BEGIN
-UPDATE Books
-SET QuantityInStock = QuantityInStock - NEW.QuantitySold
-WHERE BookID = NEW.BookID;
-RETURN NEW;
-END;
-$$ LANGUAGE plpgsql;
-
-CREATE TRIGGER update_books_quantity
-    AFTER INSERT ON Sales
-    FOR EACH ROW
-    EXECUTE FUNCTION update_books_quantity_in_stock();
+--stock is decremented by the application in the same statement that inserts the sale,
+--so the former update_books_quantity trigger would subtract it twice
+DROP TRIGGER IF EXISTS update_books_quantity ON Sales;
+DROP FUNCTION IF EXISTS update_books_quantity_in_stock();
 
 
 
@@ -0,0 +1,4 @@
+--the application decrements Books.QuantityInStock in the same statement that inserts the sale
+--(see SaleEngine and OrderProcessing), so this trigger subtracted every sale a second time
+DROP TRIGGER IF EXISTS update_books_quantity ON Sales;
+DROP FUNCTION IF EXISTS update_books_quantity_in_stock();
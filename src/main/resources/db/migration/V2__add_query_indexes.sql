@@ -0,0 +1,13 @@
+--listBooksByGenreOrAuthor: WHERE Genre = ? / Author = ? ORDER BY BookID
+CREATE INDEX IF NOT EXISTS books_genre_idx ON Books (Genre, BookID);
+CREATE INDEX IF NOT EXISTS books_author_idx ON Books (Author, BookID);
+
+--viewCustomerPurchaseHistory: WHERE CustomerID = ? ORDER BY SaleID
+CREATE INDEX IF NOT EXISTS sales_customer_idx ON Sales (CustomerID, SaleID);
+
+--date-bounded sales reports: WHERE DateOfSale >= ? AND DateOfSale < ?
+CREATE INDEX IF NOT EXISTS sales_date_idx ON Sales (DateOfSale, SaleID);
+
+--revenue by genre joins every sale to its book and sums TotalPrice; covering the join key and the
+--summed column allows an index-only scan, and the index also serves ON DELETE SET NULL from Books
+CREATE INDEX IF NOT EXISTS sales_book_idx ON Sales (BookID) INCLUDE (TotalPrice);
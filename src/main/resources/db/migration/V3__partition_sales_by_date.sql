@@ -0,0 +1,48 @@
+--Sales becomes a table range-partitioned by DateOfSale, so that date-bounded reports only read the
+--months they need and old months can be detached. Existing rows are copied into monthly partitions
+--covering their dates; sales without a date, or beyond the last partition, go to sales_default until
+--SalesPartitions creates a partition for them.
+--
+--A primary key on a partitioned table has to include the partition key, which would make DateOfSale
+--mandatory, so SaleID stays unique through its sequence and is indexed without a constraint.
+ALTER TABLE Sales RENAME TO sales_unpartitioned;
+
+CREATE TABLE Sales (
+                       SaleID INTEGER NOT NULL DEFAULT nextval('sales_saleid_seq'),
+                       BookID INTEGER,
+                       CustomerID INTEGER,
+                       DateOfSale DATE,
+                       QuantitySold INTEGER NOT NULL CHECK(QuantitySold >= 0),
+                       TotalPrice REAL NOT NULL CHECK(TotalPrice >= 0),
+                       CONSTRAINT fk_book FOREIGN KEY (BookID) REFERENCES Books(BookID) ON DELETE SET NULL,
+                       CONSTRAINT fk_customer FOREIGN KEY (CustomerID) REFERENCES Customers(CustomerID) ON DELETE SET NULL
+) PARTITION BY RANGE (DateOfSale);
+
+ALTER SEQUENCE sales_saleid_seq OWNED BY Sales.SaleID;
+
+DO $$
+DECLARE
+    first_day DATE := date_trunc('month', COALESCE((SELECT min(DateOfSale) FROM sales_unpartitioned), current_date))::date;
+    last_day DATE := (date_trunc('month', current_date) + INTERVAL '3 months')::date;
+BEGIN
+    WHILE first_day <= last_day LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF Sales FOR VALUES FROM (%L) TO (%L)',
+                       'sales_' || to_char(first_day, 'YYYY_MM'), first_day, (first_day + INTERVAL '1 month')::date);
+        first_day := (first_day + INTERVAL '1 month')::date;
+    END LOOP;
+END $$;
+
+CREATE TABLE sales_default PARTITION OF Sales DEFAULT;
+
+INSERT INTO Sales (SaleID, BookID, CustomerID, DateOfSale, QuantitySold, TotalPrice)
+SELECT SaleID, BookID, CustomerID, DateOfSale, QuantitySold, TotalPrice FROM sales_unpartitioned;
+
+DROP TABLE sales_unpartitioned;
+
+--the indexes of V2, now created on every partition
+CREATE INDEX sales_saleid_idx ON Sales (SaleID);
+CREATE INDEX sales_customer_idx ON Sales (CustomerID, SaleID);
+CREATE INDEX sales_date_idx ON Sales (DateOfSale, SaleID);
+CREATE INDEX sales_book_idx ON Sales (BookID) INCLUDE (TotalPrice);
+
+ANALYZE Sales;
@@ -0,0 +1,5 @@
+--purchase history pages: WHERE CustomerID = ? AND (DateOfSale, SaleID) < (?, ?)
+--ORDER BY DateOfSale DESC, SaleID DESC; the included columns let both the page and the lifetime
+--totals of a customer be read with an index-only scan, however long the history is
+CREATE INDEX IF NOT EXISTS sales_customer_history_idx
+    ON Sales (CustomerID, DateOfSale DESC, SaleID DESC) INCLUDE (BookID, QuantitySold, TotalPrice);
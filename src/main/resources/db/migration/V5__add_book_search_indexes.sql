@@ -0,0 +1,11 @@
+--BookSearch WORDS mode: title and author words as one weighted vector (A = title, B = author), so a
+--search can rank and be restricted to either column with tsquery weight labels
+ALTER TABLE Books ADD COLUMN IF NOT EXISTS SearchVector tsvector
+    GENERATED ALWAYS AS (setweight(to_tsvector('simple', Title), 'A') ||
+                         setweight(to_tsvector('simple', Author), 'B')) STORED;
+CREATE INDEX IF NOT EXISTS books_search_idx ON Books USING GIN (SearchVector);
+
+--BookSearch CONTAINS mode: ILIKE '%part%' and similarity ranking on titles and authors
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS books_title_trgm_idx ON Books USING GIN (Title gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS books_author_trgm_idx ON Books USING GIN (Author gin_trgm_ops);
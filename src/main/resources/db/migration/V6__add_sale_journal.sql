@@ -0,0 +1,14 @@
+--sales recorded through the local sale journal carry the UUID the selling terminal gave them, so the
+--journal can be replayed after a crash without inserting a sale twice; a unique index on a partitioned
+--table has to include the partition key
+ALTER TABLE Sales ADD COLUMN IF NOT EXISTS ClientSaleID UUID;
+
+CREATE UNIQUE INDEX IF NOT EXISTS sales_client_sale_idx ON Sales (ClientSaleID, DateOfSale);
+
+--sequence number of the last journal entry written to Sales, updated in the same transaction
+CREATE TABLE IF NOT EXISTS SaleJournalCheckpoint (
+    ID INTEGER PRIMARY KEY CHECK (ID = 1),
+    LastSequence BIGINT NOT NULL
+);
+
+INSERT INTO SaleJournalCheckpoint (ID, LastSequence) VALUES (1, 0) ON CONFLICT (ID) DO NOTHING;
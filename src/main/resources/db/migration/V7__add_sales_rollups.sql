@@ -0,0 +1,31 @@
+--sales per day and book, and per day and genre, kept by SalesRollups so trend reports read a few rows
+--per day instead of every sale; undated sales are not rolled up. Sales of deleted books are rolled up
+--under BookID 0 with no genre, and under the empty genre.
+CREATE TABLE IF NOT EXISTS SalesDailyBookRollup (
+    Day DATE NOT NULL,
+    BookID INTEGER NOT NULL,
+    Genre TEXT,
+    SaleCount INTEGER NOT NULL,
+    Quantity BIGINT NOT NULL,
+    RevenueCents BIGINT NOT NULL,
+    PRIMARY KEY (Day, BookID)
+);
+
+CREATE INDEX IF NOT EXISTS sales_daily_book_rollup_book_idx ON SalesDailyBookRollup (BookID, Day);
+
+CREATE TABLE IF NOT EXISTS SalesDailyGenreRollup (
+    Day DATE NOT NULL,
+    Genre TEXT NOT NULL,
+    SaleCount INTEGER NOT NULL,
+    Quantity BIGINT NOT NULL,
+    RevenueCents BIGINT NOT NULL,
+    PRIMARY KEY (Day, Genre)
+);
+
+--highest SaleID seen by the last refresh; 0 makes the first refresh roll up every day with sales
+CREATE TABLE IF NOT EXISTS SalesRollupCheckpoint (
+    ID INTEGER PRIMARY KEY CHECK (ID = 1),
+    LastSaleID INTEGER NOT NULL
+);
+
+INSERT INTO SalesRollupCheckpoint (ID, LastSaleID) VALUES (1, 0) ON CONFLICT (ID) DO NOTHING;
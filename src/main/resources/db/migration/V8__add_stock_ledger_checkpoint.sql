@@ -0,0 +1,8 @@
+--last stock ledger journal entry applied to Books; StockLedger replays only later entries after a crash.
+--Databases seeded before migrations existed may already have the table.
+CREATE TABLE IF NOT EXISTS StockLedgerCheckpoint (
+    ID INTEGER PRIMARY KEY CHECK (ID = 1),
+    LastSequence BIGINT NOT NULL
+);
+
+INSERT INTO StockLedgerCheckpoint (ID, LastSequence) VALUES (1, 0) ON CONFLICT (ID) DO NOTHING;
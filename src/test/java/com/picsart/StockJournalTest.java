@@ -0,0 +1,184 @@
+package com.picsart;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StockJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private FailingChannel channel;
+
+    @Test
+    void aTornWriteIsNotCountedAndStopsTheJournal() throws IOException {
+        try (StockJournal journal = StockJournal.open(directory, true, 1, this::open)) {
+            journal.append(1, 2);
+            channel.failWrites = true;
+
+            assertThrows(IOException.class, () -> journal.append(1, 3));
+            assertEquals(2, journal.pending(1));
+
+            channel.failWrites = false;
+            assertThrows(IOException.class, () -> journal.append(1, 1));
+            assertEquals(2, journal.pending(1));
+        }
+        assertEquals(List.of(new StockJournal.Entry(1, 1, 2)), entries());
+    }
+
+    @Test
+    void aFailedForceIsNotCountedAndIsCutFromTheSegment() throws IOException {
+        try (StockJournal journal = StockJournal.open(directory, true, 1, this::open)) {
+            journal.append(7, 1);
+            channel.failForce = true;
+
+            assertThrows(IOException.class, () -> journal.append(7, 5));
+            assertEquals(1, journal.pending(7));
+
+            channel.failForce = false;
+            assertThrows(IOException.class, () -> journal.append(7, 1));
+            assertEquals(1, journal.pending(7));
+        }
+        assertEquals(List.of(new StockJournal.Entry(1, 7, 1)), entries());
+    }
+
+    private FileChannel open(Path path) throws IOException {
+        channel = new FailingChannel(FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+        return channel;
+    }
+
+    private List<StockJournal.Entry> entries() throws IOException {
+        List<StockJournal.Entry> entries = new ArrayList<>();
+        for (Path segment : StockJournal.segments(directory)) {
+            StockJournal.read(segment, entries::add);
+        }
+        return entries;
+    }
+
+    /**
+     * A file channel that can be told to write only half a record or to fail forcing.
+     */
+    private static final class FailingChannel extends FileChannel {
+
+        private final FileChannel file;
+        private volatile boolean failWrites;
+        private volatile boolean failForce;
+
+        FailingChannel(FileChannel file) {
+            this.file = file;
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            if (failWrites) {
+                if (source.remaining() > 1) {
+                    ByteBuffer half = source.slice(source.position(), source.remaining() / 2);
+                    file.write(half);
+                }
+                throw new IOException("No space left on device");
+            }
+            return file.write(source);
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            if (failForce) {
+                throw new IOException("Input/output error");
+            }
+            file.force(metaData);
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            file.truncate(size);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return file.size();
+        }
+
+        @Override
+        public long position() throws IOException {
+            return file.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            file.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public int read(ByteBuffer destination) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long read(ByteBuffer[] destinations, int offset, int length) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long write(ByteBuffer[] sources, int offset, int length) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel source, long position, long count) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read(ByteBuffer destination, long position) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int write(ByteBuffer source, long position) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            file.close();
+        }
+    }
+}
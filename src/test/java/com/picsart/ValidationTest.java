@@ -0,0 +1,67 @@
+package com.picsart;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ValidationTest {
+
+    private final ValidationDate dates = new ValidationDate();
+    private final PhoneNumberValidation phones = new PhoneNumberValidation();
+
+    @Test
+    void leapYearsFollowTheGregorianRule() {
+        assertTrue(ValidationDate.isLeapYear(2000));
+        assertTrue(ValidationDate.isLeapYear(2024));
+        assertFalse(ValidationDate.isLeapYear(1900));
+        assertFalse(ValidationDate.isLeapYear(2023));
+        assertFalse(ValidationDate.isLeapYear(2100));
+    }
+
+    @Test
+    void acceptsFebruary29OnlyInLeapYears() {
+        assertEquals(ValidationResult.VALID, dates.validate("2000-02-29"));
+        assertEquals(ValidationResult.VALID, dates.validate("2024-02-29"));
+        assertEquals(ValidationResult.DATE_DAY_OUT_OF_RANGE, dates.validate("2023-02-29"));
+        assertEquals(ValidationResult.DATE_YEAR_OUT_OF_RANGE, dates.validate("1900-02-29"));
+    }
+
+    @Test
+    void reportsWhyADateIsRejected() {
+        assertEquals(ValidationResult.EMPTY, dates.validate(""));
+        assertEquals(ValidationResult.EMPTY, dates.validate((String) null));
+        assertEquals(ValidationResult.DATE_WRONG_FORMAT, dates.validate("2024/01/01"));
+        assertEquals(ValidationResult.DATE_WRONG_FORMAT, dates.validate("2024-1-01"));
+        assertEquals(ValidationResult.DATE_WRONG_FORMAT, dates.validate("2024-0a-01"));
+        assertEquals(ValidationResult.DATE_YEAR_OUT_OF_RANGE, dates.validate("1949-12-31"));
+        assertEquals(ValidationResult.DATE_YEAR_OUT_OF_RANGE, dates.validate("2100-01-01"));
+        assertEquals(ValidationResult.DATE_MONTH_OUT_OF_RANGE, dates.validate("2024-13-01"));
+        assertEquals(ValidationResult.DATE_DAY_OUT_OF_RANGE, dates.validate("2024-04-31"));
+        assertEquals(ValidationResult.DATE_DAY_OUT_OF_RANGE, dates.validate("2024-01-00"));
+    }
+
+    @Test
+    void reportsWhyAPhoneNumberIsRejected() {
+        assertEquals(ValidationResult.VALID, phones.validate("+37494111111"));
+        assertEquals(ValidationResult.EMPTY, phones.validate(""));
+        assertEquals(ValidationResult.PHONE_WRONG_LENGTH, phones.validate("+3749411111"));
+        assertEquals(ValidationResult.PHONE_MISSING_PLUS, phones.validate("037494111111"));
+        assertEquals(ValidationResult.PHONE_NOT_A_DIGIT, phones.validate("+3749411111a"));
+        assertEquals(ValidationResult.PHONE_WRONG_COUNTRY_CODE, phones.validate("+37594111111"));
+        assertEquals(ValidationResult.PHONE_LEADING_ZERO, phones.validate("+37404111111"));
+        assertEquals(ValidationResult.PHONE_UNKNOWN_OPERATOR, phones.validate("+37412111111"));
+    }
+
+    @Test
+    void validatesBatchesInOrder() {
+        ValidationResult[] results = new ValidationResult[3];
+        int valid = dates.validate(new String[]{"2000-02-29", "2023-02-29", "2024-01-01"}, results);
+
+        assertEquals(2, valid);
+        assertArrayEquals(new ValidationResult[]{
+                ValidationResult.VALID, ValidationResult.DATE_DAY_OUT_OF_RANGE, ValidationResult.VALID}, results);
+    }
+}